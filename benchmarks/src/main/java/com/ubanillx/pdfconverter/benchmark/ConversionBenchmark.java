@@ -0,0 +1,108 @@
+package com.ubanillx.pdfconverter.benchmark;
+
+import com.ubanillx.pdfconverter.service.ConversionEngine;
+import com.ubanillx.pdfconverter.service.ConversionMetrics;
+import com.ubanillx.pdfconverter.service.FileDownloadService;
+import com.ubanillx.pdfconverter.service.FileStorageService;
+import com.ubanillx.pdfconverter.service.LibreOfficeService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LibreOfficeService 转换（转换缓存关闭）
+ * engine=stub 使用模拟转换引擎（FakeConversionEngine），衡量读取源文件、输出文件处理等框架开销；
+ * engine=office 启动本机的 soffice 进程池，本机没有 LibreOffice 时直接失败
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConversionBenchmark {
+
+    @Param({"stub", "office"})
+    private String engine;
+
+    @Param({"txt", "html"})
+    private String format;
+
+    // 段落数，每段约 60 个词
+    @Param({"20", "400"})
+    private int paragraphs;
+
+    private Path workDirectory;
+    private FileDownloadService downloader;
+    private LibreOfficeService libreOfficeService;
+    private ConversionEngine converter;
+    private String sourceUrl;
+    private String outputDirectory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workDirectory = Files.createTempDirectory(Corpus.PREFIX + "conversion");
+        // 源文件放在存储目录中按存储地址读取，下载服务只接受 http(s)
+        Path uploads = Files.createDirectories(workDirectory.resolve("uploads"));
+        sourceUrl = "http://localhost:9999/files/" + Corpus.document(uploads, format, paragraphs).getFileName();
+        outputDirectory = Files.createDirectories(workDirectory.resolve("outputs")).toString();
+
+        ConversionMetrics metrics = ServiceFixtures.metrics();
+        FileStorageService storage = ServiceFixtures.storage(workDirectory.resolve("uploads"), metrics);
+        downloader = ServiceFixtures.downloader(metrics);
+        libreOfficeService = ServiceFixtures.libreOffice(storage, downloader, metrics,
+                workDirectory.resolve("office-profile"));
+        if ("office".equals(engine)) {
+            libreOfficeService.init();
+            if (!libreOfficeService.isHealthy()) {
+                throw new IllegalStateException("LibreOffice is not available, run with -p engine=stub");
+            }
+            converter = libreOfficeService;
+        } else {
+            converter = ServiceFixtures.fakeEngine(storage, downloader, metrics);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void cleanIteration() throws IOException {
+        Corpus.deleteRecursively(Paths.get(outputDirectory));
+        Files.createDirectories(Paths.get(outputDirectory));
+        // 服务把源文件下载到系统临时目录（libreoffice_*_原文件名）
+        try (DirectoryStream<Path> downloads = Files.newDirectoryStream(
+                Paths.get(System.getProperty("java.io.tmpdir")), "libreoffice_*_" + Corpus.PREFIX + "*")) {
+            for (Path download : downloads) {
+                Files.deleteIfExists(download);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        libreOfficeService.shutdown();
+        downloader.shutdown();
+        Corpus.deleteRecursively(workDirectory);
+    }
+
+    @Benchmark
+    public File convertToPdf() throws Exception {
+        return converter.convertFile(sourceUrl, "pdf", outputDirectory);
+    }
+}
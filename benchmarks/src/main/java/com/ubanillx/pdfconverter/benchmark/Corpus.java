@@ -0,0 +1,122 @@
+package com.ubanillx.pdfconverter.benchmark;
+
+import com.itextpdf.io.font.constants.StandardFonts;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.font.PdfFontFactory;
+import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfPage;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+/**
+ * 基准测试语料：全部由固定种子生成，每次运行、每台机器上的输入内容相同，结果可以直接对比
+ */
+final class Corpus {
+
+    static final long SEED = 20240601L;
+
+    // 语料文件名前缀，清理下载临时文件时据此匹配
+    static final String PREFIX = "bench-";
+
+    // 前 ASCII_WORDS 个为英文单词
+    private static final int ASCII_WORDS = 16;
+    private static final String[] WORDS = {
+            "contract", "invoice", "quarterly", "report", "summary", "revenue", "customer", "delivery",
+            "schedule", "approval", "budget", "forecast", "analysis", "document", "section", "appendix",
+            "合同", "发票", "季度", "报告", "客户", "交付", "预算", "附录"
+    };
+
+    private static final int LINES_PER_PAGE = 40;
+
+    private Corpus() {
+    }
+
+    static byte[] bytes(int size) {
+        byte[] data = new byte[size];
+        SplittableRandom random = new SplittableRandom(SEED + size);
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) random.nextInt(256);
+        }
+        return data;
+    }
+
+    /**
+     * 每页 40 行文字的 PDF（只用 ASCII 单词，标准字体即可显示）
+     */
+    static Path pdf(Path directory, int pages) throws IOException {
+        Path file = directory.resolve(PREFIX + pages + "p.pdf");
+        SplittableRandom random = new SplittableRandom(SEED + pages);
+        try (PdfDocument pdfDoc = new PdfDocument(new PdfWriter(file.toFile()))) {
+            PdfFont font = PdfFontFactory.createFont(StandardFonts.HELVETICA);
+            for (int i = 0; i < pages; i++) {
+                PdfPage page = pdfDoc.addNewPage(PageSize.A4);
+                PdfCanvas canvas = new PdfCanvas(page);
+                canvas.beginText().setFontAndSize(font, 10).moveText(50, 800);
+                for (int line = 0; line < LINES_PER_PAGE; line++) {
+                    canvas.showText(sentence(random, 12, true)).moveText(0, -18);
+                }
+                canvas.endText().release();
+            }
+        }
+        return file;
+    }
+
+    /**
+     * 供 LibreOffice 导入的文本文档，txt 或 html，段落数决定文档大小
+     */
+    static Path document(Path directory, String format, int paragraphs) throws IOException {
+        SplittableRandom random = new SplittableRandom(SEED + paragraphs);
+        StringBuilder content = new StringBuilder();
+        boolean html = "html".equals(format);
+        if (html) {
+            content.append("<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title>benchmark</title></head><body>\n");
+        }
+        for (int i = 0; i < paragraphs; i++) {
+            String paragraph = sentence(random, 60, false);
+            if (html) {
+                content.append(i % 10 == 0 ? "<h2>" + sentence(random, 4, false) + "</h2>\n" : "")
+                        .append("<p>").append(paragraph).append("</p>\n");
+            } else {
+                content.append(paragraph).append("\n\n");
+            }
+        }
+        if (html) {
+            content.append("</body></html>\n");
+        }
+        Path file = directory.resolve(PREFIX + paragraphs + "." + format);
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    static void deleteRecursively(Path directory) throws IOException {
+        if (directory == null || !Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private static String sentence(SplittableRandom random, int words, boolean asciiOnly) {
+        StringBuilder sentence = new StringBuilder();
+        int choices = asciiOnly ? ASCII_WORDS : WORDS.length;
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sentence.append(' ');
+            }
+            sentence.append(WORDS[random.nextInt(choices)]);
+        }
+        return sentence.toString();
+    }
+}
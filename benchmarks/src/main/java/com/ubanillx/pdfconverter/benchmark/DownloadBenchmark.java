@@ -0,0 +1,80 @@
+package com.ubanillx.pdfconverter.benchmark;
+
+import com.sun.net.httpserver.HttpServer;
+import com.ubanillx.pdfconverter.service.FileDownloadService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 源文件下载：本地 HTTP 桩服务返回固定内容，排除网络波动，只衡量下载器本身（连接复用、缓冲写盘、进度检查）
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DownloadBenchmark {
+
+    @Param({"65536", "4194304", "33554432"})
+    private int size;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private FileDownloadService downloader;
+    private Path workDirectory;
+    private Path target;
+    private String url;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        byte[] payload = Corpus.bytes(size);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/" + Corpus.PREFIX + "source.docx", exchange -> {
+            exchange.sendResponseHeaders(200, payload.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(payload);
+            }
+        });
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/" + Corpus.PREFIX + "source.docx";
+
+        downloader = ServiceFixtures.downloader(ServiceFixtures.metrics());
+        workDirectory = Files.createTempDirectory(Corpus.PREFIX + "download");
+        target = workDirectory.resolve(Corpus.PREFIX + "source.docx");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        downloader.shutdown();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+        Corpus.deleteRecursively(workDirectory);
+    }
+
+    @Benchmark
+    public Path download() throws Exception {
+        return downloader.download(url, target);
+    }
+}
@@ -0,0 +1,130 @@
+package com.ubanillx.pdfconverter.benchmark;
+
+import com.ubanillx.pdfconverter.service.ConversionCacheService;
+import com.ubanillx.pdfconverter.service.ConversionMetrics;
+import com.ubanillx.pdfconverter.service.ConversionWatchdog;
+import com.ubanillx.pdfconverter.service.FakeConversionEngine;
+import com.ubanillx.pdfconverter.service.FileDownloadService;
+import com.ubanillx.pdfconverter.service.FileStorageService;
+import com.ubanillx.pdfconverter.service.FontRegistry;
+import com.ubanillx.pdfconverter.service.LibreOfficeService;
+import com.ubanillx.pdfconverter.service.LocalStorageBackend;
+import com.ubanillx.pdfconverter.service.WatermarkService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+
+/**
+ * 按默认配置手工装配被测服务（与单元测试相同的方式），不启动 Spring 容器，避免容器本身的开销和外部依赖（Redis 等）
+ */
+final class ServiceFixtures {
+
+    private ServiceFixtures() {
+    }
+
+    static ConversionMetrics metrics() {
+        return new ConversionMetrics(new SimpleMeterRegistry());
+    }
+
+    static FileStorageService storage(Path directory, ConversionMetrics metrics) {
+        LocalStorageBackend backend = new LocalStorageBackend();
+        ReflectionTestUtils.setField(backend, "storageDirectory", directory.toString());
+        ReflectionTestUtils.setField(backend, "shardDepth", 2);
+
+        FileStorageService storage = new FileStorageService();
+        ReflectionTestUtils.setField(storage, "storageDirectory", directory.toString());
+        ReflectionTestUtils.setField(storage, "baseUrl", "http://localhost:9999");
+        ReflectionTestUtils.setField(storage, "storageBackend", backend);
+        ReflectionTestUtils.setField(storage, "metrics", metrics);
+        return storage;
+    }
+
+    static FileDownloadService downloader(ConversionMetrics metrics) {
+        FileDownloadService downloader = new FileDownloadService();
+        ReflectionTestUtils.setField(downloader, "connectTimeoutMillis", 10000L);
+        ReflectionTestUtils.setField(downloader, "readTimeoutMillis", 30000L);
+        ReflectionTestUtils.setField(downloader, "totalTimeoutMillis", 300000L);
+        ReflectionTestUtils.setField(downloader, "maxSizeBytes", 209715200L);
+        ReflectionTestUtils.setField(downloader, "metrics", metrics);
+        downloader.init();
+        return downloader;
+    }
+
+    static WatermarkService watermark(Path directory, FileStorageService storage, FileDownloadService downloader,
+                                      ConversionMetrics metrics) {
+        FontRegistry fontRegistry = new FontRegistry();
+        ReflectionTestUtils.setField(fontRegistry, "fontDirectory", directory.resolve("fonts").toString());
+        ReflectionTestUtils.setField(fontRegistry, "maxCacheBytes", 268435456L);
+        ReflectionTestUtils.setField(fontRegistry, "preloadFonts", "");
+        ReflectionTestUtils.setField(fontRegistry, "defaultCjkFont", "STSong-Light");
+        fontRegistry.init();
+
+        WatermarkService watermark = new WatermarkService();
+        ReflectionTestUtils.setField(watermark, "fileDownloadService", downloader);
+        ReflectionTestUtils.setField(watermark, "fileStorageService", storage);
+        ReflectionTestUtils.setField(watermark, "fontRegistry", fontRegistry);
+        ReflectionTestUtils.setField(watermark, "metrics", metrics);
+        ReflectionTestUtils.setField(watermark, "templateCacheSize", 64);
+        ReflectionTestUtils.setField(watermark, "templateCacheMaxBytes", 67108864L);
+        ReflectionTestUtils.setField(watermark, "maxImageBytes", 10485760L);
+        ReflectionTestUtils.setField(watermark, "imageTemplateTtlMillis", 300000L);
+        ReflectionTestUtils.setField(watermark, "lowMemoryThreshold", 104857600L);
+        ReflectionTestUtils.setField(watermark, "memoryBudgetBytes", 0L);
+        ReflectionTestUtils.setField(watermark, "memoryWaitTimeoutMillis", 60000L);
+        watermark.init();
+        return watermark;
+    }
+
+    /**
+     * 模拟转换引擎，不等待、不额外占用 CPU，只衡量读取源文件和写出结果的开销
+     */
+    static FakeConversionEngine fakeEngine(FileStorageService storage, FileDownloadService downloader,
+                                           ConversionMetrics metrics) {
+        FakeConversionEngine engine = new FakeConversionEngine();
+        ReflectionTestUtils.setField(engine, "fileStorageService", storage);
+        ReflectionTestUtils.setField(engine, "fileDownloadService", downloader);
+        ReflectionTestUtils.setField(engine, "metrics", metrics);
+        ReflectionTestUtils.setField(engine, "latencyMillis", 0L);
+        ReflectionTestUtils.setField(engine, "latencyJitterMillis", 0L);
+        ReflectionTestUtils.setField(engine, "cpuTimeMillis", 0L);
+        ReflectionTestUtils.setField(engine, "outputSize", 102400);
+        ReflectionTestUtils.setField(engine, "pages", 1);
+        ReflectionTestUtils.setField(engine, "failureRate", 0.0);
+        return engine;
+    }
+
+    /**
+     * 转换结果缓存关闭，每次调用都真正执行转换
+     */
+    static LibreOfficeService libreOffice(FileStorageService storage, FileDownloadService downloader,
+                                          ConversionMetrics metrics, Path profileDirectory) {
+        ConversionCacheService cache = new ConversionCacheService();
+        ReflectionTestUtils.setField(cache, "enabled", false);
+        cache.init();
+
+        ConversionWatchdog watchdog = new ConversionWatchdog();
+        ReflectionTestUtils.setField(watchdog, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(watchdog, "loadTimeoutMillis", 60000L);
+        ReflectionTestUtils.setField(watchdog, "storeTimeoutMillis", 60000L);
+        ReflectionTestUtils.setField(watchdog, "quarantineThreshold", 2);
+        ReflectionTestUtils.setField(watchdog, "quarantineTtlMillis", 86400000L);
+        ReflectionTestUtils.setField(watchdog, "quarantineMaxEntries", 10000);
+        watchdog.init();
+
+        LibreOfficeService libreOffice = new LibreOfficeService();
+        ReflectionTestUtils.setField(libreOffice, "conversionCacheService", cache);
+        ReflectionTestUtils.setField(libreOffice, "fileDownloadService", downloader);
+        ReflectionTestUtils.setField(libreOffice, "fileStorageService", storage);
+        ReflectionTestUtils.setField(libreOffice, "metrics", metrics);
+        ReflectionTestUtils.setField(libreOffice, "watchdog", watchdog);
+        ReflectionTestUtils.setField(libreOffice, "poolSize", 1);
+        ReflectionTestUtils.setField(libreOffice, "poolBasePort", 2102);
+        ReflectionTestUtils.setField(libreOffice, "maxConversionsPerInstance", 200);
+        ReflectionTestUtils.setField(libreOffice, "checkoutTimeoutMillis", 30000L);
+        ReflectionTestUtils.setField(libreOffice, "connectTimeoutMillis", 30000L);
+        ReflectionTestUtils.setField(libreOffice, "healthCheckIntervalMillis", 30000L);
+        ReflectionTestUtils.setField(libreOffice, "profileDirectory", profileDirectory.toString());
+        return libreOffice;
+    }
+}
@@ -0,0 +1,116 @@
+package com.ubanillx.pdfconverter.benchmark;
+
+import com.ubanillx.pdfconverter.service.FileStorageService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 存储：store 为转换结果移入分层存储目录，read 为按地址解析存储文件并读出全部内容，
+ * entityTag 为下载接口生成 ETag
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Storage {
+
+        @Param({"4096", "1048576", "16777216"})
+        int size;
+
+        Path workDirectory;
+        FileStorageService storage;
+        byte[] content;
+        String storedUrl;
+        File storedFile;
+        ByteBuffer readBuffer;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            workDirectory = Files.createTempDirectory(Corpus.PREFIX + "storage");
+            storage = ServiceFixtures.storage(workDirectory.resolve("uploads"), ServiceFixtures.metrics());
+            content = Corpus.bytes(size);
+
+            Path scratch = Files.write(Files.createDirectories(workDirectory.resolve("uploads"))
+                    .resolve(Corpus.PREFIX + "stored.pdf"), content);
+            storedUrl = storage.storeFile(scratch.toFile(), scratch.getFileName().toString());
+            storedFile = storage.resolveLocalFile(storedUrl);
+            readBuffer = ByteBuffer.allocateDirect(256 * 1024);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            Corpus.deleteRecursively(workDirectory);
+        }
+    }
+
+    /**
+     * 每次调用前准备一个待存储的输出文件，写文件的时间不计入结果
+     */
+    @State(Scope.Thread)
+    public static class Output {
+
+        Path file;
+        String storedName;
+
+        @Setup(Level.Invocation)
+        public void prepare(Storage storage) throws Exception {
+            file = Files.write(storage.workDirectory.resolve("uploads").resolve(Corpus.PREFIX + "output.pdf"),
+                    storage.content);
+        }
+
+        @TearDown(Level.Invocation)
+        public void cleanUp(Storage storage) {
+            // 存储文件不保留，目录规模保持不变
+            storage.storage.deleteFile(storedName);
+        }
+    }
+
+    @Benchmark
+    public String store(Storage storage, Output output) throws Exception {
+        String url = storage.storage.storeFile(output.file.toFile(), output.file.getFileName().toString());
+        output.storedName = url.substring(url.lastIndexOf('/') + 1);
+        return url;
+    }
+
+    @Benchmark
+    public long read(Storage storage) throws Exception {
+        File file = storage.storage.resolveLocalFile(storage.storedUrl);
+        long total = 0;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            int read;
+            while ((read = channel.read(storage.readBuffer)) != -1) {
+                total += read;
+                storage.readBuffer.clear();
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public String entityTag(Storage storage) {
+        return storage.storage.getEntityTag(storage.storedFile);
+    }
+}
@@ -0,0 +1,81 @@
+package com.ubanillx.pdfconverter.benchmark;
+
+import com.ubanillx.pdfconverter.model.WatermarkOptions;
+import com.ubanillx.pdfconverter.service.ConversionMetrics;
+import com.ubanillx.pdfconverter.service.FileDownloadService;
+import com.ubanillx.pdfconverter.service.FileStorageService;
+import com.ubanillx.pdfconverter.service.WatermarkService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地PDF添加水印：页数覆盖单页、中等和大文档，
+ * lowMemory 模式对应大文件的逐页写出路径
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class WatermarkBenchmark {
+
+    @Param({"1", "50", "500"})
+    private int pages;
+
+    @Param({"normal", "lowMemory"})
+    private String mode;
+
+    private Path workDirectory;
+    private File source;
+    private FileDownloadService downloader;
+    private WatermarkService watermarkService;
+    private WatermarkOptions options;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workDirectory = Files.createTempDirectory(Corpus.PREFIX + "watermark");
+        source = Corpus.pdf(workDirectory, pages).toFile();
+
+        ConversionMetrics metrics = ServiceFixtures.metrics();
+        FileStorageService storage = ServiceFixtures.storage(workDirectory, metrics);
+        downloader = ServiceFixtures.downloader(metrics);
+        watermarkService = ServiceFixtures.watermark(workDirectory, storage, downloader, metrics);
+        ReflectionTestUtils.setField(watermarkService, "lowMemoryThreshold",
+                "lowMemory".equals(mode) ? 1L : Long.MAX_VALUE);
+
+        options = new WatermarkOptions("CONFIDENTIAL");
+        options.setTiled(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        downloader.shutdown();
+        Corpus.deleteRecursively(workDirectory);
+    }
+
+    @Benchmark
+    public long watermark() throws Exception {
+        File output = watermarkService.addWatermarkToFile(source, options, workDirectory.toFile());
+        long size = output.length();
+        Files.delete(output.toPath());
+        return size;
+    }
+}
@@ -0,0 +1,30 @@
+#!/bin/sh
+
+# 启动常驻的 soffice 监听进程，供应用通过 UNO 连接（docker.libreoffice.mode=daemon）
+# 每个进程使用独立的端口和用户配置目录，进程退出（崩溃或被回收）后自动重新拉起
+
+LISTENERS=${SOFFICE_LISTENERS:-2}
+BASE_PORT=${SOFFICE_BASE_PORT:-8100}
+# 容器使用 host 网络，默认只监听本机地址，避免 UNO 端口暴露到外部网络
+LISTEN_HOST=${SOFFICE_LISTEN_HOST:-127.0.0.1}
+
+run_listener() {
+    port=$1
+    while true; do
+        echo "Starting soffice listener on port ${port}"
+        libreoffice --headless --invisible --nocrashreport --nodefault --nologo \
+            --nofirststartwizard --norestore --nolockcheck \
+            "--accept=socket,host=${LISTEN_HOST},port=${port},tcpNoDelay=1;urp;StarOffice.ComponentContext" \
+            "-env:UserInstallation=file:///tmp/soffice_profile_${port}"
+        echo "soffice listener on port ${port} exited, restarting..."
+        sleep 1
+    done
+}
+
+i=0
+while [ "$i" -lt "$LISTENERS" ]; do
+    run_listener $((BASE_PORT + i)) &
+    i=$((i + 1))
+done
+
+wait
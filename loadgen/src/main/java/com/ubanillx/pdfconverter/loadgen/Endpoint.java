@@ -0,0 +1,107 @@
+package com.ubanillx.pdfconverter.loadgen;
+
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 压测的接口；每次调用返回 HTTP 状态码，异步任务返回任务最终结果对应的状态码
+ */
+enum Endpoint {
+
+    CONVERT_URL("convert-url") {
+        @Override
+        int call(Target target, int document) throws IOException, InterruptedException {
+            return target.postJson("/api/conversion/convert-url",
+                    "{\"url\":\"" + target.sourceUrl(document, "txt") + "\",\"targetFormat\":\"pdf\"}").statusCode();
+        }
+    },
+
+    CONVERT_UPLOAD("convert-upload") {
+        @Override
+        int call(Target target, int document) throws IOException, InterruptedException {
+            return target.postMultipart("/api/conversion/convert-upload", document, "txt",
+                    "targetFormat", "pdf").statusCode();
+        }
+    },
+
+    WATERMARK("watermark") {
+        @Override
+        int call(Target target, int document) throws IOException, InterruptedException {
+            return target.postJson("/api/conversion/watermark",
+                    "{\"url\":\"" + target.sourceUrl(document, "pdf") + "\",\"watermarkText\":\"LOADTEST\"}")
+                    .statusCode();
+        }
+    },
+
+    CONVERT_WATERMARK("convert-watermark") {
+        @Override
+        int call(Target target, int document) throws IOException, InterruptedException {
+            return target.postJson("/api/conversion/convert-watermark",
+                    "{\"url\":\"" + target.sourceUrl(document, "txt") + "\",\"watermarkText\":\"LOADTEST\"}")
+                    .statusCode();
+        }
+    },
+
+    /**
+     * 提交异步任务并轮询到结束，延迟为提交到任务结束的时间
+     */
+    JOBS("jobs") {
+        @Override
+        int call(Target target, int document) throws IOException, InterruptedException {
+            long deadline = System.nanoTime() + target.timeoutNanos();
+            var submitted = target.postJson("/api/conversion/jobs",
+                    "{\"url\":\"" + target.sourceUrl(document, "txt") + "\",\"targetFormat\":\"pdf\"}");
+            if (submitted.statusCode() != 202) {
+                return submitted.statusCode();
+            }
+            Matcher jobId = JOB_ID.matcher(submitted.body());
+            if (!jobId.find()) {
+                throw new IOException("No job id in response: " + submitted.body());
+            }
+
+            while (System.nanoTime() < deadline) {
+                Thread.sleep(target.pollIntervalMillis());
+                var polled = target.get("/api/conversion/jobs/" + jobId.group(1));
+                if (polled.statusCode() != 200) {
+                    return polled.statusCode();
+                }
+                Matcher status = STATUS.matcher(polled.body());
+                if (status.find()) {
+                    if ("done".equals(status.group(1))) {
+                        return 200;
+                    }
+                    if ("failed".equals(status.group(1))) {
+                        return 422;
+                    }
+                }
+            }
+            throw new HttpTimeoutException("Job did not finish in time: " + jobId.group(1));
+        }
+    };
+
+    private static final Pattern JOB_ID = Pattern.compile("\"jobId\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Pattern STATUS = Pattern.compile("\"status\"\\s*:\\s*\"([a-z]+)\"");
+
+    private final String label;
+
+    Endpoint(String label) {
+        this.label = label;
+    }
+
+    String label() {
+        return label;
+    }
+
+    abstract int call(Target target, int document) throws IOException, InterruptedException;
+
+    static Endpoint of(String label) {
+        for (Endpoint endpoint : values()) {
+            if (endpoint.label.equals(label)) {
+                return endpoint;
+            }
+        }
+        throw new IllegalArgumentException("Unknown endpoint: " + label);
+    }
+}
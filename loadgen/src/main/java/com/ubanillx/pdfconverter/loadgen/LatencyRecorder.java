@@ -0,0 +1,62 @@
+package com.ubanillx.pdfconverter.loadgen;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 一个接口在一轮压测中的结果：成功请求的延迟，以及各状态码的次数
+ * 状态码 -1 表示没有收到响应（超时、连接失败）
+ */
+final class LatencyRecorder {
+
+    private long[] latencies = new long[1024];
+    private int successes;
+    private final Map<Integer, Integer> statuses = new TreeMap<>();
+
+    synchronized void record(long latencyNanos, int status) {
+        statuses.merge(status, 1, Integer::sum);
+        if (status >= 200 && status < 300) {
+            if (successes == latencies.length) {
+                latencies = Arrays.copyOf(latencies, latencies.length * 2);
+            }
+            latencies[successes++] = latencyNanos;
+        }
+    }
+
+    synchronized Summary summarize(String endpoint, int durationSeconds) {
+        long[] sorted = Arrays.copyOf(latencies, successes);
+        Arrays.sort(sorted);
+        int requests = statuses.values().stream().mapToInt(Integer::intValue).sum();
+        int rejected = statuses.getOrDefault(429, 0) + statuses.getOrDefault(503, 0);
+        return new Summary(endpoint, requests, successes, requests - successes, rejected,
+                (double) successes / durationSeconds,
+                percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1_000_000.0,
+                new TreeMap<>(statuses));
+    }
+
+    /**
+     * 最近秩法，单位毫秒
+     */
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(quantile * sorted.length);
+        return sorted[Math.max(0, rank - 1)] / 1_000_000.0;
+    }
+
+    /**
+     * @param throughput 每秒成功请求数
+     * @param rejected 被限流的请求（429、503），也计入 errors
+     */
+    record Summary(String endpoint, int requests, int successes, int errors, int rejected, double throughput,
+                   double p50Millis, double p90Millis, double p99Millis, double maxMillis,
+                   Map<Integer, Integer> statuses) {
+
+        double errorRate() {
+            return requests == 0 ? 0 : (double) errors / requests;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.ubanillx.pdfconverter.loadgen;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 闭环压测：每个并发级别启动相应数量的客户端（虚拟线程），每个客户端收到响应后立即发出下一个请求，
+ * 各客户端轮流调用配置的接口；预热阶段的请求不计入结果
+ */
+public final class LoadGenerator {
+
+    private final LoadOptions options;
+    private final Target target;
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    private LoadGenerator(LoadOptions options, Target target) {
+        this.options = options;
+        this.target = target;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && ("--help".equals(args[0]) || "-h".equals(args[0]))) {
+            System.out.print(LoadOptions.USAGE);
+            return;
+        }
+        LoadOptions options;
+        try {
+            options = LoadOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(LoadOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+
+        try (SourceServer sources = SourceServer.start(options.sourceHost, options.sourcePort, options.sourceSize);
+             ExecutorService httpExecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .executor(httpExecutor)
+                    .build();
+            LoadGenerator generator = new LoadGenerator(options, new Target(client, options, sources));
+
+            List<Report.Level> levels = new ArrayList<>();
+            for (int concurrency : options.concurrency) {
+                Report.Level level = generator.runLevel(concurrency);
+                Report.print(level);
+                levels.add(level);
+            }
+            Report.writeJson(Path.of(options.output), options, levels);
+            System.out.println("Results written to " + options.output);
+        }
+    }
+
+    private Report.Level runLevel(int concurrency) throws InterruptedException {
+        System.out.printf("Running %d client(s): %ds warmup, %ds measured%n",
+                concurrency, options.warmupSeconds, options.durationSeconds);
+        Map<Endpoint, LatencyRecorder> recorders = new EnumMap<>(Endpoint.class);
+        for (Endpoint endpoint : options.endpoints) {
+            recorders.put(endpoint, new LatencyRecorder());
+        }
+
+        long measureStart = System.nanoTime() + TimeUnit.SECONDS.toNanos(options.warmupSeconds);
+        long measureEnd = measureStart + TimeUnit.SECONDS.toNanos(options.durationSeconds);
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                int client = i;
+                clients.submit(() -> runClient(client, measureStart, measureEnd, recorders));
+            }
+        }
+
+        List<LatencyRecorder.Summary> summaries = new ArrayList<>();
+        for (Map.Entry<Endpoint, LatencyRecorder> entry : recorders.entrySet()) {
+            summaries.add(entry.getValue().summarize(entry.getKey().label(), options.durationSeconds));
+        }
+        return new Report.Level(concurrency, summaries);
+    }
+
+    /**
+     * 在测量结束前开始的请求都会等到完成；只有测量阶段内开始的请求计入结果
+     */
+    private void runClient(int client, long measureStart, long measureEnd,
+                           Map<Endpoint, LatencyRecorder> recorders) {
+        List<Endpoint> endpoints = options.endpoints;
+        Target target = this.target.forClient(client);
+        int next = client;
+        while (System.nanoTime() < measureEnd) {
+            Endpoint endpoint = endpoints.get(next++ % endpoints.size());
+            int document = Math.floorMod(sequence.getAndIncrement(), options.documents);
+
+            long start = System.nanoTime();
+            int status;
+            try {
+                status = endpoint.call(target, document);
+            } catch (IOException e) {
+                status = -1;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long latency = System.nanoTime() - start;
+            if (start >= measureStart) {
+                recorders.get(endpoint).record(latency, status);
+            }
+
+            if (options.thinkTimeMillis > 0) {
+                try {
+                    Thread.sleep(options.thinkTimeMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
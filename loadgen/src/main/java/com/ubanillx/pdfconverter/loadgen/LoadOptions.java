@@ -0,0 +1,101 @@
+package com.ubanillx.pdfconverter.loadgen;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 命令行参数，格式为 --名称=值
+ */
+final class LoadOptions {
+
+    static final String USAGE = """
+            Usage: java -jar loadgen.jar [options]
+              --target=URL            service base URL (default http://localhost:8080)
+              --endpoints=LIST        comma separated: convert-url, convert-upload, watermark,
+                                      convert-watermark, jobs (default convert-url,convert-upload,watermark,convert-watermark)
+              --concurrency=LIST      concurrent clients per level (default 10,50,100,200,500)
+              --duration=SECONDS      measured time per level (default 30)
+              --warmup=SECONDS        unmeasured time before each level (default 5)
+              --think-time=MILLIS     pause between requests of one client (default 0)
+              --timeout=SECONDS       request timeout, jobs are polled until this timeout (default 120)
+              --poll-interval=MILLIS  job status polling interval (default 200)
+              --source-host=HOST      address the service uses to fetch sources from this machine (default 127.0.0.1)
+              --source-port=PORT      port of the built-in source server (default 0, any free port)
+              --source-size=BYTES     size of generated text sources (default 65536)
+              --documents=N           distinct source documents, cycled through (default 1000)
+              --client-header=NAME    header carrying a distinct id per client, loadgen-0, loadgen-1, ...
+                                      (default X-Client-Id, empty to send none); the service only
+                                      honours it with app.admission.trust-client-header=true
+              --output=FILE           JSON report (default loadgen-result.json)
+            """;
+
+    String target = "http://localhost:8080";
+    List<Endpoint> endpoints = List.of(Endpoint.CONVERT_URL, Endpoint.CONVERT_UPLOAD, Endpoint.WATERMARK,
+            Endpoint.CONVERT_WATERMARK);
+    List<Integer> concurrency = List.of(10, 50, 100, 200, 500);
+    int durationSeconds = 30;
+    int warmupSeconds = 5;
+    long thinkTimeMillis = 0;
+    int timeoutSeconds = 120;
+    long pollIntervalMillis = 200;
+    String sourceHost = "127.0.0.1";
+    int sourcePort = 0;
+    int sourceSize = 65536;
+    int documents = 1000;
+    String clientHeader = "X-Client-Id";
+    String output = "loadgen-result.json";
+
+    static LoadOptions parse(String[] args) {
+        LoadOptions options = new LoadOptions();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Invalid argument: " + arg);
+            }
+            String name = arg.substring(2, separator);
+            String value = arg.substring(separator + 1);
+            switch (name) {
+                case "target" -> options.target = value.endsWith("/") ? value.substring(0, value.length() - 1) : value;
+                case "endpoints" -> options.endpoints = parseEndpoints(value);
+                case "concurrency" -> options.concurrency = parseIntegers(value);
+                case "duration" -> options.durationSeconds = positive(name, value);
+                case "warmup" -> options.warmupSeconds = Integer.parseInt(value);
+                case "think-time" -> options.thinkTimeMillis = Long.parseLong(value);
+                case "timeout" -> options.timeoutSeconds = positive(name, value);
+                case "poll-interval" -> options.pollIntervalMillis = positive(name, value);
+                case "source-host" -> options.sourceHost = value;
+                case "source-port" -> options.sourcePort = Integer.parseInt(value);
+                case "source-size" -> options.sourceSize = positive(name, value);
+                case "documents" -> options.documents = positive(name, value);
+                case "client-header" -> options.clientHeader = value.trim();
+                case "output" -> options.output = value;
+                default -> throw new IllegalArgumentException("Unknown option: --" + name);
+            }
+        }
+        return options;
+    }
+
+    private static List<Endpoint> parseEndpoints(String value) {
+        List<Endpoint> endpoints = new ArrayList<>();
+        for (String name : value.split(",")) {
+            endpoints.add(Endpoint.of(name.trim()));
+        }
+        return List.copyOf(endpoints);
+    }
+
+    private static List<Integer> parseIntegers(String value) {
+        List<Integer> values = new ArrayList<>();
+        for (String item : value.split(",")) {
+            values.add(positive("concurrency", item.trim()));
+        }
+        return List.copyOf(values);
+    }
+
+    private static int positive(String name, String value) {
+        int parsed = Integer.parseInt(value);
+        if (parsed <= 0) {
+            throw new IllegalArgumentException("--" + name + " must be positive: " + value);
+        }
+        return parsed;
+    }
+}
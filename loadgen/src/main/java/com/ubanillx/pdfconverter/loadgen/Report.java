@@ -0,0 +1,87 @@
+package com.ubanillx.pdfconverter.loadgen;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 压测结果输出：每个并发级别打印一张表，全部结果写成 JSON 便于与历史结果对比
+ */
+final class Report {
+
+    record Level(int concurrency, List<LatencyRecorder.Summary> endpoints) {
+    }
+
+    private Report() {
+    }
+
+    static void print(Level level) {
+        System.out.printf(Locale.ROOT, "%n== %d concurrent client(s) ==%n", level.concurrency());
+        System.out.printf(Locale.ROOT, "%-18s %9s %9s %8s %9s %10s %10s %10s %10s %10s%n",
+                "endpoint", "requests", "errors", "error%", "rejected", "req/s", "p50(ms)", "p90(ms)",
+                "p99(ms)", "max(ms)");
+        for (LatencyRecorder.Summary summary : level.endpoints()) {
+            System.out.printf(Locale.ROOT, "%-18s %9d %9d %7.2f%% %9d %10.2f %10.1f %10.1f %10.1f %10.1f%n",
+                    summary.endpoint(), summary.requests(), summary.errors(), summary.errorRate() * 100,
+                    summary.rejected(), summary.throughput(), summary.p50Millis(), summary.p90Millis(),
+                    summary.p99Millis(), summary.maxMillis());
+        }
+        System.out.println();
+    }
+
+    static void writeJson(Path file, LoadOptions options, List<Level> levels) throws IOException {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"target\": \"").append(escape(options.target)).append("\",\n");
+        json.append("  \"durationSeconds\": ").append(options.durationSeconds).append(",\n");
+        json.append("  \"warmupSeconds\": ").append(options.warmupSeconds).append(",\n");
+        json.append("  \"levels\": [");
+        for (int i = 0; i < levels.size(); i++) {
+            Level level = levels.get(i);
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    {\n      \"concurrency\": ").append(level.concurrency()).append(",\n");
+            json.append("      \"endpoints\": [");
+            for (int j = 0; j < level.endpoints().size(); j++) {
+                json.append(j == 0 ? "\n" : ",\n");
+                appendSummary(json, level.endpoints().get(j));
+            }
+            json.append("\n      ]\n    }");
+        }
+        json.append("\n  ]\n}\n");
+        Files.writeString(file, json, StandardCharsets.UTF_8);
+    }
+
+    private static void appendSummary(StringBuilder json, LatencyRecorder.Summary summary) {
+        json.append("        {");
+        json.append("\"endpoint\": \"").append(escape(summary.endpoint())).append('"');
+        json.append(", \"requests\": ").append(summary.requests());
+        json.append(", \"errors\": ").append(summary.errors());
+        json.append(", \"rejected\": ").append(summary.rejected());
+        json.append(", \"errorRate\": ").append(number(summary.errorRate()));
+        json.append(", \"throughput\": ").append(number(summary.throughput()));
+        json.append(", \"p50Millis\": ").append(number(summary.p50Millis()));
+        json.append(", \"p90Millis\": ").append(number(summary.p90Millis()));
+        json.append(", \"p99Millis\": ").append(number(summary.p99Millis()));
+        json.append(", \"maxMillis\": ").append(number(summary.maxMillis()));
+        json.append(", \"statuses\": {");
+        boolean first = true;
+        for (Map.Entry<Integer, Integer> status : summary.statuses().entrySet()) {
+            json.append(first ? "" : ", ").append('"').append(status.getKey()).append("\": ")
+                    .append(status.getValue());
+            first = false;
+        }
+        json.append("}}");
+    }
+
+    private static String number(double value) {
+        return String.format(Locale.ROOT, "%.4f", value);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,133 @@
+package com.ubanillx.pdfconverter.loadgen;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 为被测服务提供源文件：/sources/doc-编号.txt 为指定大小的文本，/sources/doc-编号.pdf 为单页 PDF
+ * 每个编号的内容不同（避免被转换缓存命中），同一编号每次内容相同
+ */
+final class SourceServer implements AutoCloseable {
+
+    private static final Pattern PATH = Pattern.compile("/sources/doc-(\\d+)\\.(txt|pdf)");
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String baseUrl;
+    private final byte[] filler;
+
+    private SourceServer(HttpServer server, ExecutorService executor, String baseUrl, int sourceSize) {
+        this.server = server;
+        this.executor = executor;
+        this.baseUrl = baseUrl;
+        this.filler = filler(sourceSize);
+    }
+
+    static SourceServer start(String advertisedHost, int port, int sourceSize) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        SourceServer sources = new SourceServer(server, executor,
+                "http://" + advertisedHost + ":" + server.getAddress().getPort(), sourceSize);
+        server.createContext("/sources/", sources::handle);
+        server.start();
+        return sources;
+    }
+
+    static String fileName(int document, String extension) {
+        return "doc-" + document + "." + extension;
+    }
+
+    String url(int document, String extension) {
+        return baseUrl + "/sources/" + fileName(document, extension);
+    }
+
+    byte[] content(int document, String extension) {
+        String title = "Load test document " + document;
+        if ("pdf".equals(extension)) {
+            return pdf(title);
+        }
+        ByteArrayOutputStream content = new ByteArrayOutputStream(filler.length + 64);
+        content.writeBytes((title + "\n\n").getBytes(StandardCharsets.US_ASCII));
+        content.writeBytes(filler);
+        return content.toByteArray();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            Matcher matcher = PATH.matcher(exchange.getRequestURI().getPath());
+            if (!matcher.matches()) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            byte[] body = content(Integer.parseInt(matcher.group(1)), matcher.group(2));
+            exchange.getResponseHeaders().set("Content-Type",
+                    "pdf".equals(matcher.group(2)) ? "application/pdf" : "text/plain; charset=US-ASCII");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private static byte[] filler(int size) {
+        String sentence = "The quick brown fox jumps over the lazy dog while the converter keeps up. ";
+        StringBuilder text = new StringBuilder(size + sentence.length());
+        int line = 0;
+        while (text.length() < size) {
+            text.append(sentence);
+            if (++line % 8 == 0) {
+                text.append('\n');
+            }
+        }
+        text.setLength(size);
+        return text.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * 最小的单页 PDF，按实际偏移写交叉引用表
+     */
+    private static byte[] pdf(String title) {
+        String contents = "BT /F1 24 Tf 72 760 Td (" + title + ") Tj ET";
+        List<String> objects = List.of(
+                "<< /Type /Catalog /Pages 2 0 R >>",
+                "<< /Type /Pages /Kids [3 0 R] /Count 1 >>",
+                "<< /Type /Page /Parent 2 0 R /MediaBox [0 0 595 842] "
+                        + "/Resources << /Font << /F1 4 0 R >> >> /Contents 5 0 R >>",
+                "<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica >>",
+                "<< /Length " + contents.length() + " >>\nstream\n" + contents + "\nendstream");
+
+        StringBuilder pdf = new StringBuilder("%PDF-1.4\n");
+        List<Integer> offsets = new ArrayList<>();
+        for (int i = 0; i < objects.size(); i++) {
+            offsets.add(pdf.length());
+            pdf.append(i + 1).append(" 0 obj\n").append(objects.get(i)).append("\nendobj\n");
+        }
+        int xref = pdf.length();
+        pdf.append("xref\n0 ").append(objects.size() + 1).append("\n0000000000 65535 f \n");
+        for (int offset : offsets) {
+            pdf.append(String.format("%010d 00000 n \n", offset));
+        }
+        pdf.append("trailer\n<< /Size ").append(objects.size() + 1).append(" /Root 1 0 R >>\n")
+                .append("startxref\n").append(xref).append("\n%%EOF\n");
+        return pdf.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+}
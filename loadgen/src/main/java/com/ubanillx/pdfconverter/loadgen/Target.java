@@ -0,0 +1,104 @@
+package com.ubanillx.pdfconverter.loadgen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 被测服务：所有客户端共用一个 HttpClient（HTTP/1.1 连接池）；
+ * 所有请求来自同一个地址，每个模拟的客户端在 client-header 请求头中带上各自的标识，服务才能按客户端限制并发
+ */
+final class Target {
+
+    private final HttpClient client;
+    private final LoadOptions options;
+    private final SourceServer sources;
+    private final String clientId;
+
+    Target(HttpClient client, LoadOptions options, SourceServer sources) {
+        this(client, options, sources, null);
+    }
+
+    private Target(HttpClient client, LoadOptions options, SourceServer sources, String clientId) {
+        this.client = client;
+        this.options = options;
+        this.sources = sources;
+        this.clientId = clientId;
+    }
+
+    /**
+     * 第 client 个模拟客户端发出的请求；client-header 为空时不带客户端标识
+     */
+    Target forClient(int client) {
+        if (options.clientHeader.isEmpty()) {
+            return this;
+        }
+        return new Target(this.client, options, sources, "loadgen-" + client);
+    }
+
+    String sourceUrl(int document, String extension) {
+        return sources.url(document, extension);
+    }
+
+    long timeoutNanos() {
+        return TimeUnit.SECONDS.toNanos(options.timeoutSeconds);
+    }
+
+    long pollIntervalMillis() {
+        return options.pollIntervalMillis;
+    }
+
+    HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return send(request(path).GET().build());
+    }
+
+    HttpResponse<String> postJson(String path, String json) throws IOException, InterruptedException {
+        return send(request(path)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build());
+    }
+
+    /**
+     * 上传一个源文件，并附带一个普通表单字段
+     */
+    HttpResponse<String> postMultipart(String path, int document, String extension, String field, String value)
+            throws IOException, InterruptedException {
+        String boundary = "loadgen-" + UUID.randomUUID();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.writeBytes(("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"" + field + "\"\r\n\r\n"
+                + value + "\r\n"
+                + "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\""
+                + SourceServer.fileName(document, extension) + "\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(sources.content(document, extension));
+        body.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+
+        return send(request(path)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build());
+    }
+
+    private HttpRequest.Builder request(String path) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(options.target + path))
+                .timeout(Duration.ofSeconds(options.timeoutSeconds));
+        if (clientId != null) {
+            builder.header(options.clientHeader, clientId);
+        }
+        return builder;
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -1,22 +1,49 @@
 package com.ubanillx.pdfconverter.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ubanillx.pdfconverter.model.BatchConversionRequest;
+import com.ubanillx.pdfconverter.model.BatchItem;
+import com.ubanillx.pdfconverter.model.ConversionJob;
 import com.ubanillx.pdfconverter.model.ConversionRequest;
 import com.ubanillx.pdfconverter.model.ConversionResponse;
+import com.ubanillx.pdfconverter.model.JobStatus;
+import com.ubanillx.pdfconverter.model.WatermarkOptions;
 import com.ubanillx.pdfconverter.model.WatermarkRequest;
 import com.ubanillx.pdfconverter.model.WatermarkResponse;
+import com.ubanillx.pdfconverter.service.ClientConcurrencyLimiter;
+import com.ubanillx.pdfconverter.service.ConversionCacheService;
+import com.ubanillx.pdfconverter.service.ConversionEngineRouter;
+import com.ubanillx.pdfconverter.service.ConversionJobService;
+import com.ubanillx.pdfconverter.service.ConversionMetrics;
+import com.ubanillx.pdfconverter.service.ConversionWatchdog;
+import com.ubanillx.pdfconverter.service.DocumentConversionService;
 import com.ubanillx.pdfconverter.service.FileStorageService;
 import com.ubanillx.pdfconverter.service.LibreOfficeService;
+import com.ubanillx.pdfconverter.service.StorageReaper;
 import com.ubanillx.pdfconverter.service.DockerLibreOfficeService;
 import com.ubanillx.pdfconverter.service.WatermarkService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/conversion")
@@ -37,12 +64,57 @@ public class ConversionController {
     @Autowired
     private WatermarkService watermarkService;
     
-    // 配置：是否使用 Docker LibreOffice
-    private boolean useDockerLibreOffice = System.getenv("USE_DOCKER_LIBREOFFICE") != null && 
-                                          System.getenv("USE_DOCKER_LIBREOFFICE").equals("true");
+    @Autowired
+    private DocumentConversionService documentConversionService;
+    
+    @Autowired
+    private ConversionJobService conversionJobService;
+    
+    @Autowired
+    private ConversionCacheService conversionCacheService;
+    
+    @Autowired
+    private StorageReaper storageReaper;
+    
+    @Autowired
+    private ConversionMetrics conversionMetrics;
+    
+    @Autowired
+    private ConversionEngineRouter conversionEngineRouter;
+    
+    @Autowired
+    private ConversionWatchdog conversionWatchdog;
+    
+    @Autowired
+    private ClientConcurrencyLimiter clientConcurrencyLimiter;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Value("${app.batch.max-items:100}")
+    private int batchMaxItems;
+    
+    // 标识客户端的请求头（由网关设置），没有时按来源地址限制并发
+    @Value("${app.admission.client-header:X-Client-Id}")
+    private String clientHeader;
+    
+    // 是否信任 client-header 请求头；只有服务部署在会覆盖该请求头的网关之后才能开启，否则客户端可以伪造标识绕过并发限制
+    @Value("${app.admission.trust-client-header:false}")
+    private boolean trustClientHeader;
+    
+    // 转换请求被拒绝（429）时建议客户端重试的等待秒数
+    @Value("${app.admission.retry-after:5}")
+    private int retryAfterSeconds;
+    
+    // 水印任务因内存预算不足被拒绝（503）时建议客户端重试的等待秒数
+    @Value("${app.watermark.retry-after:30}")
+    private int watermarkRetryAfterSeconds;
+    
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
     
     @PostMapping("/convert-url")
-    public ResponseEntity<ConversionResponse> convertFromUrl(@RequestBody ConversionRequest request) {
+    public ResponseEntity<ConversionResponse> convertFromUrl(@RequestBody ConversionRequest request,
+                                                             HttpServletRequest httpRequest) {
         try {
             logger.info("Received conversion request: URL={}, TargetFormat={}", 
                        request.getUrl(), request.getTargetFormat());
@@ -64,49 +136,30 @@ public class ConversionController {
                         .body(new ConversionResponse(false, "不支持的目标格式: " + request.getTargetFormat()));
             }
             
-            // 执行转换
-            File convertedFile;
-            if (useDockerLibreOffice) {
-                convertedFile = dockerLibreOfficeService.convertFile(
-                        request.getUrl(), 
-                        request.getTargetFormat(), 
-                        fileStorageService.getStorageDirectory()
-                );
-            } else {
-                convertedFile = libreOfficeService.convertFile(
-                        request.getUrl(), 
-                        request.getTargetFormat(), 
-                        fileStorageService.getStorageDirectory()
+            // 执行转换并存储结果
+            String originalFormat = getFileExtensionFromUrl(request.getUrl());
+            ConversionResponse response;
+            try (ClientConcurrencyLimiter.Permit permit = clientConcurrencyLimiter.acquire(clientId(httpRequest))) {
+                response = documentConversionService.convert(
+                        request.getUrl(),
+                        request.getTargetFormat(),
+                        originalFormat
                 );
             }
             
-            if (convertedFile == null || !convertedFile.exists()) {
-                return ResponseEntity.internalServerError()
-                        .body(new ConversionResponse(false, "文件转换失败"));
+            if (!response.isSuccess()) {
+                return ResponseEntity.internalServerError().body(response);
             }
             
-            // 存储转换后的文件并生成URL
-            String convertedUrl = fileStorageService.storeFile(convertedFile, convertedFile.getName());
-            // 从URL中提取文件名
-            String storedFileName = convertedUrl.substring(convertedUrl.lastIndexOf('/') + 1);
-            long fileSize = fileStorageService.getFileSize(storedFileName);
-            
-            // 获取原始文件格式
-            String originalFormat = getFileExtensionFromUrl(request.getUrl());
-            
-            ConversionResponse response = new ConversionResponse(
-                    true,
-                    "转换成功",
-                    request.getUrl(),
-                    convertedUrl,
-                    originalFormat,
-                    request.getTargetFormat(),
-                    fileSize
-            );
-            
-            logger.info("Conversion completed successfully: {}", convertedUrl);
+            logger.info("Conversion completed successfully: {}", response.getConvertedUrl());
             return ResponseEntity.ok(response);
             
+        } catch (RejectedExecutionException e) {
+            logger.warn("Conversion rejected: {}", e.getMessage());
+            return tooManyRequests(new ConversionResponse(false, "转换请求过多，请稍后重试"));
+        } catch (ConversionWatchdog.QuarantinedDocumentException e) {
+            return ResponseEntity.unprocessableEntity()
+                    .body(new ConversionResponse(false, "文档多次转换超时，已暂停处理: " + e.getMessage()));
         } catch (Exception e) {
             logger.error("Conversion failed", e);
             return ResponseEntity.internalServerError()
@@ -117,7 +170,8 @@ public class ConversionController {
     @PostMapping("/convert-upload")
     public ResponseEntity<ConversionResponse> convertFromUpload(
             @RequestParam("file") MultipartFile file,
-            @RequestParam("targetFormat") String targetFormat) {
+            @RequestParam("targetFormat") String targetFormat,
+            HttpServletRequest httpRequest) {
         
         try {
             logger.info("Received upload conversion request: File={}, TargetFormat={}", 
@@ -143,62 +197,302 @@ public class ConversionController {
             // 保存上传的文件
             String uploadedUrl = fileStorageService.storeUploadedFile(file);
             
-            // 执行转换
-            File convertedFile;
-            if (useDockerLibreOffice) {
-                convertedFile = dockerLibreOfficeService.convertFile(
-                        uploadedUrl, 
-                        targetFormat, 
-                        fileStorageService.getStorageDirectory()
-                );
-            } else {
-                convertedFile = libreOfficeService.convertFile(
-                        uploadedUrl, 
-                        targetFormat, 
-                        fileStorageService.getStorageDirectory()
+            // 执行转换并存储结果
+            String originalFormat = getFileExtension(file.getOriginalFilename());
+            ConversionResponse response;
+            try (ClientConcurrencyLimiter.Permit permit = clientConcurrencyLimiter.acquire(clientId(httpRequest))) {
+                response = documentConversionService.convert(
+                        uploadedUrl,
+                        targetFormat,
+                        originalFormat
                 );
             }
             
-            if (convertedFile == null || !convertedFile.exists()) {
-                return ResponseEntity.internalServerError()
-                        .body(new ConversionResponse(false, "文件转换失败"));
+            if (!response.isSuccess()) {
+                return ResponseEntity.internalServerError().body(response);
             }
             
-            // 存储转换后的文件并生成URL
-            String convertedUrl = fileStorageService.storeFile(convertedFile, convertedFile.getName());
-            // 从URL中提取文件名
-            String storedFileName = convertedUrl.substring(convertedUrl.lastIndexOf('/') + 1);
-            long fileSize = fileStorageService.getFileSize(storedFileName);
+            logger.info("Upload conversion completed successfully: {}", response.getConvertedUrl());
+            return ResponseEntity.ok(response);
             
-            // 获取原始文件格式
-            String originalFormat = getFileExtension(file.getOriginalFilename());
+        } catch (RejectedExecutionException e) {
+            logger.warn("Conversion rejected: {}", e.getMessage());
+            return tooManyRequests(new ConversionResponse(false, "转换请求过多，请稍后重试"));
+        } catch (ConversionWatchdog.QuarantinedDocumentException e) {
+            return ResponseEntity.unprocessableEntity()
+                    .body(new ConversionResponse(false, "文档多次转换超时，已暂停处理: " + e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Upload conversion failed", e);
+            return ResponseEntity.internalServerError()
+                    .body(new ConversionResponse(false, "转换失败: " + e.getMessage()));
+        }
+    }
+    
+    @PostMapping("/jobs")
+    public ResponseEntity<ConversionJob> submitJob(@RequestBody ConversionRequest request) {
+        logger.info("Received conversion job: URL={}, TargetFormat={}", 
+                   request.getUrl(), request.getTargetFormat());
+        
+        String error = validateConversionRequest(request.getUrl(), request.getTargetFormat());
+        if (error != null) {
+            return ResponseEntity.badRequest().body(rejectedJob(error));
+        }
+        
+        return submitJob(request.getUrl(), request.getTargetFormat(), getFileExtensionFromUrl(request.getUrl()));
+    }
+    
+    @PostMapping("/jobs/upload")
+    public ResponseEntity<ConversionJob> submitUploadJob(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam("targetFormat") String targetFormat) {
+        
+        try {
+            logger.info("Received upload conversion job: File={}, TargetFormat={}", 
+                       file.getOriginalFilename(), targetFormat);
             
-            ConversionResponse response = new ConversionResponse(
-                    true,
-                    "转换成功",
-                    uploadedUrl,
-                    convertedUrl,
-                    originalFormat,
-                    targetFormat,
-                    fileSize
-            );
+            if (file.isEmpty()) {
+                return ResponseEntity.badRequest().body(rejectedJob("上传文件不能为空"));
+            }
             
-            logger.info("Upload conversion completed successfully: {}", convertedUrl);
-            return ResponseEntity.ok(response);
+            String error = validateConversionRequest("upload", targetFormat);
+            if (error != null) {
+                return ResponseEntity.badRequest().body(rejectedJob(error));
+            }
+            
+            // 上传文件只在请求期间有效，需要先保存再排队
+            String uploadedUrl = fileStorageService.storeUploadedFile(file);
+            return submitJob(uploadedUrl, targetFormat, getFileExtension(file.getOriginalFilename()));
             
         } catch (Exception e) {
-            logger.error("Upload conversion failed", e);
+            logger.error("Failed to submit upload conversion job", e);
+            return ResponseEntity.internalServerError().body(rejectedJob("提交失败: " + e.getMessage()));
+        }
+    }
+    
+    /**
+     * 批量转换URL，每个文件完成后立即以一行 JSON（NDJSON）返回结果
+     */
+    @PostMapping("/batch-url")
+    public ResponseEntity<?> convertBatchFromUrls(@RequestBody BatchConversionRequest request,
+                                                  HttpServletRequest httpRequest) {
+        List<String> urls = request.getUrls();
+        logger.info("Received batch conversion request: {} URL(s), TargetFormat={}", 
+                   urls == null ? 0 : urls.size(), request.getTargetFormat());
+        
+        if (urls == null || urls.isEmpty()) {
+            return ResponseEntity.badRequest().body(new ConversionResponse(false, "URL列表不能为空"));
+        }
+        if (urls.size() > batchMaxItems) {
+            return ResponseEntity.badRequest()
+                    .body(new ConversionResponse(false, "单次批量转换最多 " + batchMaxItems + " 个文件"));
+        }
+        
+        // 重复的URL各自作为一项，每项都有自己的结果
+        List<BatchItem> items = new ArrayList<>();
+        for (String url : urls) {
+            String error = validateConversionRequest(url, request.getTargetFormat());
+            if (error != null) {
+                return ResponseEntity.badRequest().body(new ConversionResponse(false, error));
+            }
+            items.add(new BatchItem(items.size(), url, getFileExtensionFromUrl(url)));
+        }
+        
+        return streamBatch(items, request.getTargetFormat(), clientId(httpRequest));
+    }
+    
+    /**
+     * 批量转换上传文件，结果格式同 /batch-url
+     */
+    @PostMapping("/batch-upload")
+    public ResponseEntity<?> convertBatchFromUpload(
+            @RequestParam("files") List<MultipartFile> files,
+            @RequestParam("targetFormat") String targetFormat,
+            HttpServletRequest httpRequest) {
+        
+        logger.info("Received batch upload conversion request: {} file(s), TargetFormat={}", 
+                   files.size(), targetFormat);
+        
+        if (files.isEmpty() || files.stream().anyMatch(MultipartFile::isEmpty)) {
+            return ResponseEntity.badRequest().body(new ConversionResponse(false, "上传文件不能为空"));
+        }
+        
+        String error = validateConversionRequest("upload", targetFormat);
+        if (error != null) {
+            return ResponseEntity.badRequest().body(new ConversionResponse(false, error));
+        }
+        if (files.size() > batchMaxItems) {
+            return ResponseEntity.badRequest()
+                    .body(new ConversionResponse(false, "单次批量转换最多 " + batchMaxItems + " 个文件"));
+        }
+        
+        try {
+            List<BatchItem> items = new ArrayList<>();
+            for (MultipartFile file : files) {
+                items.add(new BatchItem(items.size(), fileStorageService.storeUploadedFile(file),
+                        getFileExtension(file.getOriginalFilename())));
+            }
+            return streamBatch(items, targetFormat, clientId(httpRequest));
+        } catch (Exception e) {
+            logger.error("Failed to store batch upload", e);
             return ResponseEntity.internalServerError()
                     .body(new ConversionResponse(false, "转换失败: " + e.getMessage()));
         }
     }
     
+    private ResponseEntity<?> streamBatch(List<BatchItem> items, String targetFormat, String clientId) {
+        // 整批占用客户端的一个名额，直到结果全部输出
+        ClientConcurrencyLimiter.Permit permit;
+        try {
+            permit = clientConcurrencyLimiter.acquire(clientId);
+        } catch (RejectedExecutionException e) {
+            logger.warn("Batch conversion rejected: {}", e.getMessage());
+            return tooManyRequests(new ConversionResponse(false, "转换请求过多，请稍后重试"));
+        }
+        
+        StreamingResponseBody body = outputStream -> {
+            try (permit) {
+                documentConversionService.convertBatch(items, targetFormat,
+                        response -> writeLine(outputStream, response));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+    
+    private void writeLine(OutputStream outputStream, ConversionResponse response) {
+        try {
+            outputStream.write(objectMapper.writeValueAsBytes(response));
+            outputStream.write('\n');
+            outputStream.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<ConversionJob> getJob(@PathVariable String jobId) {
+        ConversionJob job = conversionJobService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(job);
+    }
+    
+    @GetMapping("/jobs/{jobId}/result")
+    public ResponseEntity<ConversionJob> getJobResult(@PathVariable String jobId) {
+        ConversionJob job = conversionJobService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        switch (job.getStatus()) {
+            case DONE:
+                // 转换完成，重定向到文件下载地址
+                return ResponseEntity.status(HttpStatus.SEE_OTHER)
+                        .location(URI.create(job.getConvertedUrl()))
+                        .body(job);
+            case FAILED:
+                return ResponseEntity.unprocessableEntity().body(job);
+            default:
+                return ResponseEntity.accepted().body(job);
+        }
+    }
+    
+    private ResponseEntity<ConversionJob> submitJob(String sourceUrl, String targetFormat, String originalFormat) {
+        try {
+            ConversionJob job = conversionJobService.submit(sourceUrl, targetFormat, originalFormat);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/conversion/jobs/" + job.getJobId()))
+                    .body(job);
+        } catch (RejectedExecutionException e) {
+            conversionMetrics.recordError(ConversionMetrics.CONVERSION, e);
+            return tooManyRequests(rejectedJob("转换队列已满，请稍后重试"));
+        }
+    }
+    
+    /**
+     * 429 响应，附带建议的重试等待时间
+     */
+    private <T> ResponseEntity<T> tooManyRequests(T body) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(body);
+    }
+    
+    /**
+     * 水印任务超出内存预算时返回 503，附带 app.watermark.retry-after
+     */
+    private ResponseEntity<WatermarkResponse> memoryBudgetExceeded(RejectedExecutionException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(watermarkRetryAfterSeconds))
+                .body(new WatermarkResponse(false, e.getMessage()));
+    }
+    
+    /**
+     * 客户端标识：信任网关时为网关设置的请求头，否则（或请求头为空时）为来源地址
+     */
+    private String clientId(HttpServletRequest request) {
+        String clientId = trustClientHeader ? request.getHeader(clientHeader) : null;
+        return clientId == null || clientId.isBlank() ? request.getRemoteAddr() : clientId.trim();
+    }
+    
+    private ConversionJob rejectedJob(String message) {
+        ConversionJob job = new ConversionJob();
+        job.setStatus(JobStatus.FAILED);
+        job.setMessage(message);
+        return job;
+    }
+    
+    private String validateConversionRequest(String url, String targetFormat) {
+        if (url == null || url.trim().isEmpty()) {
+            return "URL不能为空";
+        }
+        if (targetFormat == null || targetFormat.trim().isEmpty()) {
+            return "目标格式不能为空";
+        }
+        if (!libreOfficeService.isFormatSupported(targetFormat)) {
+            return "不支持的目标格式: " + targetFormat;
+        }
+        return null;
+    }
+    
     @GetMapping("/formats")
     public ResponseEntity<Map<String, String>> getSupportedFormats() {
         Map<String, String> formats = libreOfficeService.getSupportedFormats();
         return ResponseEntity.ok(formats);
     }
     
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(conversionCacheService.getStats());
+    }
+    
+    @GetMapping("/retention/stats")
+    public ResponseEntity<Map<String, Object>> getRetentionStats() {
+        return ResponseEntity.ok(storageReaper.getStats());
+    }
+    
+    @GetMapping("/engines/stats")
+    public ResponseEntity<Map<String, Object>> getEngineStats() {
+        return ResponseEntity.ok(conversionEngineRouter.getStats());
+    }
+    
+    @GetMapping("/admission/stats")
+    public ResponseEntity<Map<String, Object>> getAdmissionStats() {
+        return ResponseEntity.ok(clientConcurrencyLimiter.getStats());
+    }
+    
+    @GetMapping("/watchdog/stats")
+    public ResponseEntity<Map<String, Object>> getWatchdogStats() {
+        return ResponseEntity.ok(conversionWatchdog.getStats());
+    }
+    
+    @GetMapping("/watermark/stats")
+    public ResponseEntity<Map<String, Object>> getWatermarkStats() {
+        return ResponseEntity.ok(watermarkService.getMemoryStats());
+    }
+    
     @PostMapping("/watermark")
     public ResponseEntity<WatermarkResponse> addWatermark(@RequestBody WatermarkRequest request) {
         try {
@@ -210,7 +504,8 @@ public class ConversionController {
                         .body(new WatermarkResponse(false, "URL不能为空"));
             }
             
-            if (request.getWatermarkText() == null || request.getWatermarkText().trim().isEmpty()) {
+            if ((request.getWatermarkText() == null || request.getWatermarkText().trim().isEmpty())
+                    && !request.isImageWatermark()) {
                 return ResponseEntity.badRequest()
                         .body(new WatermarkResponse(false, "水印文字不能为空"));
             }
@@ -224,7 +519,7 @@ public class ConversionController {
             // 执行水印添加
             File watermarkedFile = watermarkService.addWatermarkToPdf(
                     request.getUrl(), 
-                    request.getWatermarkText(), 
+                    request, 
                     new File(fileStorageService.getStorageDirectory())
             );
             
@@ -251,6 +546,11 @@ public class ConversionController {
             logger.info("水印添加完成: {}", watermarkedUrl);
             return ResponseEntity.ok(response);
             
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new WatermarkResponse(false, e.getMessage()));
+        } catch (WatermarkService.MemoryBudgetExceededException e) {
+            return memoryBudgetExceeded(e);
         } catch (Exception e) {
             logger.error("水印添加失败", e);
             return ResponseEntity.internalServerError()
@@ -258,6 +558,84 @@ public class ConversionController {
         }
     }
     
+    /**
+     * 转换为PDF并添加水印，转换结果在服务内直接交给水印处理，只返回最终文件
+     */
+    @PostMapping("/convert-watermark")
+    public ResponseEntity<WatermarkResponse> convertAndWatermark(@RequestBody WatermarkRequest request,
+                                                                 HttpServletRequest httpRequest) {
+        logger.info("收到转换并添加水印请求: URL={}, 水印文字={}", request.getUrl(), request.getWatermarkText());
+        
+        if (request.getUrl() == null || request.getUrl().trim().isEmpty()) {
+            return ResponseEntity.badRequest()
+                    .body(new WatermarkResponse(false, "URL不能为空"));
+        }
+        
+        return runConvertAndWatermark(request.getUrl(), getFileExtensionFromUrl(request.getUrl()), request,
+                clientId(httpRequest));
+    }
+    
+    @PostMapping("/convert-watermark-upload")
+    public ResponseEntity<WatermarkResponse> convertAndWatermarkUpload(
+            @RequestParam("file") MultipartFile file,
+            @ModelAttribute WatermarkOptions options,
+            HttpServletRequest httpRequest) {
+        logger.info("收到上传转换并添加水印请求: File={}, 水印文字={}", file.getOriginalFilename(),
+                options.getWatermarkText());
+        
+        if (file.isEmpty()) {
+            return ResponseEntity.badRequest()
+                    .body(new WatermarkResponse(false, "上传文件不能为空"));
+        }
+        
+        String uploadedUrl;
+        try {
+            uploadedUrl = fileStorageService.storeUploadedFile(file);
+        } catch (IOException e) {
+            logger.error("保存上传文件失败", e);
+            return ResponseEntity.internalServerError()
+                    .body(new WatermarkResponse(false, "保存上传文件失败: " + e.getMessage()));
+        }
+        return runConvertAndWatermark(uploadedUrl, getFileExtension(file.getOriginalFilename()), options,
+                clientId(httpRequest));
+    }
+    
+    private ResponseEntity<WatermarkResponse> runConvertAndWatermark(String sourceUrl, String originalFormat,
+                                                                     WatermarkOptions options, String clientId) {
+        if ((options.getWatermarkText() == null || options.getWatermarkText().trim().isEmpty())
+                && !options.isImageWatermark()) {
+            return ResponseEntity.badRequest()
+                    .body(new WatermarkResponse(false, "水印文字不能为空"));
+        }
+        
+        try {
+            WatermarkResponse response;
+            try (ClientConcurrencyLimiter.Permit permit = clientConcurrencyLimiter.acquire(clientId)) {
+                response = documentConversionService.convertAndWatermark(sourceUrl, options, originalFormat);
+            }
+            if (!response.isSuccess()) {
+                return ResponseEntity.internalServerError().body(response);
+            }
+            return ResponseEntity.ok(response);
+            
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new WatermarkResponse(false, e.getMessage()));
+        } catch (WatermarkService.MemoryBudgetExceededException e) {
+            return memoryBudgetExceeded(e);
+        } catch (RejectedExecutionException e) {
+            logger.warn("Conversion rejected: {}", e.getMessage());
+            return tooManyRequests(new WatermarkResponse(false, e.getMessage()));
+        } catch (ConversionWatchdog.QuarantinedDocumentException e) {
+            return ResponseEntity.unprocessableEntity()
+                    .body(new WatermarkResponse(false, "文档多次转换超时，已暂停处理: " + e.getMessage()));
+        } catch (Exception e) {
+            logger.error("转换并添加水印失败", e);
+            return ResponseEntity.internalServerError()
+                    .body(new WatermarkResponse(false, "转换并添加水印失败: " + e.getMessage()));
+        }
+    }
+    
     @GetMapping("/health")
     public ResponseEntity<ConversionResponse> healthCheck() {
         return ResponseEntity.ok(new ConversionResponse(true, "服务运行正常"));
@@ -266,7 +644,7 @@ public class ConversionController {
     @PostMapping("/docker/start")
     public ResponseEntity<ConversionResponse> startDockerLibreOffice() {
         try {
-            if (!useDockerLibreOffice) {
+            if (!conversionEngineRouter.isEnabled(DockerLibreOfficeService.NAME)) {
                 return ResponseEntity.badRequest()
                         .body(new ConversionResponse(false, "Docker LibreOffice 模式未启用"));
             }
@@ -284,7 +662,7 @@ public class ConversionController {
     @PostMapping("/docker/stop")
     public ResponseEntity<ConversionResponse> stopDockerLibreOffice() {
         try {
-            if (!useDockerLibreOffice) {
+            if (!conversionEngineRouter.isEnabled(DockerLibreOfficeService.NAME)) {
                 return ResponseEntity.badRequest()
                         .body(new ConversionResponse(false, "Docker LibreOffice 模式未启用"));
             }
@@ -0,0 +1,38 @@
+package com.ubanillx.pdfconverter.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+public class BatchConversionRequest {
+    
+    @JsonProperty("urls")
+    private List<String> urls;
+    
+    @JsonProperty("targetFormat")
+    private String targetFormat;
+    
+    public BatchConversionRequest() {}
+    
+    public BatchConversionRequest(List<String> urls, String targetFormat) {
+        this.urls = urls;
+        this.targetFormat = targetFormat;
+    }
+    
+    // Getters and Setters
+    public List<String> getUrls() {
+        return urls;
+    }
+    
+    public void setUrls(List<String> urls) {
+        this.urls = urls;
+    }
+    
+    public String getTargetFormat() {
+        return targetFormat;
+    }
+    
+    public void setTargetFormat(String targetFormat) {
+        this.targetFormat = targetFormat;
+    }
+}
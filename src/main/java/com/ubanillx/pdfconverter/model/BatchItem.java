@@ -0,0 +1,10 @@
+package com.ubanillx.pdfconverter.model;
+
+/**
+ * 批量转换中的一项
+ * @param index 在请求中的序号（从 0 开始），结果按序号对应到请求项
+ * @param url 源文件URL，同一批中可以重复
+ * @param format 原始文件格式
+ */
+public record BatchItem(int index, String url, String format) {
+}
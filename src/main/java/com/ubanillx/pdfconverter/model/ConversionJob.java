@@ -0,0 +1,150 @@
+package com.ubanillx.pdfconverter.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class ConversionJob {
+    
+    @JsonProperty("jobId")
+    private String jobId;
+    
+    @JsonProperty("status")
+    private volatile JobStatus status;
+    
+    @JsonProperty("message")
+    private volatile String message;
+    
+    @JsonProperty("originalUrl")
+    private String originalUrl;
+    
+    @JsonProperty("originalFormat")
+    private String originalFormat;
+    
+    @JsonProperty("targetFormat")
+    private String targetFormat;
+    
+    @JsonProperty("convertedUrl")
+    private volatile String convertedUrl;
+    
+    @JsonProperty("fileSize")
+    private volatile long fileSize;
+    
+    @JsonProperty("attempts")
+    private volatile int attempts;
+    
+    @JsonProperty("submittedAt")
+    private long submittedAt;
+    
+    @JsonProperty("startedAt")
+    private volatile long startedAt;
+    
+    @JsonProperty("finishedAt")
+    private volatile long finishedAt;
+    
+    public ConversionJob() {}
+    
+    public ConversionJob(String jobId, String originalUrl, String originalFormat, String targetFormat) {
+        this.jobId = jobId;
+        this.originalUrl = originalUrl;
+        this.originalFormat = originalFormat;
+        this.targetFormat = targetFormat;
+        this.status = JobStatus.QUEUED;
+        this.submittedAt = System.currentTimeMillis();
+    }
+    
+    // Getters and Setters
+    public String getJobId() {
+        return jobId;
+    }
+    
+    public void setJobId(String jobId) {
+        this.jobId = jobId;
+    }
+    
+    public JobStatus getStatus() {
+        return status;
+    }
+    
+    public void setStatus(JobStatus status) {
+        this.status = status;
+    }
+    
+    public String getMessage() {
+        return message;
+    }
+    
+    public void setMessage(String message) {
+        this.message = message;
+    }
+    
+    public String getOriginalUrl() {
+        return originalUrl;
+    }
+    
+    public void setOriginalUrl(String originalUrl) {
+        this.originalUrl = originalUrl;
+    }
+    
+    public String getOriginalFormat() {
+        return originalFormat;
+    }
+    
+    public void setOriginalFormat(String originalFormat) {
+        this.originalFormat = originalFormat;
+    }
+    
+    public String getTargetFormat() {
+        return targetFormat;
+    }
+    
+    public void setTargetFormat(String targetFormat) {
+        this.targetFormat = targetFormat;
+    }
+    
+    public String getConvertedUrl() {
+        return convertedUrl;
+    }
+    
+    public void setConvertedUrl(String convertedUrl) {
+        this.convertedUrl = convertedUrl;
+    }
+    
+    public long getFileSize() {
+        return fileSize;
+    }
+    
+    public void setFileSize(long fileSize) {
+        this.fileSize = fileSize;
+    }
+    
+    public int getAttempts() {
+        return attempts;
+    }
+    
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+    
+    public long getSubmittedAt() {
+        return submittedAt;
+    }
+    
+    public void setSubmittedAt(long submittedAt) {
+        this.submittedAt = submittedAt;
+    }
+    
+    public long getStartedAt() {
+        return startedAt;
+    }
+    
+    public void setStartedAt(long startedAt) {
+        this.startedAt = startedAt;
+    }
+    
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+    
+    public void setFinishedAt(long finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+}
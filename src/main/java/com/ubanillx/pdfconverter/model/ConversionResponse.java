@@ -1,5 +1,6 @@
 package com.ubanillx.pdfconverter.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 public class ConversionResponse {
@@ -25,6 +26,11 @@ public class ConversionResponse {
     @JsonProperty("fileSize")
     private long fileSize;
     
+    // 批量转换中对应请求项的序号，其他接口不输出
+    @JsonProperty("index")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer index;
+    
     public ConversionResponse() {}
     
     public ConversionResponse(boolean success, String message) {
@@ -100,4 +106,12 @@ public class ConversionResponse {
     public void setFileSize(long fileSize) {
         this.fileSize = fileSize;
     }
+    
+    public Integer getIndex() {
+        return index;
+    }
+    
+    public void setIndex(Integer index) {
+        this.index = index;
+    }
 }
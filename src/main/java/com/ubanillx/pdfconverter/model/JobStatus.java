@@ -0,0 +1,26 @@
+package com.ubanillx.pdfconverter.model;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+public enum JobStatus {
+    
+    QUEUED("queued"),
+    RUNNING("running"),
+    DONE("done"),
+    FAILED("failed");
+    
+    private final String value;
+    
+    JobStatus(String value) {
+        this.value = value;
+    }
+    
+    @JsonValue
+    public String getValue() {
+        return value;
+    }
+    
+    public boolean isFinished() {
+        return this == DONE || this == FAILED;
+    }
+}
@@ -0,0 +1,187 @@
+package com.ubanillx.pdfconverter.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * 水印样式参数，未设置的字段使用默认值
+ * 相同参数的水印只编译一次模板（见 WatermarkService），因此所有字段都参与 {@link #cacheKey()}
+ */
+public class WatermarkOptions {
+
+    // 水印文字，与 imageUrl 至少设置一个
+    @JsonProperty("watermarkText")
+    private String watermarkText;
+
+    // 图片水印地址，设置后绘制图片而不是文字
+    @JsonProperty("imageUrl")
+    private String imageUrl;
+
+    // 图片缩放比例（相对图片原始像素尺寸）
+    @JsonProperty("imageScale")
+    private Float imageScale;
+
+    // 字体名称：标准字体（Helvetica、Times-Roman、Courier 等）或中日韩字体（STSong-Light、MSung-Light、
+    // HeiseiMin-W3、HYGoThic-Medium 等），不设置时按文字内容自动选择
+    @JsonProperty("fontName")
+    private String fontName;
+
+    @JsonProperty("fontSize")
+    private Float fontSize;
+
+    // 文字颜色，#RRGGBB
+    @JsonProperty("color")
+    private String color;
+
+    // 不透明度，0 到 1
+    @JsonProperty("opacity")
+    private Float opacity;
+
+    // 旋转角度（度，逆时针）
+    @JsonProperty("rotation")
+    private Float rotation;
+
+    // 位置：center、top-left、top、top-right、left、right、bottom-left、bottom、bottom-right
+    @JsonProperty("position")
+    private String position;
+
+    // 是否平铺整页
+    @JsonProperty("tiled")
+    private Boolean tiled;
+
+    // 平铺间距（pt）
+    @JsonProperty("tileSpacing")
+    private Float tileSpacing;
+
+    // 页码选择：all、first、last、odd、even、页码和区间（如 1-3,5,10-），多个用逗号分隔
+    @JsonProperty("pages")
+    private String pages;
+
+    public WatermarkOptions() {}
+
+    public WatermarkOptions(String watermarkText) {
+        this.watermarkText = watermarkText;
+    }
+
+    /**
+     * 模板缓存键，字段取规范化后的值，默认值和显式设置为默认值的参数得到同一个键
+     */
+    @JsonIgnore
+    public String cacheKey() {
+        return String.join("\u0000",
+                String.valueOf(watermarkText),
+                String.valueOf(imageUrl),
+                String.valueOf(getImageScale()),
+                String.valueOf(fontName),
+                String.valueOf(getFontSize()),
+                getColor().toLowerCase(),
+                String.valueOf(getOpacity()),
+                String.valueOf(getRotation()),
+                getPosition().toLowerCase(),
+                String.valueOf(isTiled()),
+                String.valueOf(getTileSpacing()),
+                getPages().toLowerCase().replace(" ", ""));
+    }
+
+    @JsonIgnore
+    public boolean isImageWatermark() {
+        return imageUrl != null && !imageUrl.trim().isEmpty();
+    }
+
+    // Getters and Setters
+    public String getWatermarkText() {
+        return watermarkText;
+    }
+
+    public void setWatermarkText(String watermarkText) {
+        this.watermarkText = watermarkText;
+    }
+
+    public String getImageUrl() {
+        return imageUrl;
+    }
+
+    public void setImageUrl(String imageUrl) {
+        this.imageUrl = imageUrl;
+    }
+
+    public float getImageScale() {
+        return imageScale != null ? imageScale : 1.0f;
+    }
+
+    public void setImageScale(Float imageScale) {
+        this.imageScale = imageScale;
+    }
+
+    public String getFontName() {
+        return fontName;
+    }
+
+    public void setFontName(String fontName) {
+        this.fontName = fontName;
+    }
+
+    public float getFontSize() {
+        return fontSize != null ? fontSize : 50f;
+    }
+
+    public void setFontSize(Float fontSize) {
+        this.fontSize = fontSize;
+    }
+
+    public String getColor() {
+        return color != null ? color : "#C0C0C0";
+    }
+
+    public void setColor(String color) {
+        this.color = color;
+    }
+
+    public float getOpacity() {
+        return opacity != null ? opacity : 0.3f;
+    }
+
+    public void setOpacity(Float opacity) {
+        this.opacity = opacity;
+    }
+
+    public float getRotation() {
+        return rotation != null ? rotation : 45f;
+    }
+
+    public void setRotation(Float rotation) {
+        this.rotation = rotation;
+    }
+
+    public String getPosition() {
+        return position != null ? position : "center";
+    }
+
+    public void setPosition(String position) {
+        this.position = position;
+    }
+
+    public boolean isTiled() {
+        return tiled != null && tiled;
+    }
+
+    public void setTiled(Boolean tiled) {
+        this.tiled = tiled;
+    }
+
+    public float getTileSpacing() {
+        return tileSpacing != null ? tileSpacing : 100f;
+    }
+
+    public void setTileSpacing(Float tileSpacing) {
+        this.tileSpacing = tileSpacing;
+    }
+
+    public String getPages() {
+        return pages != null ? pages : "all";
+    }
+
+    public void setPages(String pages) {
+        this.pages = pages;
+    }
+}
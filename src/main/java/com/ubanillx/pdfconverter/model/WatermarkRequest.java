@@ -2,19 +2,19 @@ package com.ubanillx.pdfconverter.model;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 
-public class WatermarkRequest {
+/**
+ * 水印请求：源文件地址加水印样式参数（见 {@link WatermarkOptions}）
+ */
+public class WatermarkRequest extends WatermarkOptions {
     
     @JsonProperty("url")
     private String url;
     
-    @JsonProperty("watermarkText")
-    private String watermarkText;
-    
     public WatermarkRequest() {}
     
     public WatermarkRequest(String url, String watermarkText) {
+        super(watermarkText);
         this.url = url;
-        this.watermarkText = watermarkText;
     }
     
     // Getters and Setters
@@ -25,13 +25,4 @@ public class WatermarkRequest {
     public void setUrl(String url) {
         this.url = url;
     }
-    
-    public String getWatermarkText() {
-        return watermarkText;
-    }
-    
-    public void setWatermarkText(String watermarkText) {
-        this.watermarkText = watermarkText;
-    }
 }
-
@@ -0,0 +1,17 @@
+package com.ubanillx.pdfconverter.service;
+
+import java.io.File;
+
+/**
+ * 批量转换中单个文件的结果回调
+ */
+@FunctionalInterface
+public interface BatchConversionCallback {
+    
+    /**
+     * @param sourceUrl 源文件URL
+     * @param outputFile 转换结果，失败时为 null
+     * @param error 失败原因，成功时为 null
+     */
+    void onResult(String sourceUrl, File outputFile, Exception error);
+}
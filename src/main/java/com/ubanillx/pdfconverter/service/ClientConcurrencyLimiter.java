@@ -0,0 +1,95 @@
+package com.ubanillx.pdfconverter.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 按客户端限制同时进行的同步转换数，避免单个客户端的突发请求占满所有转换引擎；
+ * 超过限制的请求立即拒绝，不进入引擎的等待队列
+ */
+@Service
+public class ClientConcurrencyLimiter {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 每个客户端同时进行的转换数，0 表示不限制
+    @Value("${app.admission.per-client.max-concurrent:4}")
+    private int maxConcurrentPerClient;
+
+    // 客户端 -> 进行中的转换数，没有进行中的转换时移除
+    private final Map<String, Integer> active = new ConcurrentHashMap<>();
+
+    private Counter rejections;
+
+    /**
+     * 转换名额，转换结束后关闭以归还；重复关闭无效
+     */
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    @PostConstruct
+    public void init() {
+        rejections = Counter.builder("pdfconverter.admission.client.rejections")
+                .description("Conversions rejected because the client reached its concurrency limit")
+                .register(meterRegistry);
+        Gauge.builder("pdfconverter.admission.clients", active, Map::size)
+                .description("Clients with conversions in progress")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 为客户端占用一个转换名额
+     * @param clientId 客户端标识（网关设置的请求头或来源地址）
+     * @throws RejectedExecutionException 客户端进行中的转换已达到上限
+     */
+    public Permit acquire(String clientId) {
+        if (maxConcurrentPerClient <= 0) {
+            return () -> { };
+        }
+
+        AtomicBoolean admitted = new AtomicBoolean();
+        active.compute(clientId, (key, count) -> {
+            int current = count == null ? 0 : count;
+            if (current >= maxConcurrentPerClient) {
+                return count;
+            }
+            admitted.set(true);
+            return current + 1;
+        });
+        if (!admitted.get()) {
+            rejections.increment();
+            throw new RejectedExecutionException("Client " + clientId + " already has "
+                    + maxConcurrentPerClient + " conversion(s) in progress");
+        }
+
+        AtomicBoolean released = new AtomicBoolean();
+        return () -> {
+            if (released.compareAndSet(false, true)) {
+                active.computeIfPresent(clientId, (key, count) -> count <= 1 ? null : count - 1);
+            }
+        };
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxConcurrentPerClient", maxConcurrentPerClient);
+        stats.put("activeClients", active.size());
+        stats.put("inFlight", active.values().stream().mapToInt(Integer::intValue).sum());
+        stats.put("rejected", (long) rejections.count());
+        return stats;
+    }
+}
@@ -0,0 +1,289 @@
+package com.ubanillx.pdfconverter.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 转换结果缓存
+ * 以 SHA-256(源文件内容 + 目标格式 + 过滤器参数) 为键保存转换结果，命中时直接以硬链接复用已有结果，
+ * 缓存目录按总大小做 LRU 淘汰；访问顺序只保存在内存中，缓存文件与存储的结果共用 inode，
+ * 命中时不修改文件的修改时间（否则会改变存储文件的 ETag / Last-Modified，也会推迟保留期清理）
+ */
+@Service
+public class ConversionCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversionCacheService.class);
+
+    // 写入中的临时文件：.{key}_{nanoTime}.tmp
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    @Value("${app.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.cache.directory:./cache}")
+    private String cacheDirectory;
+
+    @Value("${app.cache.max-size:1073741824}")
+    private long maxSizeBytes;
+
+    // accessOrder=true，迭代顺序即最近最少使用顺序
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private static class CacheEntry {
+        final Path path;
+        final long size;
+
+        CacheEntry(Path path, long size) {
+            this.path = path;
+            this.size = size;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            logger.info("Conversion cache disabled");
+            return;
+        }
+
+        try {
+            Path cachePath = Paths.get(cacheDirectory);
+            Files.createDirectories(cachePath);
+
+            // 按写入时间恢复近似的 LRU 顺序；上次进程在写入途中退出留下的临时文件直接删除
+            List<Path> files = new ArrayList<>();
+            List<Path> staleTemps = new ArrayList<>();
+            try (Stream<Path> stream = Files.list(cachePath)) {
+                stream.filter(Files::isRegularFile).forEach(path -> {
+                    String name = path.getFileName().toString();
+                    if (isTempFile(name)) {
+                        staleTemps.add(path);
+                    } else if (!name.startsWith(".")) {
+                        files.add(path);
+                    }
+                });
+            }
+            for (Path temp : staleTemps) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    logger.warn("Failed to delete stale cache temp file {}: {}", temp, e.getMessage());
+                }
+            }
+            if (!staleTemps.isEmpty()) {
+                logger.info("Deleted {} stale temp file(s) from conversion cache", staleTemps.size());
+            }
+            files.sort(Comparator.comparing(this::lastModified));
+
+            synchronized (this) {
+                for (Path file : files) {
+                    String key = stripExtension(file.getFileName().toString());
+                    long size = Files.size(file);
+                    entries.put(key, new CacheEntry(file, size));
+                    totalBytes += size;
+                }
+                evictIfNecessary();
+            }
+            logger.info("Conversion cache ready: {} entries, {} bytes in {}", entries.size(), totalBytes,
+                    cachePath.toAbsolutePath());
+        } catch (IOException e) {
+            logger.error("Failed to initialize conversion cache, disabling it: {}", e.getMessage());
+            enabled = false;
+        }
+    }
+
+    /**
+     * 计算缓存键
+     * @param sourceFile 源文件
+     * @param targetFormat 目标格式
+     * @param filterOptions 影响输出的转换参数（过滤器名称等）
+     */
+    public String computeKey(File sourceFile, String targetFormat, String filterOptions) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[64 * 1024];
+            try (InputStream in = Files.newInputStream(sourceFile.toPath())) {
+                int bytesRead;
+                while ((bytesRead = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, bytesRead);
+                }
+            }
+            digest.update((byte) 0);
+            digest.update(targetFormat.toLowerCase().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(filterOptions).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * 查找缓存，命中时把缓存结果链接到 outputFile
+     * @return 是否命中
+     */
+    public boolean lookup(String key, File outputFile) {
+        if (!enabled) {
+            return false;
+        }
+
+        CacheEntry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry == null || !Files.exists(entry.path)) {
+            misses.incrementAndGet();
+            return false;
+        }
+
+        try {
+            Files.createDirectories(outputFile.toPath().toAbsolutePath().getParent());
+            linkOrCopy(entry.path, outputFile.toPath());
+            hits.incrementAndGet();
+            logger.info("Conversion cache hit: {} -> {}", key, outputFile.getName());
+            return true;
+        } catch (IOException e) {
+            logger.warn("Failed to reuse cached conversion {}: {}", key, e.getMessage());
+            misses.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * 保存转换结果到缓存，失败时只记录日志，不影响转换本身
+     */
+    public void store(String key, File outputFile) {
+        if (!enabled || outputFile == null || !outputFile.exists()) {
+            return;
+        }
+
+        try {
+            Path cachePath = Paths.get(cacheDirectory);
+            String extension = getFileExtension(outputFile.getName());
+            Path target = cachePath.resolve(extension.isEmpty() ? key : key + "." + extension);
+            Path temp = cachePath.resolve("." + key + "_" + System.nanoTime() + TEMP_SUFFIX);
+
+            try {
+                linkOrCopy(outputFile.toPath(), temp);
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            long size = Files.size(target);
+
+            synchronized (this) {
+                CacheEntry previous = entries.put(key, new CacheEntry(target, size));
+                if (previous != null) {
+                    totalBytes -= previous.size;
+                }
+                totalBytes += size;
+                evictIfNecessary();
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to store conversion result in cache: {}", e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        synchronized (this) {
+            stats.put("entries", entries.size());
+            stats.put("sizeBytes", totalBytes);
+        }
+        stats.put("maxSizeBytes", maxSizeBytes);
+        return stats;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    // 调用方需持有锁
+    private void evictIfNecessary() {
+        Iterator<Map.Entry<String, CacheEntry>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxSizeBytes && iterator.hasNext()) {
+            CacheEntry entry = iterator.next().getValue();
+            iterator.remove();
+            totalBytes -= entry.size;
+            evictions.incrementAndGet();
+            try {
+                Files.deleteIfExists(entry.path);
+            } catch (IOException e) {
+                logger.warn("Failed to delete evicted cache file {}: {}", entry.path, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 优先使用硬链接（零拷贝），跨文件系统时退化为复制
+     */
+    private void linkOrCopy(Path source, Path target) throws IOException {
+        Files.deleteIfExists(target);
+        try {
+            Files.createLink(target, source);
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static boolean isTempFile(String fileName) {
+        return fileName.startsWith(".") && fileName.endsWith(TEMP_SUFFIX);
+    }
+
+    private String stripExtension(String fileName) {
+        int lastDotIndex = fileName.lastIndexOf('.');
+        return lastDotIndex > 0 ? fileName.substring(0, lastDotIndex) : fileName;
+    }
+
+    private String getFileExtension(String fileName) {
+        int lastDotIndex = fileName.lastIndexOf('.');
+        if (lastDotIndex > 0 && lastDotIndex < fileName.length() - 1) {
+            return fileName.substring(lastDotIndex + 1).toLowerCase();
+        }
+        return "";
+    }
+}
@@ -0,0 +1,52 @@
+package com.ubanillx.pdfconverter.service;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * 文档转换引擎
+ * {@link ConversionEngineRouter} 在 app.conversion.engines 配置的引擎之间为每个请求选择一个执行转换
+ */
+public interface ConversionEngine {
+
+    /**
+     * 引擎名称，即 app.conversion.engines 中的取值
+     */
+    String getName();
+
+    /**
+     * 转换单个文件
+     * @param sourceUrl 源文件URL
+     * @param targetFormat 目标格式
+     * @param outputDir 输出目录
+     * @return 输出目录中的转换结果
+     */
+    File convertFile(String sourceUrl, String targetFormat, String outputDir) throws Exception;
+
+    /**
+     * 批量转换，每个文件完成后立即回调结果；单个文件失败不影响其余文件
+     */
+    void convertFiles(List<String> sourceUrls, String targetFormat, String outputDir,
+                      BatchConversionCallback callback);
+
+    /**
+     * 可以同时执行的转换数，路由按进行中的转换数与它的比值衡量引擎的负载
+     */
+    default int getCapacity() {
+        return 1;
+    }
+
+    /**
+     * 引擎当前能否执行转换（office 进程已启动、容器在运行等）
+     */
+    default boolean isHealthy() {
+        return true;
+    }
+
+    /**
+     * 是否支持转换为目标格式
+     */
+    default boolean supportsFormat(String targetFormat) {
+        return true;
+    }
+}
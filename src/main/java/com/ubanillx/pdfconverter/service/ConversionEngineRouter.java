@@ -0,0 +1,494 @@
+package com.ubanillx.pdfconverter.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 为每次转换选择引擎：
+ * 先按 app.conversion.route.引擎名.formats / max-file-size 和引擎支持的目标格式过滤，
+ * 再跳过不可用（健康检查失败，或连续失败后暂停）和饱和（进行中的转换达到容量 + max-queue）的引擎，
+ * 在剩下的引擎中选负载（进行中 / 容量）最低的，负载相同时按 app.conversion.engines 的顺序，没有可用的引擎时拒绝；
+ * 引擎一侧的失败（office 崩溃、阶段超时、docker exec 失败等）计入引擎的连续失败次数，并换一个可用的引擎重试一次；
+ * 源文件和输入的错误（下载失败、文件过大、URL 不支持、文档无法加载，见 {@link #isSourceError}）直接交给调用方。
+ * 每个引擎同时执行的转换数不超过容量，超出的转换在引擎的等待队列中最多等待 max-wait 毫秒，
+ * 队列已满或等待超时时抛出 RejectedExecutionException，由接口返回 429；
+ * 异步任务和批量转换的分组已经被接受（任务已入队、批量接口已开始输出结果），转换时不受队列长度和等待时间限制，
+ * 一直排队到引擎有空闲名额；它们单独计数，不占用同步请求的等待队列，也不使引擎饱和，
+ * 有同步请求在排队时空出的名额先给同步请求
+ */
+@Service
+public class ConversionEngineRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversionEngineRouter.class);
+
+    @Autowired
+    private List<ConversionEngine> availableEngines;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private Environment environment;
+
+    // 使用的引擎，逗号分隔，按优先顺序；留空时按环境变量 USE_DOCKER_LIBREOFFICE 选择 docker 或 uno
+    @Value("${app.conversion.engines:}")
+    private String engineNames;
+
+    // 每个引擎在并发容量之外最多排队的转换数，达到后视为饱和
+    @Value("${app.conversion.router.max-queue:4}")
+    private int maxQueue;
+
+    // 排队的转换最多等待的时间，超时后拒绝
+    @Value("${app.conversion.router.max-wait:10000}")
+    private long maxWaitMillis;
+
+    // 连续失败达到该次数后暂停使用引擎 failure-cooldown 毫秒
+    @Value("${app.conversion.router.failure-threshold:3}")
+    private int failureThreshold;
+
+    @Value("${app.conversion.router.failure-cooldown:30000}")
+    private long failureCooldownMillis;
+
+    // 转换失败后是否换一个引擎重试
+    @Value("${app.conversion.router.fallback-on-error:true}")
+    private boolean fallbackOnError;
+
+    private final List<EngineState> engines = new ArrayList<>();
+
+    @PostConstruct
+    public void init() {
+        for (String name : configuredEngines(engineNames)) {
+            ConversionEngine engine = availableEngines.stream()
+                    .filter(candidate -> candidate.getName().equals(name))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalStateException("Unknown conversion engine: " + name));
+            String routePrefix = "app.conversion.route." + name + ".";
+            EngineState state = new EngineState(engine,
+                    parseFormats(environment.getProperty(routePrefix + "formats", "")),
+                    environment.getProperty(routePrefix + "max-file-size", Long.class, 0L));
+            Gauge.builder("pdfconverter.engine.inflight", state, EngineState::inFlight)
+                    .description("Conversions running or queued on the engine")
+                    .tag("engine", name)
+                    .register(meterRegistry);
+            Gauge.builder("pdfconverter.engine.queue", state, EngineState::queued)
+                    .description("Conversions waiting for a free slot on the engine")
+                    .tag("engine", name)
+                    .register(meterRegistry);
+            Gauge.builder("pdfconverter.engine.queue.background", state, EngineState::backgroundQueued)
+                    .description("Accepted jobs and batch groups waiting for a free slot on the engine")
+                    .tag("engine", name)
+                    .register(meterRegistry);
+            engines.add(state);
+        }
+        logger.info("Using conversion engines: {}", configuredEngines(engineNames));
+    }
+
+    /**
+     * 解析 app.conversion.engines；未配置时只使用一个引擎，由环境变量 USE_DOCKER_LIBREOFFICE 决定
+     */
+    static List<String> configuredEngines(String engineNames) {
+        Set<String> names = new LinkedHashSet<>();
+        if (engineNames != null) {
+            for (String name : engineNames.split(",")) {
+                if (!name.isBlank()) {
+                    names.add(name.trim().toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        if (names.isEmpty()) {
+            boolean useDockerLibreOffice = "true".equals(System.getenv("USE_DOCKER_LIBREOFFICE"));
+            names.add(useDockerLibreOffice ? DockerLibreOfficeService.NAME : LibreOfficeService.NAME);
+        }
+        return new ArrayList<>(names);
+    }
+
+    /**
+     * 引擎是否在 app.conversion.engines 中启用
+     */
+    public boolean isEnabled(String name) {
+        return engines.stream().anyMatch(state -> state.engine.getName().equals(name));
+    }
+
+    /**
+     * 选择引擎转换单个文件，引擎饱和时拒绝（同步接口使用）
+     * @param sourceFormat 源文件格式，用于按格式路由
+     * @throws RejectedExecutionException 所有可用的引擎都已饱和，或排队等待超时
+     */
+    public File convertFile(String sourceUrl, String sourceFormat, String targetFormat,
+                            String outputDir) throws Exception {
+        return convertFile(sourceUrl, sourceFormat, targetFormat, outputDir, false);
+    }
+
+    /**
+     * 选择引擎转换单个文件
+     * @param waitForCapacity 为 true 时引擎饱和也不拒绝，一直排队到有空闲名额（异步任务使用：
+     *                        任务已经被接受，不能因为负载失败；任务的并发由任务线程数限制，
+     *                        排队的任务不计入同步请求的等待队列）
+     */
+    public File convertFile(String sourceUrl, String sourceFormat, String targetFormat,
+                            String outputDir, boolean waitForCapacity) throws Exception {
+        long sourceSize = sourceSize(sourceUrl);
+        EngineState selected = select(sourceFormat, targetFormat, sourceSize, null, waitForCapacity);
+        try {
+            return execute(selected, sourceUrl, targetFormat, outputDir, waitForCapacity);
+        } catch (Exception e) {
+            // 源文件的错误和被隔离的文档在其他引擎上同样会失败，不再重试
+            EngineState fallback = fallbackOnError && !isSourceError(e) && !isQuarantined(e)
+                    ? select(sourceFormat, targetFormat, sourceSize, selected, waitForCapacity) : null;
+            if (fallback == null) {
+                throw e;
+            }
+            logger.warn("Conversion of {} failed on engine {} ({}), retrying on engine {}",
+                    sourceUrl, selected.engine.getName(), e.getMessage(), fallback.engine.getName());
+            fallback.fallbacks.increment();
+            try {
+                return execute(fallback, sourceUrl, targetFormat, outputDir, waitForCapacity);
+            } catch (RejectedExecutionException rejected) {
+                // 重试的引擎已经排满时报告原来的错误
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 整批交给同一个引擎；批量转换的结果已经逐个回调，失败时不再换引擎
+     * 批量接口在转换前已经开始输出结果，不能再返回 429，因此和异步任务一样排队等待空闲名额；
+     * 分组的并发由批量线程池（app.batch.parallelism）限制
+     * @param sourceFormat 整批相同的源格式，格式不一致时为 null
+     */
+    public void convertFiles(List<String> sourceUrls, String sourceFormat, String targetFormat, String outputDir,
+                             BatchConversionCallback callback) {
+        EngineState selected;
+        try {
+            selected = select(sourceFormat, targetFormat, -1, null, true);
+        } catch (RuntimeException e) {
+            for (String sourceUrl : sourceUrls) {
+                callback.onResult(sourceUrl, null, e);
+            }
+            return;
+        }
+
+        // 整批只占用一个并发名额：批量转换在引擎中串行执行（复用同一个实例或一次 docker exec）
+        try {
+            selected.acquire(true);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (String sourceUrl : sourceUrls) {
+                callback.onResult(sourceUrl, null, e);
+            }
+            return;
+        }
+        selected.routed.incrementAndGet();
+        try {
+            selected.engine.convertFiles(sourceUrls, targetFormat, outputDir, (sourceUrl, outputFile, error) -> {
+                if (!isSourceError(error) && !isQuarantined(error)) {
+                    selected.recordResult(error == null);
+                }
+                callback.onResult(sourceUrl, outputFile, error);
+            });
+        } finally {
+            selected.release();
+        }
+    }
+
+    private File execute(EngineState state, String sourceUrl, String targetFormat,
+                         String outputDir, boolean waitForCapacity) throws Exception {
+        state.acquire(waitForCapacity);
+        state.routed.incrementAndGet();
+        boolean succeeded = false;
+        boolean engineFailure = true;
+        try {
+            File outputFile = state.engine.convertFile(sourceUrl, targetFormat, outputDir);
+            succeeded = true;
+            return outputFile;
+        } catch (Exception e) {
+            engineFailure = !isSourceError(e) && !isQuarantined(e);
+            throw e;
+        } finally {
+            state.release();
+            // 源文件有误或文档被隔离而失败时引擎并没有失败，不影响引擎的暂停判断
+            if (succeeded || engineFailure) {
+                state.recordResult(succeeded);
+            }
+        }
+    }
+
+    private static boolean isQuarantined(Throwable error) {
+        return error instanceof ConversionWatchdog.QuarantinedDocumentException;
+    }
+
+    /**
+     * 源文件或请求参数的错误：下载失败、文件过大、URL 不支持、文档损坏或格式不受支持
+     */
+    static boolean isSourceError(Throwable error) {
+        return error instanceof SourceDocumentException || error instanceof IllegalArgumentException;
+    }
+
+    /**
+     * @param failed 非空时为重试选择引擎：排除失败的引擎，只考虑可用且未饱和的引擎，没有时返回 null
+     * @param waitForCapacity 为 true 时不跳过饱和的引擎
+     */
+    private EngineState select(String sourceFormat, String targetFormat, long sourceSize, EngineState failed,
+                               boolean waitForCapacity) {
+        List<EngineState> candidates = new ArrayList<>();
+        for (EngineState state : engines) {
+            if (state != failed && state.accepts(sourceFormat, targetFormat, sourceSize)) {
+                candidates.add(state);
+            }
+        }
+
+        EngineState best = null;
+        List<EngineState> saturated = new ArrayList<>();
+        for (EngineState state : candidates) {
+            if (!state.isAvailable()) {
+                continue;
+            }
+            if (!waitForCapacity && state.isSaturated()) {
+                saturated.add(state);
+            } else if (best == null || state.load() < best.load()) {
+                best = state;
+            }
+        }
+        if (best != null || failed != null) {
+            return best;
+        }
+
+        if (candidates.isEmpty()) {
+            throw new IllegalArgumentException("No conversion engine accepts " + sourceFormat + " -> " + targetFormat);
+        }
+        if (!saturated.isEmpty()) {
+            saturated.forEach(state -> state.rejections.increment());
+            throw new RejectedExecutionException("All conversion engines are saturated");
+        }
+        // 所有引擎都不健康或已暂停，拒绝请求，不把请求交给无法转换的引擎
+        throw new RejectedExecutionException("No conversion engine is available");
+    }
+
+    /**
+     * 本服务存储的文件（包括上传文件）大小已知，其他地址下载前不知道大小，返回 -1
+     */
+    private long sourceSize(String sourceUrl) {
+        File localFile = fileStorageService.resolveLocalFile(sourceUrl);
+        return localFile != null && localFile.exists() ? localFile.length() : -1;
+    }
+
+    private static Set<String> parseFormats(String formats) {
+        Set<String> parsed = new LinkedHashSet<>();
+        for (String format : formats.split(",")) {
+            if (!format.isBlank()) {
+                parsed.add(format.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        return parsed;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (EngineState state : engines) {
+            Map<String, Object> engineStats = new LinkedHashMap<>();
+            engineStats.put("capacity", state.engine.getCapacity());
+            engineStats.put("inFlight", state.inFlight());
+            engineStats.put("queued", state.queued());
+            engineStats.put("backgroundQueued", state.backgroundQueued());
+            engineStats.put("healthy", state.engine.isHealthy());
+            engineStats.put("suspended", state.isSuspended());
+            engineStats.put("routed", state.routed.get());
+            engineStats.put("failures", state.failures.get());
+            engineStats.put("fallbacks", state.fallbacks.count());
+            engineStats.put("rejected", state.rejections.count());
+            engineStats.put("meanQueueWaitMillis", state.queueWait.mean(TimeUnit.MILLISECONDS));
+            engineStats.put("formats", state.formats);
+            engineStats.put("maxFileSize", state.maxFileSize);
+            stats.put(state.engine.getName(), engineStats);
+        }
+        return stats;
+    }
+
+    private final class EngineState {
+
+        final ConversionEngine engine;
+        final Set<String> formats;
+        final long maxFileSize;
+        final AtomicLong routed = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final Counter fallbacks;
+        final Counter rejections;
+        final Timer queueWait;
+
+        private int running;
+        // 排队的同步请求，受 max-queue 和 max-wait 限制
+        private int waiting;
+        // 排队的异步任务和批量分组，不受限制
+        private int backgroundWaiting;
+        private int consecutiveFailures;
+        private long suspendedUntil;
+
+        EngineState(ConversionEngine engine, Set<String> formats, long maxFileSize) {
+            this.engine = engine;
+            this.formats = formats;
+            this.maxFileSize = maxFileSize;
+            this.fallbacks = Counter.builder("pdfconverter.engine.fallbacks")
+                    .description("Conversions retried on this engine after another engine failed")
+                    .tag("engine", engine.getName())
+                    .register(meterRegistry);
+            this.rejections = Counter.builder("pdfconverter.engine.rejections")
+                    .description("Conversions rejected because the engine's wait queue was full or the wait timed out")
+                    .tag("engine", engine.getName())
+                    .register(meterRegistry);
+            this.queueWait = Timer.builder("pdfconverter.engine.queue.wait")
+                    .description("Time conversions waited for a free slot on the engine")
+                    .tag("engine", engine.getName())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+
+        /**
+         * 占用一个并发名额；名额用完时排队，队列已满或等待超过 max-wait 时拒绝
+         * 有同步请求在排队时，空出的名额先给同步请求
+         * @param waitForCapacity 为 true 时不受 max-queue 和 max-wait 限制，一直等到有空闲名额，
+         *                        也不计入同步请求的等待队列
+         * @throws RejectedExecutionException 没有获得名额
+         */
+        synchronized void acquire(boolean waitForCapacity) throws InterruptedException {
+            long start = System.nanoTime();
+            if (running < capacity() && waiting == 0) {
+                running++;
+                queueWait.record(0, TimeUnit.NANOSECONDS);
+                return;
+            }
+            if (waitForCapacity) {
+                awaitBackgroundSlot(start);
+                return;
+            }
+            if (waiting >= Math.max(0, maxQueue)) {
+                rejections.increment();
+                throw new RejectedExecutionException("Conversion engine " + engine.getName() + " is saturated");
+            }
+
+            waiting++;
+            try {
+                long deadline = start + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+                while (running >= capacity()) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        rejections.increment();
+                        throw new RejectedExecutionException("Timed out after " + maxWaitMillis
+                                + " ms waiting for conversion engine " + engine.getName());
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+                running++;
+            } finally {
+                waiting--;
+                // 同步请求离开队列后，等待中的任务可能可以占用名额
+                notifyAll();
+                queueWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private void awaitBackgroundSlot(long start) throws InterruptedException {
+            backgroundWaiting++;
+            try {
+                while (running >= capacity() || waiting > 0) {
+                    wait();
+                }
+                running++;
+            } finally {
+                backgroundWaiting--;
+                queueWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        synchronized void release() {
+            running--;
+            notifyAll();
+        }
+
+        private int capacity() {
+            return Math.max(1, engine.getCapacity());
+        }
+
+        synchronized int inFlight() {
+            return running + waiting + backgroundWaiting;
+        }
+
+        synchronized int queued() {
+            return waiting;
+        }
+
+        synchronized int backgroundQueued() {
+            return backgroundWaiting;
+        }
+
+        /**
+         * 大小未知（-1）时不按大小过滤；配置了源格式而格式未知时不接受
+         */
+        boolean accepts(String sourceFormat, String targetFormat, long sourceSize) {
+            if (!engine.supportsFormat(targetFormat)) {
+                return false;
+            }
+            if (!formats.isEmpty()
+                    && (sourceFormat == null || !formats.contains(sourceFormat.toLowerCase(Locale.ROOT)))) {
+                return false;
+            }
+            return maxFileSize <= 0 || sourceSize < 0 || sourceSize <= maxFileSize;
+        }
+
+        boolean isAvailable() {
+            return !isSuspended() && engine.isHealthy();
+        }
+
+        /**
+         * 正在执行和排队的同步请求达到容量 + max-queue；排队的任务和批量分组不计入
+         */
+        synchronized boolean isSaturated() {
+            return running + waiting >= capacity() + Math.max(0, maxQueue);
+        }
+
+        double load() {
+            return (double) inFlight() / capacity();
+        }
+
+        synchronized boolean isSuspended() {
+            return System.currentTimeMillis() < suspendedUntil;
+        }
+
+        synchronized void recordResult(boolean succeeded) {
+            if (succeeded) {
+                consecutiveFailures = 0;
+                return;
+            }
+            failures.incrementAndGet();
+            if (++consecutiveFailures >= Math.max(1, failureThreshold)) {
+                suspendedUntil = System.currentTimeMillis() + failureCooldownMillis;
+                consecutiveFailures = 0;
+                logger.warn("Conversion engine {} failed {} times in a row, suspended for {} ms",
+                        engine.getName(), failureThreshold, failureCooldownMillis);
+            }
+        }
+    }
+}
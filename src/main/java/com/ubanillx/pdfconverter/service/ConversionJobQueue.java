@@ -0,0 +1,39 @@
+package com.ubanillx.pdfconverter.service;
+
+import com.ubanillx.pdfconverter.model.ConversionJob;
+
+/**
+ * 转换任务队列
+ * 负责任务的排队、分发与状态保存，具体的转换由 {@link Handler} 完成
+ */
+public interface ConversionJobQueue {
+    
+    /**
+     * 执行单个任务；抛出异常表示本次执行失败，由队列决定是否重试
+     */
+    @FunctionalInterface
+    interface Handler {
+        void handle(ConversionJob job) throws Exception;
+    }
+    
+    /**
+     * 启动消费者
+     */
+    void start(Handler handler);
+    
+    /**
+     * 任务入队
+     * @throws java.util.concurrent.RejectedExecutionException 队列已满
+     */
+    void enqueue(ConversionJob job);
+    
+    /**
+     * 查询任务，不存在或已过期时返回 null
+     */
+    ConversionJob find(String jobId);
+    
+    /**
+     * 等待执行的任务数量
+     */
+    int getQueueDepth();
+}
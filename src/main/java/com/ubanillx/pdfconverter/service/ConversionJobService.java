@@ -0,0 +1,69 @@
+package com.ubanillx.pdfconverter.service;
+
+import com.ubanillx.pdfconverter.model.ConversionJob;
+import com.ubanillx.pdfconverter.model.ConversionResponse;
+import com.ubanillx.pdfconverter.model.JobStatus;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 异步转换任务
+ * 提交后立即返回任务ID，任务由 {@link ConversionJobQueue} 排队并分发给 worker 执行
+ */
+@Service
+public class ConversionJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversionJobService.class);
+
+    @Autowired
+    private DocumentConversionService documentConversionService;
+
+    @Autowired
+    private ConversionJobQueue jobQueue;
+
+    @PostConstruct
+    public void init() {
+        jobQueue.start(this::handle);
+    }
+
+    /**
+     * 提交转换任务
+     * @throws RejectedExecutionException 队列已满
+     */
+    public ConversionJob submit(String sourceUrl, String targetFormat, String originalFormat) {
+        String jobId = UUID.randomUUID().toString();
+        ConversionJob job = new ConversionJob(jobId, sourceUrl, originalFormat, targetFormat);
+        jobQueue.enqueue(job);
+
+        logger.info("Conversion job {} queued: {} -> {}", jobId, sourceUrl, targetFormat);
+        return job;
+    }
+
+    public ConversionJob getJob(String jobId) {
+        return jobQueue.find(jobId);
+    }
+
+    public int getQueueDepth() {
+        return jobQueue.getQueueDepth();
+    }
+
+    private void handle(ConversionJob job) throws Exception {
+        // 任务已经被接受，引擎繁忙时排队等待而不是失败；任务并发由 app.jobs.workers 限制
+        ConversionResponse response = documentConversionService.convert(
+                job.getOriginalUrl(), job.getTargetFormat(), job.getOriginalFormat(), true);
+        job.setMessage(response.getMessage());
+        if (response.isSuccess()) {
+            job.setConvertedUrl(response.getConvertedUrl());
+            job.setFileSize(response.getFileSize());
+            job.setStatus(JobStatus.DONE);
+        } else {
+            job.setStatus(JobStatus.FAILED);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.ubanillx.pdfconverter.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Service;
+
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 转换各阶段的指标，通过 Actuator 的 /actuator/prometheus 暴露
+ * <ul>
+ *     <li>pdfconverter.stage.duration：阶段耗时（带直方图），按阶段、源格式、目标格式和结果区分</li>
+ *     <li>pdfconverter.stage.inflight：正在执行的阶段数</li>
+ *     <li>pdfconverter.stage.errors：失败次数，按阶段和原因区分</li>
+ * </ul>
+ */
+@Service
+public class ConversionMetrics {
+
+    // 下载源文件
+    public static final String DOWNLOAD = "download";
+    // office 加载文档
+    public static final String LOAD = "load";
+    // office 导出目标格式
+    public static final String STORE = "store";
+    // docker exec 执行 soffice --convert-to，加载和导出无法分开计时
+    public static final String CONVERT = "convert";
+    public static final String WATERMARK = "watermark";
+    // 结果写入存储
+    public static final String PERSIST = "persist";
+    // 一次转换请求的完整流程
+    public static final String CONVERSION = "conversion";
+
+    public static final String NONE = "none";
+    // 批量转换中源格式不一致
+    public static final String MIXED = "mixed";
+    public static final String OTHER = "other";
+
+    // 格式来自用户提供的 URL、文件名和目标格式参数，只保留已知的格式，其余归为 other，避免标签数量失控
+    private static final Set<String> KNOWN_FORMATS = Set.of(
+            "pdf", "doc", "docx", "odt", "rtf", "txt", "html", "htm", "xml",
+            "xls", "xlsx", "ods", "csv", "ppt", "pptx", "odp", "odg",
+            "png", "jpg", "jpeg", "gif", "bmp", "tmp", MIXED);
+
+    private final MeterRegistry registry;
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    public ConversionMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @FunctionalInterface
+    public interface StageCall<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    @FunctionalInterface
+    public interface StageRun<E extends Exception> {
+        void run() throws E;
+    }
+
+    /**
+     * 执行并记录一个阶段：耗时、进行中数量，失败时按原因计数后原样抛出
+     * @param stage 阶段名称
+     * @param sourceFormat 源格式（扩展名），无意义时为 {@link #NONE}
+     * @param targetFormat 目标格式，无意义时为 {@link #NONE}
+     */
+    public <T, E extends Exception> T record(String stage, String sourceFormat, String targetFormat,
+                                             StageCall<T, E> call) throws E {
+        AtomicInteger active = inFlight(stage);
+        active.incrementAndGet();
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            T result = call.call();
+            outcome = "success";
+            return result;
+        } catch (Exception | Error e) {
+            recordError(stage, e);
+            throw e;
+        } finally {
+            active.decrementAndGet();
+            Timer.builder("pdfconverter.stage.duration")
+                    .description("Duration of a conversion stage")
+                    .tag("stage", stage)
+                    .tag("source", normalizeFormat(sourceFormat))
+                    .tag("target", normalizeFormat(targetFormat))
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public <E extends Exception> void recordRun(String stage, String sourceFormat, String targetFormat,
+                                                StageRun<E> run) throws E {
+        this.<Void, E>record(stage, sourceFormat, targetFormat, () -> {
+            run.run();
+            return null;
+        });
+    }
+
+    /**
+     * 记录不经过 {@link #record} 的失败，例如批量转换中单个文件的失败
+     */
+    public void recordError(String stage, Throwable error) {
+        Counter.builder("pdfconverter.stage.errors")
+                .description("Failed conversion stages by cause")
+                .tag("stage", stage)
+                .tag("cause", causeOf(error))
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * 文件名或 URL 的扩展名，作为格式标签
+     */
+    public static String formatOf(String path) {
+        if (path == null) {
+            return NONE;
+        }
+        int end = path.length();
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            end = query;
+        }
+        int dot = path.lastIndexOf('.', end - 1);
+        int slash = Math.max(path.lastIndexOf('/', end - 1), path.lastIndexOf('\\', end - 1));
+        if (dot <= slash || dot == end - 1) {
+            return NONE;
+        }
+        return normalizeFormat(path.substring(dot + 1, end));
+    }
+
+    static String normalizeFormat(String format) {
+        if (format == null || format.isEmpty()) {
+            return NONE;
+        }
+        String normalized = format.toLowerCase(Locale.ROOT);
+        return KNOWN_FORMATS.contains(normalized) ? normalized : OTHER;
+    }
+
+    /**
+     * 失败原因：超时和拒绝单独归类，其他按异常类型
+     */
+    static String causeOf(Throwable error) {
+        for (Throwable current = error; current != null; current = current.getCause()) {
+            if (current instanceof TimeoutException || current instanceof HttpTimeoutException
+                    || current instanceof SocketTimeoutException) {
+                return "timeout";
+            }
+            if (current instanceof RejectedExecutionException) {
+                return "rejected";
+            }
+        }
+        return error.getClass().getSimpleName();
+    }
+
+    private AtomicInteger inFlight(String stage) {
+        return inFlight.computeIfAbsent(stage, key -> {
+            AtomicInteger active = new AtomicInteger();
+            Gauge.builder("pdfconverter.stage.inflight", active, AtomicInteger::get)
+                    .description("Conversion stages currently running")
+                    .tag("stage", key)
+                    .register(registry);
+            return active;
+        });
+    }
+}
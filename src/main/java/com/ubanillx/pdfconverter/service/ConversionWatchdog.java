@@ -0,0 +1,252 @@
+package com.ubanillx.pdfconverter.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * office 转换看门狗
+ * 文档的加载和导出分别在截止时间内执行，超时后强制结束 office 进程（由实例池重启），调用方立即得到超时错误；
+ * 按文档（内容和目标格式的哈希）记录超时次数，达到阈值的文档在隔离期内直接拒绝，不再占用 office 实例
+ */
+@Service
+public class ConversionWatchdog {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversionWatchdog.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 加载和导出阶段的截止时间，默认使用 libreoffice.timeout；0 表示不限制
+    @Value("${libreoffice.watchdog.load-timeout:${libreoffice.timeout:60000}}")
+    private long loadTimeoutMillis;
+
+    @Value("${libreoffice.watchdog.store-timeout:${libreoffice.timeout:60000}}")
+    private long storeTimeoutMillis;
+
+    // 同一文档超时达到该次数后隔离，0 表示不隔离
+    @Value("${libreoffice.watchdog.quarantine-threshold:2}")
+    private int quarantineThreshold;
+
+    // 隔离时间，从最后一次超时开始计算；未达到阈值的记录同样在该时间后过期
+    @Value("${libreoffice.watchdog.quarantine-ttl:86400000}")
+    private long quarantineTtlMillis;
+
+    @Value("${libreoffice.watchdog.quarantine-max-entries:10000}")
+    private int quarantineMaxEntries;
+
+    // 按访问顺序排列，超过 quarantine-max-entries 时淘汰最久未出现的文档
+    private final LinkedHashMap<String, Offense> offenses = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Counter> timeouts = new ConcurrentHashMap<>();
+
+    private ExecutorService stageExecutor;
+    private Counter quarantineRejections;
+
+    /**
+     * 文档被隔离时拒绝转换
+     */
+    public static class QuarantinedDocumentException extends Exception {
+        public QuarantinedDocumentException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * office 的加载或导出阶段超时，只有这种超时计入文档的超时次数
+     */
+    public static class StageTimeoutException extends TimeoutException {
+        public StageTimeoutException(String message) {
+            super(message);
+        }
+    }
+
+    private static class Offense {
+        int timeouts;
+        long lastTimeout;
+    }
+
+    @PostConstruct
+    public void init() {
+        // 挂起的阶段在进程被结束前一直占用线程，因此不限制线程数；每个 office 实例同时只执行一个阶段
+        stageExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "office-stage");
+            thread.setDaemon(true);
+            return thread;
+        });
+        quarantineRejections = Counter.builder("pdfconverter.watchdog.quarantine.rejections")
+                .description("Conversions rejected because the document is quarantined")
+                .register(meterRegistry);
+        Gauge.builder("pdfconverter.watchdog.quarantined", this, ConversionWatchdog::quarantinedCount)
+                .description("Documents currently quarantined after repeated timeouts")
+                .register(meterRegistry);
+        logger.info("Conversion watchdog: load timeout {} ms, store timeout {} ms, quarantine after {} timeout(s)",
+                loadTimeoutMillis, storeTimeoutMillis, quarantineThreshold);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (stageExecutor != null) {
+            stageExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 在截止时间内执行 office 实例上的一个阶段（ConversionMetrics.LOAD 或 STORE）
+     * 超时或调用线程被中断时结束实例的 office 进程，挂起的 UNO 调用随连接断开而返回
+     * @throws StageTimeoutException 阶段超时
+     */
+    public <T> T call(OfficeInstance instance, String stage, Callable<T> action) throws Exception {
+        long timeoutMillis = ConversionMetrics.STORE.equals(stage) ? storeTimeoutMillis : loadTimeoutMillis;
+        if (timeoutMillis <= 0) {
+            return action.call();
+        }
+
+        Future<T> future = stageExecutor.submit(action);
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeoutCounter(stage).increment();
+            logger.error("Office instance {} exceeded the {} ms {} deadline, killing it",
+                    instance.describe(), timeoutMillis, stage);
+            instance.kill();
+            future.cancel(true);
+            throw new StageTimeoutException("Office " + stage + " stage timed out after " + timeoutMillis
+                    + " ms on instance " + instance.describe());
+        } catch (InterruptedException e) {
+            // 调用方放弃时阶段仍在执行，实例不能再借给其他转换
+            instance.kill();
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception exception) {
+                throw exception;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 文档被隔离时抛出异常
+     * @param documentKey 文档内容和目标格式的哈希（转换缓存键）
+     */
+    public void checkQuarantine(String documentKey) throws QuarantinedDocumentException {
+        if (quarantineThreshold <= 0 || documentKey == null) {
+            return;
+        }
+        synchronized (offenses) {
+            Offense offense = offenses.get(documentKey);
+            if (offense == null || offense.timeouts < quarantineThreshold) {
+                return;
+            }
+            if (isExpired(offense, System.currentTimeMillis())) {
+                offenses.remove(documentKey);
+                return;
+            }
+        }
+        quarantineRejections.increment();
+        throw new QuarantinedDocumentException("Document is quarantined after " + quarantineThreshold
+                + " conversion timeout(s), retry later or check the document");
+    }
+
+    /**
+     * 记录文档的转换结果：阶段超时计入文档的超时次数，成功时清除记录，其他错误（包括下载超时）不影响
+     */
+    public void recordResult(String documentKey, Throwable error) {
+        if (quarantineThreshold <= 0 || documentKey == null) {
+            return;
+        }
+        synchronized (offenses) {
+            if (error == null) {
+                offenses.remove(documentKey);
+                return;
+            }
+            if (!isStageTimeout(error)) {
+                return;
+            }
+            Offense offense = offenses.computeIfAbsent(documentKey, key -> new Offense());
+            offense.timeouts++;
+            offense.lastTimeout = System.currentTimeMillis();
+            if (offense.timeouts == quarantineThreshold) {
+                logger.warn("Document {} timed out {} time(s), quarantined for {} ms",
+                        documentKey, offense.timeouts, quarantineTtlMillis);
+            }
+            Iterator<Offense> eldest = offenses.values().iterator();
+            while (offenses.size() > Math.max(1, quarantineMaxEntries) && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    private static boolean isStageTimeout(Throwable error) {
+        for (Throwable current = error; current != null; current = current.getCause()) {
+            if (current instanceof StageTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isExpired(Offense offense, long now) {
+        return quarantineTtlMillis > 0 && now - offense.lastTimeout >= quarantineTtlMillis;
+    }
+
+    private int quarantinedCount() {
+        long now = System.currentTimeMillis();
+        synchronized (offenses) {
+            int count = 0;
+            for (Offense offense : offenses.values()) {
+                if (offense.timeouts >= quarantineThreshold && !isExpired(offense, now)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    private Counter timeoutCounter(String stage) {
+        return timeouts.computeIfAbsent(stage, key -> Counter.builder("pdfconverter.watchdog.timeouts")
+                .description("Office conversion stages that exceeded their deadline")
+                .tag("stage", key)
+                .register(meterRegistry));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("loadTimeoutMillis", loadTimeoutMillis);
+        stats.put("storeTimeoutMillis", storeTimeoutMillis);
+        Map<String, Object> stageTimeouts = new LinkedHashMap<>();
+        timeouts.forEach((stage, counter) -> stageTimeouts.put(stage, (long) counter.count()));
+        stats.put("timeouts", stageTimeouts);
+        stats.put("quarantineThreshold", quarantineThreshold);
+        stats.put("quarantined", quarantinedCount());
+        synchronized (offenses) {
+            stats.put("trackedDocuments", offenses.size());
+        }
+        stats.put("quarantineRejections", (long) quarantineRejections.count());
+        return stats;
+    }
+}
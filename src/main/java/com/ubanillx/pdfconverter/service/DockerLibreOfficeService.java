@@ -2,15 +2,27 @@ package com.ubanillx.pdfconverter.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PreDestroy;
+
 import java.io.*;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -18,67 +30,179 @@ import java.util.concurrent.TimeUnit;
  * 用于开发环境，避免在本地安装 LibreOffice
  */
 @Service
-public class DockerLibreOfficeService {
+public class DockerLibreOfficeService implements ConversionEngine {
+    
+    public static final String NAME = "docker";
     
     private static final Logger logger = LoggerFactory.getLogger(DockerLibreOfficeService.class);
     
+    @Autowired
+    private ConversionCacheService conversionCacheService;
+    
+    @Autowired
+    private LibreOfficeService libreOfficeService;
+    
+    @Autowired
+    private FileDownloadService fileDownloadService;
+    
+    @Autowired
+    private FileStorageService fileStorageService;
+    
+    @Autowired
+    private ConversionMetrics metrics;
+    
+    @Autowired
+    private ConversionWatchdog watchdog;
+    
     @Value("${docker.libreoffice.container.name:pdf-converter-libreoffice}")
     private String containerName;
     
     @Value("${docker.libreoffice.timeout:30}")
     private int timeoutSeconds;
     
+    // 一批文件的转换命令超时时间按文件数放宽，但不超过该值（秒）
+    @Value("${docker.libreoffice.batch-timeout:300}")
+    private int batchTimeoutSeconds;
+    
+    // 转换模式：exec 为每次请求执行 docker exec，daemon 为连接容器内常驻的 soffice 监听进程
+    @Value("${docker.libreoffice.mode:exec}")
+    private String mode;
+    
+    @Value("${docker.libreoffice.daemon.host:127.0.0.1}")
+    private String daemonHost;
+    
+    @Value("${docker.libreoffice.daemon.base-port:8100}")
+    private int daemonBasePort;
+    
+    @Value("${docker.libreoffice.daemon.listeners:2}")
+    private int daemonListeners;
+    
+    @Value("${docker.libreoffice.daemon.max-conversions-per-instance:500}")
+    private int daemonMaxConversionsPerInstance;
+    
+    @Value("${docker.libreoffice.daemon.checkout-timeout:30000}")
+    private long daemonCheckoutTimeoutMillis;
+    
+    @Value("${docker.libreoffice.daemon.connect-timeout:10000}")
+    private long daemonConnectTimeoutMillis;
+    
+    @Value("${docker.libreoffice.daemon.health-check-interval:30000}")
+    private long daemonHealthCheckIntervalMillis;
+    
+    // 转换命令结束后等待输出文件在卷中出现并写完的最长时间
+    @Value("${docker.libreoffice.output-timeout:10000}")
+    private long outputTimeoutMillis;
+    
+    @Value("${docker.libreoffice.startup-timeout:60000}")
+    private long startupTimeoutMillis;
+    
+    // 后台检查容器状态的间隔，转换请求只读取缓存的状态
+    @Value("${docker.libreoffice.monitor-interval:5000}")
+    private long monitorIntervalMillis;
+    
+    // 容器停止后是否自动重启；关闭时转换请求直接失败
+    @Value("${docker.libreoffice.auto-restart:false}")
+    private boolean autoRestart;
+    
+    private static final String CONTAINER_OUTPUT_DIR = "/app/outputs";
+    
+    private static final int MAX_LISTED_OUTPUT_FILES = 20;
+    
+    // 转换失败时错误信息中保留的命令输出长度
+    private static final int MAX_COMMAND_OUTPUT_BYTES = 4096;
+    
+    private static final long DAEMON_RETRY_INTERVAL_MILLIS = 30000;
+    private static final long OUTPUT_STABLE_MILLIS = 100;
+    private static final long OUTPUT_POLL_INTERVAL_MILLIS = 50;
+    
+    private volatile OfficeInstancePool daemonPool;
+    private volatile long nextDaemonConnectAttempt;
+    
+    private ScheduledExecutorService containerMonitor;
+    private volatile boolean containerRunning;
+    private volatile boolean restarting;
+    
+    @Override
+    public String getName() {
+        return NAME;
+    }
+    
+    /**
+     * 常驻监听模式下为监听进程数；exec 模式下每次转换是容器内的独立进程，按 CPU 核数估算
+     */
+    @Override
+    public int getCapacity() {
+        return "daemon".equalsIgnoreCase(mode) ? Math.max(1, daemonListeners)
+                : Runtime.getRuntime().availableProcessors();
+    }
+    
+    @Override
+    public boolean isHealthy() {
+        return isContainerAvailable();
+    }
+    
+    @Override
+    public boolean supportsFormat(String targetFormat) {
+        return libreOfficeService.isFormatSupported(targetFormat);
+    }
+    
     /**
      * 通过 Docker 容器转换文件
      */
+    @Override
     public File convertFile(String sourceUrl, String targetFormat, String outputDir) throws Exception {
         logger.info("Converting file via Docker LibreOffice: {} to {}", sourceUrl, targetFormat);
         
-        // 检查容器是否运行
-        if (!isContainerRunning()) {
-            throw new Exception("LibreOffice Docker container is not running. Please start it with: docker-compose up -d");
-        }
-        
-        // 如果是 URL，先下载文件
-        String localFilePath = sourceUrl;
-        if (sourceUrl.startsWith("http://") || sourceUrl.startsWith("https://")) {
-            localFilePath = downloadFileFromUrl(sourceUrl);
-        }
-        
-        // 准备转换命令
-        List<String> command = buildConversionCommand(localFilePath, targetFormat, outputDir);
-        
-        // 执行转换
-        ProcessBuilder processBuilder = new ProcessBuilder(command);
-        processBuilder.redirectErrorStream(true);
-        
-        logger.info("Executing Docker command: {}", String.join(" ", command));
-        
-        Process process = processBuilder.start();
-        
-        // 读取输出
-        StringBuilder output = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                output.append(line).append("\n");
-                logger.debug("Docker output: {}", line);
+        // 本服务存储的文件直接使用，其他 URL 先下载
+        String localFilePath = prepareSourceFile(sourceUrl);
+        try {
+            // 相同内容、相同格式的转换结果直接复用缓存，命中时不需要容器参与
+            String cacheKey = conversionCacheService.computeKey(new File(localFilePath), targetFormat,
+                    "convert-to:" + targetFormat.toLowerCase());
+            File cachedOutput = getExpectedOutputPath(localFilePath, targetFormat).toFile();
+            if (conversionCacheService.lookup(cacheKey, cachedOutput)) {
+                return cachedOutput;
+            }
+            
+            // 反复超时的文档直接拒绝，不再占用容器内的 office
+            watchdog.checkQuarantine(cacheKey);
+            
+            File outputFile;
+            try {
+                outputFile = convertUncached(sourceUrl, localFilePath, targetFormat, outputDir);
+            } catch (Exception e) {
+                watchdog.recordResult(cacheKey, e);
+                throw e;
             }
+            watchdog.recordResult(cacheKey, null);
+            conversionCacheService.store(cacheKey, outputFile);
+            
+            logger.info("Conversion completed successfully: {}", outputFile.getAbsolutePath());
+            return outputFile;
+        } finally {
+            deletePreparedSource(sourceUrl, localFilePath);
         }
-        
-        // 等待进程完成
-        boolean finished = process.waitFor(timeoutSeconds, TimeUnit.SECONDS);
-        if (!finished) {
-            process.destroyForcibly();
-            throw new Exception("LibreOffice conversion timed out after " + timeoutSeconds + " seconds");
+    }
+    
+    private File convertUncached(String sourceUrl, String localFilePath, String targetFormat,
+                                 String outputDir) throws Exception {
+        // 常驻监听模式：直接复用容器内已启动的 soffice 进程
+        OfficeInstancePool pool = getDaemonPool();
+        if (pool != null) {
+            return convertViaDaemon(pool, localFilePath, targetFormat);
         }
         
-        int exitCode = process.exitValue();
-        if (exitCode != 0) {
-            throw new Exception("LibreOffice conversion failed with exit code " + exitCode + 
-                              ". Output: " + output.toString());
+        // 检查容器是否运行（读取后台监控缓存的状态）
+        if (!isContainerAvailable()) {
+            throw new Exception("LibreOffice Docker container is not running. Please start it with: docker-compose up -d");
         }
         
+        // 准备转换命令并执行
+        List<String> command = buildConversionCommand(Collections.singletonList(localFilePath), targetFormat,
+                timeoutSeconds);
+        metrics.recordRun(ConversionMetrics.CONVERT, ConversionMetrics.formatOf(sourceUrl), targetFormat,
+                () -> runConversionCommand(command, timeoutSeconds));
+        
         // 查找输出文件
         File outputFile = findOutputFile(localFilePath, targetFormat, outputDir);
         if (outputFile == null || !outputFile.exists()) {
@@ -89,13 +213,22 @@ public class DockerLibreOfficeService {
                 errorMsg += ", Expected path: " + outputFile.getAbsolutePath();
             }
             
-            // 列出 outputs 目录中的文件以便调试
+            // 列出 outputs 目录中的部分文件以便调试，目录很大时不完整列出
             try {
                 Path outputsDir = Paths.get("outputs");
                 if (Files.exists(outputsDir)) {
                     errorMsg += ", Files in outputs directory: ";
                     final StringBuilder fileList = new StringBuilder();
-                    Files.list(outputsDir).forEach(path -> fileList.append(path.getFileName()).append(" "));
+                    try (DirectoryStream<Path> entries = Files.newDirectoryStream(outputsDir)) {
+                        int listed = 0;
+                        for (Path path : entries) {
+                            if (listed++ == MAX_LISTED_OUTPUT_FILES) {
+                                fileList.append("...");
+                                break;
+                            }
+                            fileList.append(path.getFileName()).append(" ");
+                        }
+                    }
                     errorMsg += fileList.toString();
                 } else {
                     errorMsg += ", Outputs directory does not exist";
@@ -106,42 +239,390 @@ public class DockerLibreOfficeService {
             
             throw new Exception(errorMsg);
         }
+        return outputFile;
+    }
+    
+    /**
+     * 批量转换：exec 模式下整批文件只执行一次 docker exec --convert-to，
+     * 常驻监听模式下整批文件复用同一个 soffice 连接，逐个回调结果
+     */
+    @Override
+    public void convertFiles(List<String> sourceUrls, String targetFormat, String outputDir,
+                             BatchConversionCallback callback) {
+        logger.info("Batch converting {} file(s) via Docker LibreOffice to {}", sourceUrls.size(), targetFormat);
         
-        logger.info("Conversion completed successfully: {}", outputFile.getAbsolutePath());
+        // 下载源文件并检查缓存，未命中的文件留待转换；为本批创建的源文件在整批结束后删除
+        Map<String, String> prepared = new LinkedHashMap<>();
+        try {
+            Map<String, String> pending = new LinkedHashMap<>();
+            Map<String, String> cacheKeys = new HashMap<>();
+            for (String sourceUrl : sourceUrls) {
+                try {
+                    String localFilePath = prepareSourceFile(sourceUrl);
+                    prepared.put(sourceUrl, localFilePath);
+                    String cacheKey = conversionCacheService.computeKey(new File(localFilePath), targetFormat,
+                            "convert-to:" + targetFormat.toLowerCase());
+                    File cachedOutput = getExpectedOutputPath(localFilePath, targetFormat).toFile();
+                    if (conversionCacheService.lookup(cacheKey, cachedOutput)) {
+                        callback.onResult(sourceUrl, cachedOutput, null);
+                    } else {
+                        watchdog.checkQuarantine(cacheKey);
+                        pending.put(sourceUrl, localFilePath);
+                        cacheKeys.put(sourceUrl, cacheKey);
+                    }
+                } catch (Exception e) {
+                    callback.onResult(sourceUrl, null, e);
+                }
+            }
+            if (pending.isEmpty()) {
+                return;
+            }
+            
+            OfficeInstancePool pool = getDaemonPool();
+            if (pool != null) {
+                convertBatchViaDaemon(pool, pending, cacheKeys, targetFormat, callback);
+                return;
+            }
+            
+            try {
+                if (!isContainerAvailable()) {
+                    throw new Exception("LibreOffice Docker container is not running. Please start it with: docker-compose up -d");
+                }
+                
+                // 一次 office 启动处理整批文件，超时时间按文件数量放宽，不超过 batch-timeout
+                int batchTimeout = (int) Math.min((long) timeoutSeconds * pending.size(), batchTimeoutSeconds);
+                List<String> command = buildConversionCommand(new ArrayList<>(pending.values()), targetFormat, batchTimeout);
+                metrics.recordRun(ConversionMetrics.CONVERT, batchSourceFormat(pending.keySet()), targetFormat,
+                        () -> runConversionCommand(command, batchTimeout));
+            } catch (Exception e) {
+                pending.keySet().forEach(sourceUrl -> callback.onResult(sourceUrl, null, e));
+                return;
+            }
+            
+            for (Map.Entry<String, String> entry : pending.entrySet()) {
+                File outputFile = findOutputFile(entry.getValue(), targetFormat, outputDir);
+                if (outputFile == null || !outputFile.exists()) {
+                    callback.onResult(entry.getKey(), null,
+                            new Exception("Output file not found after conversion: " + entry.getValue()));
+                    continue;
+                }
+                conversionCacheService.store(cacheKeys.get(entry.getKey()), outputFile);
+                callback.onResult(entry.getKey(), outputFile, null);
+            }
+        } finally {
+            prepared.forEach(this::deletePreparedSource);
+        }
+    }
+    
+    private void convertBatchViaDaemon(OfficeInstancePool pool, Map<String, String> pending,
+                                       Map<String, String> cacheKeys, String targetFormat,
+                                       BatchConversionCallback callback) {
+        String filterName = libreOfficeService.getFilterName(targetFormat);
+        
+        OfficeInstance instance = null;
+        int conversions = 0;
+        try {
+            for (Map.Entry<String, String> entry : pending.entrySet()) {
+                String sourceUrl = entry.getKey();
+                try {
+                    if (filterName == null) {
+                        throw new Exception("Unsupported target format: " + targetFormat);
+                    }
+                    Path outputPath = getExpectedOutputPath(entry.getValue(), targetFormat);
+                    Files.createDirectories(outputPath.toAbsolutePath().getParent());
+                    
+                    if (instance == null) {
+                        instance = pool.checkout(daemonCheckoutTimeoutMillis);
+                        conversions = 0;
+                    }
+                    try {
+                        instance.convert("file://" + convertToContainerPath(entry.getValue()),
+                                "file://" + CONTAINER_OUTPUT_DIR + "/" + outputPath.getFileName(), filterName);
+                        conversions++;
+                    } catch (Exception e) {
+                        // 失败后归还连接（必要时重连），剩余文件重新借出
+                        pool.release(instance, true, conversions + 1);
+                        instance = null;
+                        watchdog.recordResult(cacheKeys.get(sourceUrl), e);
+                        throw e;
+                    }
+                    watchdog.recordResult(cacheKeys.get(sourceUrl), null);
+                    if (!awaitOutput(outputPath)) {
+                        throw new Exception("Output file not found after conversion: " + outputPath.toAbsolutePath());
+                    }
+                    
+                    conversionCacheService.store(cacheKeys.get(sourceUrl), outputPath.toFile());
+                    callback.onResult(sourceUrl, outputPath.toFile(), null);
+                } catch (Exception e) {
+                    logger.warn("Batch item {} failed: {}", sourceUrl, e.getMessage());
+                    callback.onResult(sourceUrl, null, e);
+                }
+            }
+        } finally {
+            if (instance != null) {
+                pool.release(instance, false, conversions);
+            }
+        }
+    }
+    
+    /**
+     * 整批文件的源格式标签：格式相同时为该格式，否则为 mixed
+     * 按源 URL 判断，下载到本地的文件统一使用 .tmp 扩展名
+     */
+    private static String batchSourceFormat(Collection<String> sourceUrls) {
+        String format = null;
+        for (String sourceUrl : sourceUrls) {
+            String current = ConversionMetrics.formatOf(sourceUrl);
+            if (format != null && !format.equals(current)) {
+                return ConversionMetrics.MIXED;
+            }
+            format = current;
+        }
+        return format;
+    }
+    
+    /**
+     * 执行 docker exec 转换命令并等待完成
+     * 输出重定向到临时文件，等待不依赖输出结束；超时后强制结束 docker exec，
+     * 容器内的 office 进程由命令前的 timeout 结束
+     */
+    private void runConversionCommand(List<String> command, int timeout) throws Exception {
+        Path outputLog = Files.createTempFile("docker-exec-", ".log");
+        try {
+            ProcessBuilder processBuilder = new ProcessBuilder(command);
+            processBuilder.redirectErrorStream(true);
+            processBuilder.redirectOutput(outputLog.toFile());
+            
+            logger.info("Executing Docker command: {}", String.join(" ", command));
+            
+            Process process = processBuilder.start();
+            
+            // 等待进程完成
+            boolean finished;
+            try {
+                finished = process.waitFor(timeout, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                throw e;
+            }
+            if (!finished) {
+                process.destroyForcibly();
+                requestContainerCheck();
+                throw new ConversionWatchdog.StageTimeoutException("LibreOffice conversion timed out after " + timeout + " seconds");
+            }
+            
+            String output = readCommandOutput(outputLog);
+            logger.debug("Docker output: {}", output);
+            int exitCode = process.exitValue();
+            if (exitCode != 0) {
+                requestContainerCheck();
+                throw new Exception("LibreOffice conversion failed with exit code " + exitCode + 
+                                  ". Output: " + output);
+            }
+        } finally {
+            Files.deleteIfExists(outputLog);
+        }
+    }
+    
+    /**
+     * 读取命令输出的末尾部分
+     */
+    private static String readCommandOutput(Path outputLog) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(outputLog.toFile(), "r")) {
+            long length = file.length();
+            long start = Math.max(0, length - MAX_COMMAND_OUTPUT_BYTES);
+            byte[] tail = new byte[(int) (length - start)];
+            file.seek(start);
+            file.readFully(tail);
+            return new String(tail);
+        }
+    }
+    
+    /**
+     * 通过容器内常驻的 soffice 监听进程转换文件
+     * uploads 和 outputs 目录通过卷映射共享，office 进程按容器内路径读写
+     */
+    private File convertViaDaemon(OfficeInstancePool pool, String localFilePath, String targetFormat) throws Exception {
+        String filterName = libreOfficeService.getFilterName(targetFormat);
+        if (filterName == null) {
+            throw new Exception("Unsupported target format: " + targetFormat);
+        }
+        
+        Path outputPath = getExpectedOutputPath(localFilePath, targetFormat);
+        Files.createDirectories(outputPath.toAbsolutePath().getParent());
+        
+        String sourceUrl = "file://" + convertToContainerPath(localFilePath);
+        String outputUrl = "file://" + CONTAINER_OUTPUT_DIR + "/" + outputPath.getFileName();
+        
+        OfficeInstance instance = pool.checkout(daemonCheckoutTimeoutMillis);
+        boolean failed = true;
+        try {
+            logger.info("Converting {} on Docker soffice listener {}", sourceUrl, instance.describe());
+            instance.convert(sourceUrl, outputUrl, filterName);
+            failed = false;
+        } finally {
+            pool.release(instance, failed);
+        }
+        
+        File outputFile = outputPath.toFile();
+        if (!awaitOutput(outputPath)) {
+            throw new Exception("Output file not found after conversion: " + outputFile.getAbsolutePath());
+        }
         return outputFile;
     }
     
     /**
-     * 构建 Docker 转换命令
+     * 获取常驻监听连接池，未启用常驻模式或容器内监听不可用时返回 null（回退到 docker exec）
      */
-    private List<String> buildConversionCommand(String sourceUrl, String targetFormat, String outputDir) {
-        // 将本地路径转换为容器内路径
-        String containerSourcePath = convertToContainerPath(sourceUrl);
+    private OfficeInstancePool getDaemonPool() {
+        if (!"daemon".equalsIgnoreCase(mode)) {
+            return null;
+        }
+        OfficeInstancePool pool = daemonPool;
+        if (pool != null) {
+            return pool;
+        }
         
+        synchronized (this) {
+            if (daemonPool != null) {
+                return daemonPool;
+            }
+            // 连接失败后一段时间内不再重试，避免每个请求都等待连接超时
+            if (System.currentTimeMillis() < nextDaemonConnectAttempt) {
+                return null;
+            }
+            try {
+                List<OfficeInstance> instances = new ArrayList<>();
+                for (int i = 0; i < daemonListeners; i++) {
+                    OfficeInstance instance = new OfficeInstance(i, daemonHost, daemonBasePort + i, null,
+                            metrics, watchdog);
+                    instance.setTerminator(this::killListener);
+                    instances.add(instance);
+                }
+                daemonPool = new OfficeInstancePool(instances, daemonMaxConversionsPerInstance,
+                        daemonConnectTimeoutMillis, daemonHealthCheckIntervalMillis);
+                logger.info("Connected to {} Docker soffice listener(s) at {}:{}", 
+                           daemonListeners, daemonHost, daemonBasePort);
+            } catch (Exception e) {
+                nextDaemonConnectAttempt = System.currentTimeMillis() + DAEMON_RETRY_INTERVAL_MILLIS;
+                logger.warn("Docker soffice listeners unavailable, falling back to docker exec: {}", e.getMessage());
+            }
+            return daemonPool;
+        }
+    }
+    
+    /**
+     * 结束容器内挂起的 soffice 监听进程（转换超时时由看门狗调用），监听脚本会重新拉起进程
+     */
+    private void killListener(OfficeInstance instance) throws Exception {
+        Process process = new ProcessBuilder("docker", "exec", containerName,
+                "pkill", "-9", "-f", "port=" + instance.getPort() + ",")
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        if (!process.waitFor(10, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            throw new Exception("Timed out killing soffice listener on port " + instance.getPort());
+        }
+        logger.warn("Killed Docker soffice listener {}", instance.describe());
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        synchronized (this) {
+            if (containerMonitor != null) {
+                containerMonitor.shutdownNow();
+                containerMonitor = null;
+            }
+        }
+        if (daemonPool != null) {
+            daemonPool.close();
+            daemonPool = null;
+        }
+    }
+    
+    /**
+     * 构建 Docker 转换命令
+     */
+    private List<String> buildConversionCommand(List<String> localFilePaths, String targetFormat, int timeout) {
         List<String> command = new ArrayList<>();
         command.add("docker");
         command.add("exec");
         command.add("-i");
         command.add(containerName);
+        // 结束 docker exec 客户端不会结束容器内的进程，由容器内的 timeout 在超时后结束 office
+        command.add("timeout");
+        command.add("-s");
+        command.add("KILL");
+        command.add(String.valueOf(timeout));
         command.add("libreoffice");
         command.add("--headless");
         command.add("--convert-to");
         command.add(targetFormat);
         command.add("--outdir");
-        command.add("/app/outputs");
-        command.add(containerSourcePath);
+        command.add(CONTAINER_OUTPUT_DIR);
+        // 将本地路径转换为容器内路径
+        for (String localFilePath : localFilePaths) {
+            command.add(convertToContainerPath(localFilePath));
+        }
         
         return command;
     }
     
     /**
-     * 将本地文件路径转换为容器内路径
+     * 将本地文件路径转换为容器内路径，保留相对于挂载的 uploads 目录的子目录（如分层存储目录）
      */
     private String convertToContainerPath(String localPath) {
-        // 提取文件名
-        String fileName = Paths.get(localPath).getFileName().toString();
-        // 返回容器内的路径
-        return "/app/uploads/" + fileName;
+        Path uploadsDir = Paths.get("uploads").toAbsolutePath().normalize();
+        Path path = Paths.get(localPath).toAbsolutePath().normalize();
+        if (path.startsWith(uploadsDir) && !path.equals(uploadsDir)) {
+            return "/app/uploads/" + uploadsDir.relativize(path).toString().replace(File.separatorChar, '/');
+        }
+        // 挂载目录之外的文件按原逻辑只取文件名
+        return "/app/uploads/" + path.getFileName();
+    }
+    
+    /**
+     * 准备容器可见的源文件：本服务存储的文件以硬链接放入挂载的 uploads 目录（不复制内容），
+     * 链接名唯一，避免同一文件并发转换时输出互相覆盖；其他 URL 先下载
+     */
+    private String prepareSourceFile(String sourceUrl) throws Exception {
+        File localFile = fileStorageService.resolveLocalFile(sourceUrl);
+        if (localFile != null) {
+            if (!localFile.exists()) {
+                throw new SourceDocumentException("Source file not found: " + sourceUrl);
+            }
+            Path uploadsDir = Paths.get("uploads");
+            Files.createDirectories(uploadsDir);
+            Path linked = uploadsDir.resolve("local_" + UUID.randomUUID().toString().substring(0, 8)
+                    + "_" + localFile.getName());
+            try {
+                Files.createLink(linked, localFile.toPath());
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(localFile.toPath(), linked);
+            }
+            logger.info("Using stored file directly: {} -> {}", localFile.getAbsolutePath(), linked);
+            return linked.toString();
+        }
+        if (sourceUrl.startsWith("http://") || sourceUrl.startsWith("https://")) {
+            return downloadFileFromUrl(sourceUrl);
+        }
+        return sourceUrl;
+    }
+    
+    /**
+     * 删除 {@link #prepareSourceFile} 为本次转换创建的文件（下载的文件或 uploads 中的链接）；
+     * 原样返回的本地路径不是本服务创建的，保留
+     */
+    private void deletePreparedSource(String sourceUrl, String localFilePath) {
+        if (localFilePath.equals(sourceUrl)) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(Paths.get(localFilePath));
+        } catch (IOException e) {
+            logger.warn("Failed to delete prepared source {}: {}", localFilePath, e.getMessage());
+        }
     }
     
     /**
@@ -152,27 +633,19 @@ public class DockerLibreOfficeService {
         
         try {
             // 创建临时文件名
-            String fileName = "downloaded_" + System.currentTimeMillis() + ".tmp";
+            String fileName = "downloaded_" + System.currentTimeMillis() + "_"
+                    + UUID.randomUUID().toString().substring(0, 8) + ".tmp";
             String localPath = Paths.get("uploads", fileName).toString();
             
             // 下载文件
-            java.net.URL fileUrl = new java.net.URL(url);
-            try (InputStream in = fileUrl.openStream();
-                 FileOutputStream out = new FileOutputStream(localPath)) {
-                
-                byte[] buffer = new byte[4096];
-                int bytesRead;
-                while ((bytesRead = in.read(buffer)) != -1) {
-                    out.write(buffer, 0, bytesRead);
-                }
-            }
+            fileDownloadService.download(url, Paths.get(localPath));
             
             logger.info("File downloaded successfully: {}", localPath);
             return localPath;
             
         } catch (Exception e) {
             logger.error("Failed to download file from URL: {}", e.getMessage());
-            throw new Exception("Failed to download file from URL: " + e.getMessage());
+            throw new SourceDocumentException("Failed to download file from URL: " + e.getMessage(), e);
         }
     }
     
@@ -202,16 +675,128 @@ public class DockerLibreOfficeService {
         }
     }
     
+    /**
+     * 容器是否可用于转换：首次调用时同步检查一次并启动后台监控，之后只读取缓存状态，
+     * 避免每个请求都执行一次 docker ps
+     */
+    private boolean isContainerAvailable() {
+        ensureContainerMonitor();
+        return containerRunning;
+    }
+    
+    private synchronized void ensureContainerMonitor() {
+        if (containerMonitor != null) {
+            return;
+        }
+        containerRunning = isContainerRunning();
+        containerMonitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "docker-libreoffice-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        containerMonitor.scheduleWithFixedDelay(this::checkContainer,
+                monitorIntervalMillis, monitorIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * 转换命令异常时立即安排一次状态检查，不等下一个监控周期
+     */
+    private synchronized void requestContainerCheck() {
+        if (containerMonitor != null && !restarting) {
+            containerMonitor.execute(this::checkContainer);
+        }
+    }
+    
+    private void checkContainer() {
+        boolean running = isContainerRunning();
+        if (running != containerRunning) {
+            if (running) {
+                logger.info("LibreOffice Docker container {} is running", containerName);
+            } else {
+                logger.warn("LibreOffice Docker container {} is no longer running", containerName);
+            }
+        }
+        containerRunning = running;
+        
+        if (!running && autoRestart && !restarting) {
+            restartContainer();
+        }
+    }
+    
+    private void restartContainer() {
+        restarting = true;
+        try {
+            logger.info("Restarting LibreOffice Docker container {}...", containerName);
+            Process process = new ProcessBuilder("docker", "start", containerName)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            if (process.waitFor(30, TimeUnit.SECONDS) && process.exitValue() == 0
+                    && awaitContainerReady(startupTimeoutMillis)) {
+                containerRunning = true;
+                logger.info("LibreOffice Docker container {} restarted", containerName);
+            } else {
+                process.destroyForcibly();
+                logger.error("Failed to restart LibreOffice Docker container {}", containerName);
+            }
+        } catch (IOException e) {
+            logger.error("Failed to restart LibreOffice Docker container {}: {}", containerName, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            restarting = false;
+        }
+    }
+    
+    /**
+     * 容器就绪探测：容器处于运行状态，并且 LibreOffice 可用
+     * （常驻模式下第一个 soffice 监听端口可以连接，exec 模式下容器可以执行命令），探测间隔按指数退避
+     */
+    private boolean awaitContainerReady(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long backoff = 100;
+        while (System.currentTimeMillis() < deadline) {
+            if (isContainerRunning() && isLibreOfficeReady()) {
+                return true;
+            }
+            Thread.sleep(Math.min(backoff, Math.max(1, deadline - System.currentTimeMillis())));
+            backoff = Math.min(backoff * 2, 1000);
+        }
+        return false;
+    }
+    
+    private boolean isLibreOfficeReady() {
+        if ("daemon".equalsIgnoreCase(mode)) {
+            try (java.net.Socket socket = new java.net.Socket()) {
+                socket.connect(new java.net.InetSocketAddress(daemonHost, daemonBasePort), 500);
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+        try {
+            Process process = new ProcessBuilder("docker", "exec", containerName, "which", "libreoffice")
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                return false;
+            }
+            return process.exitValue() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+    
     /**
      * 查找转换后的输出文件
      */
     private File findOutputFile(String sourceUrl, String targetFormat, String outputDir) {
         try {
-            // 从源 URL 中提取文件名
-            String sourceFileName = Paths.get(sourceUrl).getFileName().toString();
-            String baseName = sourceFileName.substring(0, sourceFileName.lastIndexOf('.'));
-            String outputFileName = baseName + "." + targetFormat.toLowerCase();
-            
             // 确保本地 outputs 目录存在
             Path outputsDir = Paths.get("outputs");
             if (!Files.exists(outputsDir)) {
@@ -220,13 +805,12 @@ public class DockerLibreOfficeService {
             }
             
             // 使用本地的 outputs 目录，因为 Docker 卷映射到了这里
-            Path outputPath = Paths.get("outputs", outputFileName);
+            Path outputPath = getExpectedOutputPath(sourceUrl, targetFormat);
             File outputFile = outputPath.toFile();
             
-            // 如果文件不存在，等待一下再检查（Docker 卷同步可能需要时间）
-            if (!outputFile.exists()) {
-                logger.info("Output file not found immediately, waiting for Docker volume sync...");
-                Thread.sleep(2000); // 等待2秒让Docker卷同步
+            // 等待文件出现并写完（Docker 卷同步可能有延迟），出现后立即返回
+            if (!awaitOutput(outputPath)) {
+                logger.warn("Output file {} did not appear within {} ms", outputPath, outputTimeoutMillis);
             }
             
             return outputFile;
@@ -237,6 +821,21 @@ public class DockerLibreOfficeService {
         }
     }
     
+    private boolean awaitOutput(Path outputPath) throws InterruptedException {
+        return OutputFileWatcher.awaitStableFile(outputPath, outputTimeoutMillis,
+                OUTPUT_STABLE_MILLIS, OUTPUT_POLL_INTERVAL_MILLIS);
+    }
+    
+    /**
+     * 转换结果在本地 outputs 目录中的路径（与源文件同名，扩展名为目标格式）
+     */
+    private Path getExpectedOutputPath(String sourcePath, String targetFormat) {
+        String sourceFileName = Paths.get(sourcePath).getFileName().toString();
+        int lastDotIndex = sourceFileName.lastIndexOf('.');
+        String baseName = lastDotIndex > 0 ? sourceFileName.substring(0, lastDotIndex) : sourceFileName;
+        return Paths.get("outputs", baseName + "." + targetFormat.toLowerCase());
+    }
+    
     /**
      * 启动 LibreOffice Docker 容器
      */
@@ -251,13 +850,12 @@ public class DockerLibreOfficeService {
             throw new Exception("Failed to start LibreOffice container");
         }
         
-        // 等待容器启动
-        Thread.sleep(5000);
-        
-        if (!isContainerRunning()) {
+        // 等待容器就绪，就绪后立即返回
+        if (!awaitContainerReady(startupTimeoutMillis)) {
             throw new Exception("LibreOffice container failed to start");
         }
         
+        containerRunning = true;
         logger.info("LibreOffice Docker container started successfully");
     }
     
@@ -275,6 +873,7 @@ public class DockerLibreOfficeService {
             throw new Exception("Failed to stop LibreOffice container");
         }
         
+        containerRunning = false;
         logger.info("LibreOffice Docker container stopped");
     }
 }
@@ -0,0 +1,319 @@
+package com.ubanillx.pdfconverter.service;
+
+import com.ubanillx.pdfconverter.model.BatchItem;
+import com.ubanillx.pdfconverter.model.ConversionResponse;
+import com.ubanillx.pdfconverter.model.WatermarkOptions;
+import com.ubanillx.pdfconverter.model.WatermarkResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * 文档转换流程：由 {@link ConversionEngineRouter} 选择的引擎执行转换，并把结果存入 {@link FileStorageService}
+ * 同步接口和异步任务共用这一流程
+ */
+@Service
+public class DocumentConversionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentConversionService.class);
+
+    @Autowired
+    private ConversionEngineRouter engineRouter;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private WatermarkService watermarkService;
+
+    @Autowired
+    private ConversionMetrics metrics;
+
+    @Value("${app.batch.group-size:10}")
+    private int batchGroupSize;
+
+    @Value("${app.batch.parallelism:2}")
+    private int batchParallelism;
+
+    private ExecutorService batchExecutor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCounter = new AtomicInteger();
+        batchExecutor = Executors.newFixedThreadPool(Math.max(1, batchParallelism), runnable -> {
+            Thread thread = new Thread(runnable, "batch-conversion-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (batchExecutor != null) {
+            batchExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 转换源文件并存储结果
+     * @param sourceUrl 源文件URL
+     * @param targetFormat 目标格式
+     * @param originalFormat 原始文件格式，用于响应
+     * @return 转换结果
+     */
+    public ConversionResponse convert(String sourceUrl, String targetFormat, String originalFormat) throws Exception {
+        return convert(sourceUrl, targetFormat, originalFormat, false);
+    }
+
+    /**
+     * 转换源文件并存储结果
+     * @param waitForCapacity 为 true 时转换引擎饱和也不拒绝，排队等待空闲（异步任务使用）
+     */
+    public ConversionResponse convert(String sourceUrl, String targetFormat, String originalFormat,
+                                      boolean waitForCapacity) throws Exception {
+        return metrics.record(ConversionMetrics.CONVERSION, originalFormat, targetFormat,
+                () -> convertAndStore(sourceUrl, targetFormat, originalFormat, waitForCapacity));
+    }
+
+    private ConversionResponse convertAndStore(String sourceUrl, String targetFormat,
+                                               String originalFormat, boolean waitForCapacity) throws Exception {
+        // 执行转换
+        File convertedFile = engineRouter.convertFile(
+                sourceUrl,
+                originalFormat,
+                targetFormat,
+                fileStorageService.getStorageDirectory(),
+                waitForCapacity
+        );
+
+        if (convertedFile == null || !convertedFile.exists()) {
+            return new ConversionResponse(false, "文件转换失败");
+        }
+
+        // 存储转换后的文件并生成URL
+        String convertedUrl = fileStorageService.storeFile(convertedFile, convertedFile.getName());
+        // 从URL中提取文件名
+        String storedFileName = convertedUrl.substring(convertedUrl.lastIndexOf('/') + 1);
+        long fileSize = fileStorageService.getFileSize(storedFileName);
+
+        logger.info("Converted {} -> {}", sourceUrl, convertedUrl);
+        return new ConversionResponse(
+                true,
+                "转换成功",
+                sourceUrl,
+                convertedUrl,
+                originalFormat,
+                targetFormat,
+                fileSize
+        );
+    }
+
+    /**
+     * 转换为PDF并添加水印：转换结果作为中间文件直接交给水印处理，处理后删除，
+     * 只存储最终文件；源文件已经是PDF时跳过转换
+     * @param sourceUrl 源文件URL
+     * @param options 水印参数
+     * @param originalFormat 原始文件格式
+     * @return 水印结果，watermarkedUrl 为最终文件地址
+     */
+    public WatermarkResponse convertAndWatermark(String sourceUrl, WatermarkOptions options,
+                                                 String originalFormat) throws Exception {
+        return metrics.record(ConversionMetrics.CONVERSION, originalFormat, "pdf",
+                () -> convertWatermarkAndStore(sourceUrl, options, originalFormat));
+    }
+
+    private WatermarkResponse convertWatermarkAndStore(String sourceUrl, WatermarkOptions options,
+                                                       String originalFormat) throws Exception {
+        File outputDirectory = new File(fileStorageService.getStorageDirectory());
+        // 先编译（或取缓存的）水印模板，参数无效时不必转换
+        watermarkService.getTemplate(options);
+
+        File watermarkedFile;
+        if ("pdf".equalsIgnoreCase(originalFormat)) {
+            watermarkedFile = watermarkService.addWatermarkToPdf(sourceUrl, options, outputDirectory);
+        } else {
+            File convertedFile = engineRouter.convertFile(sourceUrl, originalFormat, "pdf",
+                    outputDirectory.getPath());
+            if (convertedFile == null || !convertedFile.exists()) {
+                return new WatermarkResponse(false, "文件转换失败");
+            }
+
+            try {
+                watermarkedFile = watermarkService.addWatermarkToFile(convertedFile, options, outputDirectory);
+            } finally {
+                // 中间PDF不存储
+                if (!convertedFile.delete()) {
+                    logger.warn("Failed to delete intermediate file: {}", convertedFile);
+                }
+            }
+        }
+
+        if (watermarkedFile == null || !watermarkedFile.exists()) {
+            return new WatermarkResponse(false, "水印添加失败");
+        }
+
+        String watermarkedUrl = fileStorageService.storeFile(watermarkedFile, watermarkedFile.getName());
+        String storedFileName = watermarkedUrl.substring(watermarkedUrl.lastIndexOf('/') + 1);
+        long fileSize = fileStorageService.getFileSize(storedFileName);
+
+        logger.info("Converted and watermarked {} -> {}", sourceUrl, watermarkedUrl);
+        return new WatermarkResponse(true, "转换并添加水印成功", sourceUrl, watermarkedUrl,
+                options.getWatermarkText(), fileSize);
+    }
+
+    /**
+     * 批量转换：源文件按 app.batch.group-size 分组，每组只启动一次 office（或借出一次连接），
+     * 各组在批量线程池上并行执行；每个文件完成后立即通过 sink 输出结果，sink 的调用是串行的
+     * 重复的源文件只转换一次，每个请求项各输出一行结果，以 index 对应；整组失败时组内尚未输出的文件各输出一行失败结果
+     * sink 写出失败（客户端断开）或等待被中断时取消其余分组
+     * @param items 请求项
+     * @param targetFormat 目标格式
+     * @param sink 结果接收方
+     */
+    public void convertBatch(List<BatchItem> items, String targetFormat,
+                             Consumer<ConversionResponse> sink) throws InterruptedException {
+        Map<String, List<BatchItem>> itemsByUrl = new LinkedHashMap<>();
+        for (BatchItem item : items) {
+            itemsByUrl.computeIfAbsent(item.url(), url -> new ArrayList<>()).add(item);
+        }
+        List<String> sourceUrls = new ArrayList<>(itemsByUrl.keySet());
+        int groupSize = Math.max(1, batchGroupSize);
+
+        Map<Future<?>, List<String>> groups = new LinkedHashMap<>();
+        Set<String> reported = ConcurrentHashMap.newKeySet();
+        AtomicReference<RuntimeException> writeFailure = new AtomicReference<>();
+        BatchConversionCallback callback = (sourceUrl, outputFile, error) -> {
+            if (writeFailure.get() != null || !reported.add(sourceUrl)) {
+                return;
+            }
+            List<BatchItem> requested = itemsByUrl.get(sourceUrl);
+            ConversionResponse response = toBatchResponse(sourceUrl, requested.get(0).format(), targetFormat,
+                    outputFile, error);
+            synchronized (sink) {
+                try {
+                    for (BatchItem item : requested) {
+                        sink.accept(forItem(response, item));
+                    }
+                } catch (RuntimeException e) {
+                    if (writeFailure.compareAndSet(null, e)) {
+                        logger.warn("Batch output failed, cancelling remaining groups: {}", e.getMessage());
+                        cancelAll(groups);
+                    }
+                }
+            }
+        };
+
+        synchronized (groups) {
+            for (int start = 0; start < sourceUrls.size(); start += groupSize) {
+                List<String> group = sourceUrls.subList(start, Math.min(start + groupSize, sourceUrls.size()));
+                groups.put(batchExecutor.submit(() -> convertGroup(group, groupFormat(group, itemsByUrl),
+                        targetFormat, callback)), group);
+            }
+        }
+
+        try {
+            for (Map.Entry<Future<?>, List<String>> entry : groups.entrySet()) {
+                try {
+                    entry.getKey().get();
+                } catch (CancellationException e) {
+                    // 客户端断开后取消的分组
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    logger.error("Batch conversion group failed: {}", cause.getMessage(), cause);
+                    Exception error = cause instanceof Exception exception ? exception : new Exception(cause);
+                    for (String sourceUrl : entry.getValue()) {
+                        callback.onResult(sourceUrl, null, error);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            cancelAll(groups);
+            throw e;
+        }
+
+        RuntimeException failure = writeFailure.get();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static void cancelAll(Map<Future<?>, List<String>> groups) {
+        synchronized (groups) {
+            groups.keySet().forEach(future -> future.cancel(true));
+        }
+    }
+
+    private void convertGroup(List<String> group, String sourceFormat, String targetFormat,
+                              BatchConversionCallback callback) {
+        engineRouter.convertFiles(group, sourceFormat, targetFormat, fileStorageService.getStorageDirectory(),
+                callback);
+    }
+
+    /**
+     * 组内源格式相同时按该格式路由，否则为 null
+     */
+    private String groupFormat(List<String> group, Map<String, List<BatchItem>> itemsByUrl) {
+        String format = itemsByUrl.get(group.get(0)).get(0).format();
+        for (String sourceUrl : group) {
+            if (format == null || !format.equalsIgnoreCase(itemsByUrl.get(sourceUrl).get(0).format())) {
+                return null;
+            }
+        }
+        return format;
+    }
+
+    private ConversionResponse toBatchResponse(String sourceUrl, String originalFormat, String targetFormat,
+                                               File outputFile, Exception error) {
+        ConversionResponse response;
+        if (error != null) {
+            response = new ConversionResponse(false, "转换失败: " + error.getMessage());
+        } else if (outputFile == null || !outputFile.exists()) {
+            response = new ConversionResponse(false, "文件转换失败");
+        } else {
+            try {
+                String convertedUrl = fileStorageService.storeFile(outputFile, outputFile.getName());
+                String storedFileName = convertedUrl.substring(convertedUrl.lastIndexOf('/') + 1);
+                long fileSize = fileStorageService.getFileSize(storedFileName);
+                return new ConversionResponse(true, "转换成功", sourceUrl, convertedUrl,
+                        originalFormat, targetFormat, fileSize);
+            } catch (Exception e) {
+                response = new ConversionResponse(false, "转换失败: " + e.getMessage());
+            }
+        }
+        response.setOriginalUrl(sourceUrl);
+        response.setOriginalFormat(originalFormat);
+        response.setConvertedFormat(targetFormat);
+        return response;
+    }
+
+    /**
+     * 源文件的转换结果复制给一个请求项
+     */
+    private static ConversionResponse forItem(ConversionResponse response, BatchItem item) {
+        ConversionResponse itemResponse = new ConversionResponse(response.isSuccess(), response.getMessage(),
+                response.getOriginalUrl(), response.getConvertedUrl(), item.format(),
+                response.getConvertedFormat(), response.getFileSize());
+        itemResponse.setIndex(item.index());
+        return itemResponse;
+    }
+}
@@ -0,0 +1,220 @@
+package com.ubanillx.pdfconverter.service;
+
+import com.itextpdf.io.font.constants.StandardFonts;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.font.PdfFontFactory;
+import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.pdf.CompressionConstants;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfStream;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模拟转换引擎（app.conversion.engines=fake），用于在没有 LibreOffice 的机器上压测整个 HTTP 服务
+ * 源文件照常读取或下载，然后按配置占用 CPU、等待一段时间，再写出指定大小的结果；
+ * 耗时抖动、是否失败和输出内容都由源文件地址决定，同一地址每次的表现相同，便于对比不同版本的压测结果
+ */
+@Service
+public class FakeConversionEngine implements ConversionEngine {
+
+    public static final String NAME = "fake";
+
+    private static final Logger logger = LoggerFactory.getLogger(FakeConversionEngine.class);
+
+    private static final PdfName PADDING_KEY = new PdfName("PdfConverterPadding");
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private FileDownloadService fileDownloadService;
+
+    @Autowired
+    private ConversionMetrics metrics;
+
+    // 每次转换的固定等待（毫秒），模拟等待 office 进程加载和导出
+    @Value("${app.conversion.fake.latency:200}")
+    private long latencyMillis;
+
+    // 在固定等待之上按源地址附加 0 ~ latency-jitter 毫秒
+    @Value("${app.conversion.fake.latency-jitter:0}")
+    private long latencyJitterMillis;
+
+    // 每次转换占用的 CPU 时间（毫秒），CPU 不足时实际耗时会变长
+    @Value("${app.conversion.fake.cpu-time:50}")
+    private long cpuTimeMillis;
+
+    // 输出文件大小（字节），PDF 在此基础上另有页面内容的少量字节
+    @Value("${app.conversion.fake.output-size:102400}")
+    private int outputSize;
+
+    // 输出 PDF 的页数
+    @Value("${app.conversion.fake.pages:1}")
+    private int pages;
+
+    // 按源地址固定失败的比例，0 ~ 1
+    @Value("${app.conversion.fake.failure-rate:0}")
+    private double failureRate;
+
+    // 供路由衡量负载的并发容量，模拟转换本身不限制并发
+    @Value("${app.conversion.fake.capacity:4}")
+    private int capacity;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public int getCapacity() {
+        return Math.max(1, capacity);
+    }
+
+    @Override
+    public File convertFile(String sourceUrl, String targetFormat, String outputDir) throws Exception {
+        return metrics.record(ConversionMetrics.CONVERT, ConversionMetrics.formatOf(sourceUrl), targetFormat,
+                () -> simulate(sourceUrl, targetFormat, outputDir));
+    }
+
+    @Override
+    public void convertFiles(List<String> sourceUrls, String targetFormat, String outputDir,
+                             BatchConversionCallback callback) {
+        for (String sourceUrl : sourceUrls) {
+            try {
+                callback.onResult(sourceUrl, convertFile(sourceUrl, targetFormat, outputDir), null);
+            } catch (Exception e) {
+                logger.warn("Batch item {} failed: {}", sourceUrl, e.getMessage());
+                callback.onResult(sourceUrl, null, e);
+            }
+        }
+    }
+
+    private File simulate(String sourceUrl, String targetFormat, String outputDir) throws Exception {
+        SplittableRandom random = new SplittableRandom(sourceUrl.hashCode());
+        long jitterMillis = latencyJitterMillis > 0 ? random.nextLong(latencyJitterMillis + 1) : 0;
+        boolean fail = random.nextDouble() < failureRate;
+
+        String sourceName;
+        File localFile = fileStorageService.resolveLocalFile(sourceUrl);
+        if (localFile != null) {
+            if (!localFile.exists()) {
+                throw new SourceDocumentException("Source file not found: " + sourceUrl);
+            }
+            sourceName = localFile.getName();
+        } else {
+            sourceName = download(sourceUrl);
+        }
+
+        burnCpu(cpuTimeMillis);
+        long sleepMillis = latencyMillis + jitterMillis;
+        if (sleepMillis > 0) {
+            Thread.sleep(sleepMillis);
+        }
+        if (fail) {
+            throw new IOException("Simulated conversion failure: " + sourceUrl);
+        }
+
+        String targetExtension = targetFormat.toLowerCase();
+        int lastDotIndex = sourceName.lastIndexOf('.');
+        String baseName = lastDotIndex > 0 ? sourceName.substring(0, lastDotIndex) : sourceName;
+        File outputFile = new File(outputDir,
+                baseName + "_" + UUID.randomUUID().toString().substring(0, 8) + "." + targetExtension);
+        if ("pdf".equals(targetExtension)) {
+            writePdf(outputFile, sourceName, random);
+        } else {
+            byte[] content = new byte[Math.max(0, outputSize)];
+            random.nextBytes(content);
+            Files.write(outputFile.toPath(), content);
+        }
+        logger.debug("Fake conversion {} -> {} ({} ms wait)", sourceUrl, outputFile.getName(), sleepMillis);
+        return outputFile;
+    }
+
+    /**
+     * 与真实引擎一样把源文件下载到临时文件，读完即删除
+     * @return 源文件名
+     */
+    private String download(String sourceUrl) throws IOException {
+        String path = sourceUrl.split("[?#]", 2)[0];
+        String sourceName = path.substring(path.lastIndexOf('/') + 1);
+        if (sourceName.isEmpty()) {
+            sourceName = "downloaded_file";
+        }
+        Path tempFile = Files.createTempFile("fake_engine_", "_" + sourceName);
+        try {
+            fileDownloadService.download(sourceUrl, tempFile);
+        } catch (Exception e) {
+            throw new SourceDocumentException("Failed to download file", e);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        return sourceName;
+    }
+
+    /**
+     * 输出可以继续加水印的 PDF，目标大小由一个不压缩的随机内容流补足
+     */
+    private void writePdf(File outputFile, String sourceName, SplittableRandom random) throws IOException {
+        try (PdfDocument pdf = new PdfDocument(new PdfWriter(outputFile))) {
+            PdfFont font = PdfFontFactory.createFont(StandardFonts.HELVETICA);
+            int pageCount = Math.max(1, pages);
+            for (int i = 1; i <= pageCount; i++) {
+                new PdfCanvas(pdf.addNewPage(PageSize.A4))
+                        .beginText()
+                        .setFontAndSize(font, 12)
+                        .moveText(72, 770)
+                        .showText("Fake conversion of " + sourceName + ", page " + i + " of " + pageCount)
+                        .endText();
+            }
+            if (outputSize > 0) {
+                byte[] padding = new byte[outputSize];
+                random.nextBytes(padding);
+                PdfStream stream = new PdfStream(padding);
+                stream.setCompressionLevel(CompressionConstants.NO_COMPRESSION);
+                pdf.getCatalog().put(PADDING_KEY, stream.makeIndirect(pdf));
+            }
+        }
+    }
+
+    /**
+     * 计算摘要直到当前线程用掉指定的 CPU 时间；无法取得线程 CPU 时间时按墙钟时间计
+     */
+    private static void burnCpu(long millis) throws NoSuchAlgorithmException {
+        if (millis <= 0) {
+            return;
+        }
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        boolean cpuClock = threads.isCurrentThreadCpuTimeSupported() && threads.getCurrentThreadCpuTime() >= 0;
+        long budget = TimeUnit.MILLISECONDS.toNanos(millis);
+        long start = cpuClock ? threads.getCurrentThreadCpuTime() : System.nanoTime();
+
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] block = new byte[8192];
+        do {
+            for (int i = 0; i < 8; i++) {
+                digest.update(block);
+            }
+            block[0] ^= digest.digest()[0];
+        } while ((cpuClock ? threads.getCurrentThreadCpuTime() : System.nanoTime()) - start < budget);
+    }
+}
@@ -0,0 +1,199 @@
+package com.ubanillx.pdfconverter.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 源文件下载
+ * 所有服务共用一个 HttpClient（连接复用、支持 HTTP/2），下载时限制连接、读取超时和文件大小，
+ * 响应体通过直接缓冲区写入目标文件
+ */
+@Service
+public class FileDownloadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileDownloadService.class);
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    @Value("${app.download.connect-timeout:10000}")
+    private long connectTimeoutMillis;
+
+    // 两次读到数据之间的最长间隔，超过即认为源站卡住
+    @Value("${app.download.read-timeout:30000}")
+    private long readTimeoutMillis;
+
+    // 整个下载的最长时间
+    @Value("${app.download.timeout:300000}")
+    private long totalTimeoutMillis;
+
+    @Value("${app.download.max-size:209715200}")
+    private long maxSizeBytes;
+
+    @Autowired
+    private ConversionMetrics metrics;
+
+    private HttpClient httpClient;
+    private ScheduledExecutorService watchdog;
+
+    @PostConstruct
+    public void init() {
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .build();
+        watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "download-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (watchdog != null) {
+            watchdog.shutdownNow();
+        }
+    }
+
+    /**
+     * 下载 URL 指向的文件到 target，失败时删除不完整的文件
+     * @param url http(s) URL；本服务存储的文件由 {@link FileStorageService#resolveLocalFile} 直接读取，不经过这里
+     * @param target 目标文件
+     * @return target
+     */
+    public Path download(String url, Path target) throws IOException {
+        return metrics.record(ConversionMetrics.DOWNLOAD, ConversionMetrics.formatOf(url), ConversionMetrics.NONE,
+                () -> downloadTo(url, target));
+    }
+
+    private Path downloadTo(String url, Path target) throws IOException {
+        Path parent = target.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        try {
+            URI uri = URI.create(url.trim());
+            String scheme = uri.getScheme() == null ? "" : uri.getScheme().toLowerCase();
+            // 只接受 http(s)，不允许通过 file: 等地址读取服务器上的任意文件
+            if (!"http".equals(scheme) && !"https".equals(scheme)) {
+                throw new IOException("Unsupported URL scheme: " + url);
+            }
+            downloadHttp(uri, target);
+            logger.info("Downloaded {} ({} bytes) -> {}", url, Files.size(target), target);
+            return target;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(target);
+            throw e instanceof IOException ? (IOException) e : new IOException(e.getMessage(), e);
+        }
+    }
+
+    private void downloadHttp(URI uri, Path target) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMillis(readTimeoutMillis))
+                .GET()
+                .build();
+
+        HttpResponse<InputStream> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Download interrupted: " + uri, e);
+        }
+
+        try (InputStream body = response.body()) {
+            if (response.statusCode() / 100 != 2) {
+                throw new IOException("Download failed with HTTP " + response.statusCode() + ": " + uri);
+            }
+            long contentLength = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+            if (contentLength > maxSizeBytes) {
+                throw new IOException("Source file exceeds max size of " + maxSizeBytes + " bytes: " + uri);
+            }
+            long copied = copyWithLimits(body, target, uri);
+            if (contentLength >= 0 && copied != contentLength) {
+                throw new IOException("Incomplete download (" + copied + " of " + contentLength + " bytes): " + uri);
+            }
+        }
+    }
+
+    /**
+     * 把响应体写入文件，同时检查大小上限；后台定时检查读取进度，卡住或超时时关闭连接让读取线程退出
+     */
+    private long copyWithLimits(InputStream body, Path target, URI uri) throws IOException {
+        long start = System.currentTimeMillis();
+        AtomicLong lastProgress = new AtomicLong(start);
+        AtomicBoolean timedOut = new AtomicBoolean();
+
+        long checkInterval = Math.max(100, Math.min(readTimeoutMillis, totalTimeoutMillis) / 4);
+        ScheduledFuture<?> check = watchdog.scheduleAtFixedRate(() -> {
+            long now = System.currentTimeMillis();
+            if (now - lastProgress.get() > readTimeoutMillis || now - start > totalTimeoutMillis) {
+                timedOut.set(true);
+                try {
+                    body.close();
+                } catch (IOException ignored) {
+                    // 只是为了中断阻塞的读取
+                }
+            }
+        }, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        long total = 0;
+        try (ReadableByteChannel source = Channels.newChannel(body);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (source.read(buffer) != -1) {
+                lastProgress.set(System.currentTimeMillis());
+                total += buffer.position();
+                if (total > maxSizeBytes) {
+                    throw new IOException("Source file exceeds max size of " + maxSizeBytes + " bytes: " + uri);
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                buffer.clear();
+            }
+        } catch (IOException e) {
+            if (timedOut.get()) {
+                throw new IOException("Download timed out: " + uri, e);
+            }
+            throw e;
+        } finally {
+            check.cancel(false);
+        }
+        // 被关闭的连接也可能表现为读到流末尾
+        if (timedOut.get()) {
+            throw new IOException("Download timed out: " + uri);
+        }
+        return total;
+    }
+}
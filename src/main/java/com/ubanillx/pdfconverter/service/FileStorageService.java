@@ -2,12 +2,16 @@ package com.ubanillx.pdfconverter.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -23,25 +27,25 @@ public class FileStorageService {
     @Value("${app.storage.directory:./uploads}")
     private String storageDirectory;
     
+    @Autowired
+    private StorageBackend storageBackend;
+    
+    @Autowired
+    private ConversionMetrics metrics;
+    
     @Value("${app.base.url:http://localhost:9999}")
     private String baseUrl;
     
     public String storeFile(File file, String originalFileName) throws IOException {
-        // 创建存储目录
-        Path storagePath = Paths.get(storageDirectory);
-        if (!Files.exists(storagePath)) {
-            Files.createDirectories(storagePath);
-        }
-        
         // 生成唯一文件名
         String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
         String uniqueId = UUID.randomUUID().toString().substring(0, 8);
         String extension = getFileExtension(originalFileName);
         String newFileName = timestamp + "_" + uniqueId + "." + extension;
         
-        // 移动文件到存储目录
-        Path targetPath = storagePath.resolve(newFileName);
-        Files.move(file.toPath(), targetPath);
+        // 移动文件到存储中
+        metrics.recordRun(ConversionMetrics.PERSIST, extension, ConversionMetrics.NONE,
+                () -> storageBackend.store(newFileName, file.toPath()));
         
         // 生成访问URL
         String fileUrl = baseUrl + "/files/" + newFileName;
@@ -51,12 +55,6 @@ public class FileStorageService {
     }
     
     public String storeUploadedFile(MultipartFile file) throws IOException {
-        // 创建存储目录
-        Path storagePath = Paths.get(storageDirectory);
-        if (!Files.exists(storagePath)) {
-            Files.createDirectories(storagePath);
-        }
-        
         // 生成唯一文件名
         String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
         String uniqueId = UUID.randomUUID().toString().substring(0, 8);
@@ -64,8 +62,11 @@ public class FileStorageService {
         String newFileName = timestamp + "_" + uniqueId + "." + extension;
         
         // 保存文件
-        Path targetPath = storagePath.resolve(newFileName);
-        Files.copy(file.getInputStream(), targetPath);
+        metrics.recordRun(ConversionMetrics.PERSIST, extension, ConversionMetrics.NONE, () -> {
+            try (InputStream content = file.getInputStream()) {
+                storageBackend.store(newFileName, content);
+            }
+        });
         
         // 生成访问URL
         String fileUrl = baseUrl + "/files/" + newFileName;
@@ -74,15 +75,61 @@ public class FileStorageService {
         return fileUrl;
     }
     
+    /**
+     * 存储文件；文件不存在时返回的 File 也不存在
+     */
     public File getFile(String fileName) {
-        Path filePath = Paths.get(storageDirectory, fileName);
-        return filePath.toFile();
+        File file = storageBackend.find(fileName);
+        return file != null ? file : Paths.get(storageDirectory, fileName).toFile();
+    }
+    
+    /**
+     * 把本服务提供的文件地址（app.base.url/files/文件名，或直接给出存储文件名）解析为磁盘上的文件，
+     * 转换时直接读取，省去通过 HTTP 从自身再下载一次
+     * @return 存储目录中的文件；地址不属于本服务或文件不存在时返回 null
+     */
+    public File resolveLocalFile(String url) {
+        if (url == null || url.isEmpty()) {
+            return null;
+        }
+        
+        String prefix = (baseUrl.endsWith("/") ? baseUrl : baseUrl + "/") + "files/";
+        String fileName;
+        if (url.startsWith(prefix)) {
+            fileName = url.substring(prefix.length());
+            int queryIndex = fileName.indexOf('?');
+            if (queryIndex >= 0) {
+                fileName = fileName.substring(0, queryIndex);
+            }
+            int fragmentIndex = fileName.indexOf('#');
+            if (fragmentIndex >= 0) {
+                fileName = fileName.substring(0, fragmentIndex);
+            }
+            fileName = URLDecoder.decode(fileName, StandardCharsets.UTF_8);
+        } else if (!url.contains(":") && !url.contains("/") && !url.contains("\\")) {
+            fileName = url;
+        } else {
+            return null;
+        }
+        
+        // 只允许单层文件名，防止路径穿越
+        if (fileName.isEmpty() || fileName.startsWith(".") || fileName.contains("/") || fileName.contains("\\")) {
+            return null;
+        }
+        return storageBackend.find(fileName);
+    }
+    
+    /**
+     * 强 ETag：存储文件名唯一且内容写入后不再改变，ETag 又只在同一地址内比较，
+     * 因此修改时间和大小足以区分内容，不需要读取文件计算哈希
+     */
+    public String getEntityTag(File file) {
+        return Long.toHexString(file.lastModified()) + "-" + Long.toHexString(file.length());
     }
     
     public boolean deleteFile(String fileName) {
         try {
-            Path filePath = Paths.get(storageDirectory, fileName);
-            return Files.deleteIfExists(filePath);
+            return storageBackend.delete(fileName);
         } catch (IOException e) {
             logger.error("Failed to delete file: {}", fileName, e);
             return false;
@@ -91,8 +138,7 @@ public class FileStorageService {
     
     public long getFileSize(String fileName) {
         try {
-            Path filePath = Paths.get(storageDirectory, fileName);
-            return Files.size(filePath);
+            return Files.size(getFile(fileName).toPath());
         } catch (IOException e) {
             logger.error("Failed to get file size: {}", fileName, e);
             return 0;
@@ -110,6 +156,9 @@ public class FileStorageService {
         return "";
     }
     
+    /**
+     * 存储根目录，也用作转换和水印的输出目录；输出文件存储时再移动到 {@link StorageBackend} 决定的位置
+     */
     public String getStorageDirectory() {
         return storageDirectory;
     }
@@ -0,0 +1,236 @@
+package com.ubanillx.pdfconverter.service;
+
+import com.itextpdf.io.font.FontProgram;
+import com.itextpdf.io.font.FontProgramFactory;
+import com.itextpdf.io.font.PdfEncodings;
+import com.itextpdf.io.font.constants.StandardFonts;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 水印字体注册表
+ * 字体文件（TTF/OTF）只在首次使用或启动预加载时解析一次，解析后的字体程序在各文档间共用；
+ * 已解析字体按文件大小计入内存预算，超出时淘汰最久未使用的字体，下次使用时重新解析
+ */
+@Service
+public class FontRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(FontRegistry.class);
+
+    // 中日韩字体（itext font-asian 内置，不嵌入）：名称 -> {字体名, 编码}
+    private static final Map<String, String[]> CJK_FONTS = new HashMap<>();
+    static {
+        CJK_FONTS.put("stsong-light", new String[]{"STSong-Light", "UniGB-UCS2-H"});
+        CJK_FONTS.put("msung-light", new String[]{"MSung-Light", "UniCNS-UCS2-H"});
+        CJK_FONTS.put("mhei-medium", new String[]{"MHei-Medium", "UniCNS-UCS2-H"});
+        CJK_FONTS.put("heiseimin-w3", new String[]{"HeiseiMin-W3", "UniJIS-UCS2-H"});
+        CJK_FONTS.put("heiseikakugo-w5", new String[]{"HeiseiKakuGo-W5", "UniJIS-UCS2-H"});
+        CJK_FONTS.put("hysmyeongjo-medium", new String[]{"HYSMyeongJo-Medium", "UniKS-UCS2-H"});
+        CJK_FONTS.put("hygothic-medium", new String[]{"HYGoThic-Medium", "UniKS-UCS2-H"});
+    }
+
+    private static final String[] FONT_EXTENSIONS = {".ttf", ".otf"};
+
+    // 自定义字体目录，文件名（不含扩展名）即字体名称
+    @Value("${app.watermark.font-directory:./fonts}")
+    private String fontDirectory;
+
+    // 已解析字体占用的内存上限（按字体文件大小估算）
+    @Value("${app.watermark.font-cache-max-bytes:268435456}")
+    private long maxCacheBytes;
+
+    // 启动时预加载的字体，逗号分隔
+    @Value("${app.watermark.preload-fonts:}")
+    private String preloadFonts;
+
+    // 未指定字体且文字超出 Latin-1 时使用的字体
+    @Value("${app.watermark.default-cjk-font:STSong-Light}")
+    private String defaultCjkFont;
+
+    // 字体名称（小写） -> 字体文件
+    private final Map<String, Path> fontFiles = new ConcurrentHashMap<>();
+
+    // accessOrder=true，迭代顺序即最近最少使用顺序
+    private final LinkedHashMap<String, CachedFont> parsedFonts = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * 解析后的字体：字体程序和创建 PdfFont 时使用的编码
+     */
+    public static class ResolvedFont {
+        private final String name;
+        private final FontProgram program;
+        private final String encoding;
+
+        ResolvedFont(String name, FontProgram program, String encoding) {
+            this.name = name;
+            this.program = program;
+            this.encoding = encoding;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public FontProgram getProgram() {
+            return program;
+        }
+
+        public String getEncoding() {
+            return encoding;
+        }
+    }
+
+    private static class CachedFont {
+        final ResolvedFont font;
+        final long size;
+
+        CachedFont(ResolvedFont font, long size) {
+            this.font = font;
+            this.size = size;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        Path directory = Paths.get(fontDirectory);
+        if (Files.isDirectory(directory)) {
+            try (Stream<Path> stream = Files.list(directory)) {
+                stream.filter(Files::isRegularFile)
+                        .filter(path -> hasFontExtension(path.getFileName().toString()))
+                        .forEach(path -> fontFiles.put(stripExtension(path.getFileName().toString()).toLowerCase(), path));
+            } catch (IOException e) {
+                logger.warn("Failed to scan font directory {}: {}", directory, e.getMessage());
+            }
+            logger.info("Registered {} font file(s) from {}", fontFiles.size(), directory.toAbsolutePath());
+        }
+
+        for (String name : preloadFonts.split(",")) {
+            if (!name.trim().isEmpty()) {
+                try {
+                    resolve(name.trim());
+                } catch (Exception e) {
+                    logger.warn("Failed to preload font {}: {}", name.trim(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 按名称获取字体，名称为空时按文字内容选择默认字体
+     * @param name 字体名称：自定义字体文件名、标准字体或内置中日韩字体
+     * @param text 将要绘制的文字
+     */
+    public ResolvedFont resolve(String name, String text) throws IOException {
+        if (name == null || name.trim().isEmpty()) {
+            // 标准字体只覆盖 Latin-1
+            boolean latin = text == null || text.chars().allMatch(c -> c <= 0xFF);
+            name = latin ? StandardFonts.HELVETICA : defaultCjkFont;
+        }
+        return resolve(name);
+    }
+
+    /**
+     * 按名称获取字体，未解析过或已被淘汰的字体在此解析
+     */
+    public ResolvedFont resolve(String name) throws IOException {
+        String key = name.toLowerCase();
+        synchronized (this) {
+            CachedFont cached = parsedFonts.get(key);
+            if (cached != null) {
+                return cached.font;
+            }
+        }
+
+        long start = System.currentTimeMillis();
+        CachedFont loaded = load(name, key);
+        loads.incrementAndGet();
+        logger.info("Loaded font {} in {} ms", name, System.currentTimeMillis() - start);
+
+        synchronized (this) {
+            CachedFont previous = parsedFonts.put(key, loaded);
+            if (previous != null) {
+                cachedBytes -= previous.size;
+            }
+            cachedBytes += loaded.size;
+            evictIfNecessary(key);
+        }
+        return loaded.font;
+    }
+
+    private CachedFont load(String name, String key) throws IOException {
+        Path file = fontFiles.get(key);
+        if (file != null) {
+            // 不使用 iText 的全局字体缓存，内存由本注册表统一管理
+            byte[] bytes = Files.readAllBytes(file);
+            FontProgram program = FontProgramFactory.createFont(bytes, false);
+            return new CachedFont(new ResolvedFont(name, program, PdfEncodings.IDENTITY_H), bytes.length);
+        }
+
+        String[] cjkFont = CJK_FONTS.get(key);
+        if (cjkFont != null) {
+            return new CachedFont(new ResolvedFont(cjkFont[0], FontProgramFactory.createFont(cjkFont[0]), cjkFont[1]), 0);
+        }
+        if (StandardFonts.isStandardFont(name)) {
+            return new CachedFont(new ResolvedFont(name, FontProgramFactory.createFont(name), PdfEncodings.WINANSI), 0);
+        }
+        throw new IllegalArgumentException("不支持的字体: " + name);
+    }
+
+    // 调用方需持有锁；刚加载的字体即使超出预算也保留
+    private void evictIfNecessary(String keep) {
+        Iterator<Map.Entry<String, CachedFont>> iterator = parsedFonts.entrySet().iterator();
+        while (cachedBytes > maxCacheBytes && iterator.hasNext()) {
+            Map.Entry<String, CachedFont> entry = iterator.next();
+            if (entry.getKey().equals(keep) || entry.getValue().size == 0) {
+                continue;
+            }
+            iterator.remove();
+            cachedBytes -= entry.getValue().size;
+            evictions.incrementAndGet();
+            logger.info("Evicted font {} from cache", entry.getValue().font.getName());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("registeredFiles", fontFiles.size());
+        stats.put("loads", loads.get());
+        stats.put("evictions", evictions.get());
+        synchronized (this) {
+            stats.put("parsedFonts", parsedFonts.size());
+            stats.put("cachedBytes", cachedBytes);
+        }
+        stats.put("maxCacheBytes", maxCacheBytes);
+        return stats;
+    }
+
+    private static boolean hasFontExtension(String fileName) {
+        String lower = fileName.toLowerCase();
+        return Arrays.stream(FONT_EXTENSIONS).anyMatch(lower::endsWith);
+    }
+
+    private static String stripExtension(String fileName) {
+        int lastDotIndex = fileName.lastIndexOf('.');
+        return lastDotIndex > 0 ? fileName.substring(0, lastDotIndex) : fileName;
+    }
+}
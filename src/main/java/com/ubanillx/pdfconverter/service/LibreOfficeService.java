@@ -1,18 +1,13 @@
 package com.ubanillx.pdfconverter.service;
 
-import com.sun.star.beans.PropertyValue;
-import com.sun.star.comp.helper.Bootstrap;
-import com.sun.star.frame.XComponentLoader;
-import com.sun.star.frame.XStorable;
-import com.sun.star.lang.XComponent;
-import com.sun.star.lang.XMultiComponentFactory;
-import com.sun.star.uno.UnoRuntime;
-import com.sun.star.uno.XComponentContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 import java.io.File;
 import java.io.IOException;
@@ -20,17 +15,59 @@ import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 @Service
-public class LibreOfficeService {
+public class LibreOfficeService implements ConversionEngine {
+    
+    public static final String NAME = "uno";
     
     private static final Logger logger = LoggerFactory.getLogger(LibreOfficeService.class);
     
-    private XComponentContext xContext;
-    private XMultiComponentFactory xMCF;
-    private XComponentLoader xLoader;
+    @Autowired
+    private ConversionCacheService conversionCacheService;
+    
+    @Autowired
+    private FileDownloadService fileDownloadService;
+    
+    @Autowired
+    private FileStorageService fileStorageService;
+    
+    @Autowired
+    private ConversionMetrics metrics;
+    
+    @Autowired
+    private ConversionWatchdog watchdog;
+    
+    @Value("${libreoffice.pool.size:2}")
+    private int poolSize;
+    
+    @Value("${libreoffice.pool.base-port:2002}")
+    private int poolBasePort;
+    
+    @Value("${libreoffice.pool.max-conversions-per-instance:200}")
+    private int maxConversionsPerInstance;
+    
+    @Value("${libreoffice.pool.checkout-timeout:30000}")
+    private long checkoutTimeoutMillis;
+    
+    @Value("${libreoffice.pool.connect-timeout:30000}")
+    private long connectTimeoutMillis;
+    
+    @Value("${libreoffice.pool.health-check-interval:30000}")
+    private long healthCheckIntervalMillis;
+    
+    @Value("${libreoffice.pool.profile-dir:${java.io.tmpdir}/pdfconverter-office}")
+    private String profileDirectory;
+    
+    @Value("${app.conversion.engines:}")
+    private String engineNames;
+    
+    private OfficeInstancePool officePool;
     
     // 支持的文件格式映射
     private static final Map<String, String> FORMAT_MAP = new HashMap<>();
@@ -58,13 +95,10 @@ public class LibreOfficeService {
     public void init() {
         logger.info("Initializing LibreOffice service...");
         
-        // 检查是否使用 Docker LibreOffice
-        boolean useDockerLibreOffice = System.getenv("USE_DOCKER_LIBREOFFICE") != null && 
-                                      System.getenv("USE_DOCKER_LIBREOFFICE").equals("true");
-        
-        if (useDockerLibreOffice) {
-            logger.info("Docker LibreOffice mode detected, skipping UNO API initialization");
-            logger.info("LibreOffice service initialized in Docker mode");
+        // 未启用 UNO 引擎时（如只使用 Docker LibreOffice）不启动本机 office 进程
+        List<String> engines = ConversionEngineRouter.configuredEngines(engineNames);
+        if (!engines.contains(NAME)) {
+            logger.info("Conversion engines {} selected, skipping UNO API initialization", engines);
             return;
         }
         
@@ -73,10 +107,16 @@ public class LibreOfficeService {
             logger.info("LibreOffice service initialized successfully");
         } catch (Exception e) {
             logger.error("Failed to initialize LibreOffice service: {}", e.getMessage(), e);
-            logger.warn("LibreOffice service will use mock mode for testing");
-            xContext = null;
-            xMCF = null;
-            xLoader = null;
+            logger.warn("UNO conversion engine is unavailable, requests are routed to other engines");
+            officePool = null;
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (officePool != null) {
+            officePool.close();
+            officePool = null;
         }
     }
     
@@ -109,17 +149,20 @@ public class LibreOfficeService {
             }
             System.setProperty("java.library.path", javaLibraryPath);
             
-            logger.info("Calling Bootstrap.bootstrap()...");
-            xContext = Bootstrap.bootstrap();
-            logger.info("Bootstrap successful, getting service manager...");
-            
-            xMCF = xContext.getServiceManager();
-            logger.info("Service manager obtained, creating Desktop instance...");
+            if (!new File(paths.executable).canExecute()) {
+                throw new Exception("no office executable found at " + paths.executable);
+            }
             
-            Object desktop = xMCF.createInstanceWithContext("com.sun.star.frame.Desktop", xContext);
-            logger.info("Desktop instance created, querying interface...");
+            // 每个实例使用独立的端口和用户配置目录，避免 office 进程之间互相锁定配置
+            List<OfficeInstance> instances = new ArrayList<>();
+            for (int i = 0; i < Math.max(1, poolSize); i++) {
+                instances.add(new OfficeInstance(i, "127.0.0.1", poolBasePort + i,
+                        instance -> launchOfficeProcess(paths.executable, instance), metrics, watchdog));
+            }
             
-            xLoader = UnoRuntime.queryInterface(XComponentLoader.class, desktop);
+            logger.info("Starting office instance pool: size={}, basePort={}", instances.size(), poolBasePort);
+            officePool = new OfficeInstancePool(instances, maxConversionsPerInstance,
+                    connectTimeoutMillis, healthCheckIntervalMillis);
             logger.info("LibreOffice UNO API initialized successfully from Maven dependencies");
             
         } catch (Exception e) {
@@ -128,6 +171,31 @@ public class LibreOfficeService {
         }
     }
     
+    private Process launchOfficeProcess(String executable, OfficeInstance instance) throws IOException {
+        Path profilePath = Paths.get(profileDirectory, "instance_" + instance.getIndex());
+        Files.createDirectories(profilePath);
+        
+        List<String> command = new ArrayList<>();
+        command.add(executable);
+        command.add("--headless");
+        command.add("--invisible");
+        command.add("--nocrashreport");
+        command.add("--nodefault");
+        command.add("--nologo");
+        command.add("--nofirststartwizard");
+        command.add("--norestore");
+        command.add("--nolockcheck");
+        command.add("--accept=socket,host=" + instance.getHost() + ",port=" + instance.getPort()
+                + ",tcpNoDelay=1;urp;StarOffice.ComponentContext");
+        command.add("-env:UserInstallation=" + profilePath.toUri());
+        
+        logger.debug("Launching office instance {}: {}", instance.describe(), String.join(" ", command));
+        ProcessBuilder processBuilder = new ProcessBuilder(command);
+        processBuilder.redirectErrorStream(true);
+        processBuilder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        return processBuilder.start();
+    }
+    
     private LibreOfficePaths detectLibreOfficePaths() {
         LibreOfficePaths paths = new LibreOfficePaths();
         
@@ -165,35 +233,175 @@ public class LibreOfficeService {
         String urePath;
     }
     
+    @Override
+    public String getName() {
+        return NAME;
+    }
+    
+    @Override
+    public int getCapacity() {
+        return Math.max(1, poolSize);
+    }
+    
+    /**
+     * office 实例池未启动时只能模拟转换，视为不可用
+     */
+    @Override
+    public boolean isHealthy() {
+        return officePool != null;
+    }
+    
+    @Override
+    public boolean supportsFormat(String targetFormat) {
+        return isFormatSupported(targetFormat);
+    }
+    
+    @Override
     public File convertFile(String sourceUrl, String targetFormat, String outputDir) throws Exception {
         logger.info("Starting conversion from URL: {} to format: {}", sourceUrl, targetFormat);
         
         // 检查LibreOffice是否已初始化
-        if (xLoader == null) {
-            logger.warn("LibreOffice not initialized, creating mock conversion for testing");
-            return createMockConversion(sourceUrl, targetFormat, outputDir);
+        if (officePool == null) {
+            throw new IllegalStateException("LibreOffice is not initialized");
         }
         
-        // 下载源文件
-        File sourceFile = downloadFile(sourceUrl);
-        if (sourceFile == null || !sourceFile.exists()) {
-            throw new IOException("Failed to download source file from: " + sourceUrl);
+        // 获取源文件：本服务存储的文件直接读取，其他地址下载
+        File sourceFile = resolveSourceFile(sourceUrl);
+        try {
+            String targetExtension = targetFormat.toLowerCase();
+            
+            // 生成输出文件名
+            File outputFile = createOutputFile(sourceFile, targetExtension, outputDir);
+            
+            // 相同内容、相同格式的转换结果直接复用缓存
+            String cacheKey = conversionCacheService.computeKey(sourceFile, targetExtension,
+                    FORMAT_MAP.get(targetExtension));
+            if (conversionCacheService.lookup(cacheKey, outputFile)) {
+                return outputFile;
+            }
+            
+            // 反复超时的文档直接拒绝，不再占用 office 实例
+            watchdog.checkQuarantine(cacheKey);
+            
+            // 执行转换
+            try {
+                convertDocument(sourceFile, outputFile, targetFormat);
+            } catch (Exception e) {
+                watchdog.recordResult(cacheKey, e);
+                throw e;
+            }
+            watchdog.recordResult(cacheKey, null);
+            conversionCacheService.store(cacheKey, outputFile);
+            
+            logger.info("Conversion completed. Output file: {}", outputFile.getAbsolutePath());
+            return outputFile;
+        } finally {
+            deleteDownloadedSource(sourceUrl, sourceFile);
         }
+    }
+    
+    /**
+     * 批量转换：整批文档复用同一个 office 实例，逐个回调结果
+     */
+    @Override
+    public void convertFiles(List<String> sourceUrls, String targetFormat, String outputDir,
+                             BatchConversionCallback callback) {
+        logger.info("Starting batch conversion of {} file(s) to format: {}", sourceUrls.size(), targetFormat);
         
-        // 获取文件扩展名
-        String originalExtension = getFileExtension(sourceFile.getName());
         String targetExtension = targetFormat.toLowerCase();
+        String filterName = FORMAT_MAP.get(targetExtension);
         
-        // 生成输出文件名
-        String baseName = sourceFile.getName().substring(0, sourceFile.getName().lastIndexOf('.'));
-        String outputFileName = baseName + "." + targetExtension;
-        File outputFile = new File(outputDir, outputFileName);
-        
-        // 执行转换
-        convertDocument(sourceFile, outputFile, targetFormat);
-        
-        logger.info("Conversion completed. Output file: {}", outputFile.getAbsolutePath());
-        return outputFile;
+        OfficeInstance instance = null;
+        int conversions = 0;
+        try {
+            for (String sourceUrl : sourceUrls) {
+                File sourceFile = null;
+                try {
+                    if (officePool == null) {
+                        throw new IllegalStateException("LibreOffice is not initialized");
+                    }
+                    if (filterName == null) {
+                        throw new Exception("Unsupported target format: " + targetFormat);
+                    }
+                    
+                    sourceFile = resolveSourceFile(sourceUrl);
+                    File outputFile = createOutputFile(sourceFile, targetExtension, outputDir);
+                    
+                    String cacheKey = conversionCacheService.computeKey(sourceFile, targetExtension, filterName);
+                    if (!conversionCacheService.lookup(cacheKey, outputFile)) {
+                        watchdog.checkQuarantine(cacheKey);
+                        if (instance == null) {
+                            instance = officePool.checkout(checkoutTimeoutMillis);
+                            conversions = 0;
+                        }
+                        try {
+                            instance.convert(
+                                    "file://" + sourceFile.getAbsolutePath().replace("\\", "/"),
+                                    "file://" + outputFile.getAbsolutePath().replace("\\", "/"),
+                                    filterName);
+                            conversions++;
+                        } catch (Exception e) {
+                            // 失败后归还实例（必要时重启），剩余文档重新借出实例
+                            officePool.release(instance, true, conversions + 1);
+                            instance = null;
+                            watchdog.recordResult(cacheKey, e);
+                            throw e;
+                        }
+                        watchdog.recordResult(cacheKey, null);
+                        conversionCacheService.store(cacheKey, outputFile);
+                    }
+                    
+                    callback.onResult(sourceUrl, outputFile, null);
+                } catch (Exception e) {
+                    logger.warn("Batch item {} failed: {}", sourceUrl, e.getMessage());
+                    callback.onResult(sourceUrl, null, e);
+                } finally {
+                    deleteDownloadedSource(sourceUrl, sourceFile);
+                }
+            }
+        } finally {
+            if (instance != null) {
+                officePool.release(instance, false, conversions);
+            }
+        }
+    }
+    
+    private File resolveSourceFile(String sourceUrl) throws IOException {
+        File localFile = fileStorageService.resolveLocalFile(sourceUrl);
+        if (localFile != null) {
+            if (!localFile.exists()) {
+                throw new SourceDocumentException("Source file not found: " + sourceUrl);
+            }
+            logger.info("Reading source file directly from storage: {}", localFile.getAbsolutePath());
+            return localFile;
+        }
+        return downloadFile(sourceUrl);
+    }
+    
+    /**
+     * 删除为本次转换下载的源文件；本服务存储的文件保留
+     */
+    private void deleteDownloadedSource(String sourceUrl, File sourceFile) {
+        if (sourceFile == null || fileStorageService.resolveLocalFile(sourceUrl) != null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(sourceFile.toPath());
+        } catch (IOException e) {
+            logger.warn("Failed to delete downloaded source {}: {}", sourceFile, e.getMessage());
+        }
+    }
+    
+    /**
+     * 输出文件名带唯一后缀：源文件可能就在输出目录中（同格式转换时会覆盖源文件），
+     * 同一个存储文件也可能被并发转换
+     */
+    private File createOutputFile(File sourceFile, String targetExtension, String outputDir) {
+        String sourceName = sourceFile.getName();
+        int lastDotIndex = sourceName.lastIndexOf('.');
+        String baseName = lastDotIndex > 0 ? sourceName.substring(0, lastDotIndex) : sourceName;
+        String uniqueId = UUID.randomUUID().toString().substring(0, 8);
+        return new File(outputDir, baseName + "_" + uniqueId + "." + targetExtension);
     }
     
     private File downloadFile(String url) throws IOException {
@@ -205,70 +413,44 @@ public class LibreOfficeService {
             }
             
             Path tempFile = Files.createTempFile("libreoffice_", "_" + fileName);
-            Files.copy(fileUrl.openStream(), tempFile, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-            
-            return tempFile.toFile();
+            return fileDownloadService.download(url, tempFile).toFile();
         } catch (Exception e) {
             logger.error("Failed to download file from URL: {}", url, e);
-            throw new IOException("Failed to download file", e);
+            throw new SourceDocumentException("Failed to download file", e);
         }
     }
     
     private void convertDocument(File sourceFile, File outputFile, String targetFormat) throws Exception {
-        XComponent xComponent = null;
+        // 准备保存属性
+        String filterName = FORMAT_MAP.get(targetFormat.toLowerCase());
+        if (filterName == null) {
+            throw new Exception("Unsupported target format: " + targetFormat);
+        }
+        
+        OfficeInstance instance = officePool.checkout(checkoutTimeoutMillis);
+        boolean failed = true;
         
         try {
-            // 准备加载属性
-            PropertyValue[] loadProps = new PropertyValue[1];
-            loadProps[0] = new PropertyValue();
-            loadProps[0].Name = "Hidden";
-            loadProps[0].Value = true;
+            logger.debug("Converting {} on office instance {}", sourceFile.getName(), instance.describe());
             
-            // 加载文档
             String sourceUrl = "file://" + sourceFile.getAbsolutePath().replace("\\", "/");
-            xComponent = xLoader.loadComponentFromURL(sourceUrl, "_blank", 0, loadProps);
-            
-            if (xComponent == null) {
-                throw new Exception("Failed to load document: " + sourceFile.getName());
-            }
-            
-            // 准备保存属性
-            String filterName = FORMAT_MAP.get(targetFormat.toLowerCase());
-            if (filterName == null) {
-                throw new Exception("Unsupported target format: " + targetFormat);
-            }
-            
-            PropertyValue[] saveProps = new PropertyValue[2];
-            saveProps[0] = new PropertyValue();
-            saveProps[0].Name = "FilterName";
-            saveProps[0].Value = filterName;
-            
-            saveProps[1] = new PropertyValue();
-            saveProps[1].Name = "Overwrite";
-            saveProps[1].Value = true;
-            
-            // 保存文档
-            XStorable xStorable = UnoRuntime.queryInterface(XStorable.class, xComponent);
             String outputUrl = "file://" + outputFile.getAbsolutePath().replace("\\", "/");
-            xStorable.storeToURL(outputUrl, saveProps);
+            instance.convert(sourceUrl, outputUrl, filterName);
             
             logger.info("Document converted successfully from {} to {}", 
                        sourceFile.getName(), outputFile.getName());
+            failed = false;
             
         } finally {
-            // 关闭文档
-            if (xComponent != null) {
-                xComponent.dispose();
-            }
+            officePool.release(instance, failed);
         }
     }
     
-    private String getFileExtension(String fileName) {
-        int lastDotIndex = fileName.lastIndexOf('.');
-        if (lastDotIndex > 0 && lastDotIndex < fileName.length() - 1) {
-            return fileName.substring(lastDotIndex + 1).toLowerCase();
-        }
-        return "";
+    /**
+     * 目标格式对应的导出过滤器名称，不支持时返回 null
+     */
+    public String getFilterName(String format) {
+        return FORMAT_MAP.get(format.toLowerCase());
     }
     
     public boolean isFormatSupported(String format) {
@@ -278,28 +460,4 @@ public class LibreOfficeService {
     public Map<String, String> getSupportedFormats() {
         return new HashMap<>(FORMAT_MAP);
     }
-    
-    private File createMockConversion(String sourceUrl, String targetFormat, String outputDir) throws Exception {
-        logger.info("Creating mock conversion for testing purposes");
-        
-        // 下载源文件
-        File sourceFile = downloadFile(sourceUrl);
-        if (sourceFile == null || !sourceFile.exists()) {
-            throw new IOException("Failed to download source file from: " + sourceUrl);
-        }
-        
-        // 生成输出文件名
-        String baseName = sourceFile.getName().substring(0, sourceFile.getName().lastIndexOf('.'));
-        String outputFileName = baseName + "_converted." + targetFormat.toLowerCase();
-        File outputFile = new File(outputDir, outputFileName);
-        
-        // 创建输出目录
-        outputFile.getParentFile().mkdirs();
-        
-        // 模拟转换：复制源文件到目标位置
-        Files.copy(sourceFile.toPath(), outputFile.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-        
-        logger.info("Mock conversion completed. Output file: {}", outputFile.getAbsolutePath());
-        return outputFile;
-    }
 }
@@ -0,0 +1,123 @@
+package com.ubanillx.pdfconverter.service;
+
+import com.ubanillx.pdfconverter.model.ConversionJob;
+import com.ubanillx.pdfconverter.model.JobStatus;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单节点内存任务队列
+ * 固定数量的 worker 从有界队列中取任务执行，任务状态保存在内存中
+ */
+@Service
+@ConditionalOnProperty(name = "app.jobs.queue", havingValue = "local", matchIfMissing = true)
+public class LocalConversionJobQueue implements ConversionJobQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalConversionJobQueue.class);
+
+    @Value("${app.jobs.workers:4}")
+    private int workerCount;
+
+    @Value("${app.jobs.queue-capacity:200}")
+    private int queueCapacity;
+
+    @Value("${app.jobs.retention:3600000}")
+    private long retentionMillis;
+
+    private final Map<String, ConversionJob> jobs = new ConcurrentHashMap<>();
+
+    private ThreadPoolExecutor executor;
+    private ScheduledExecutorService cleaner;
+    private Handler handler;
+
+    @Override
+    public void start(Handler handler) {
+        this.handler = handler;
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> new Thread(runnable, "conversion-worker-" + threadCounter.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        cleaner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "conversion-job-cleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(60000L, retentionMillis / 10);
+        cleaner.scheduleWithFixedDelay(this::evictFinishedJobs, interval, interval, TimeUnit.MILLISECONDS);
+
+        logger.info("Local conversion job queue started: workers={}, queueCapacity={}", workerCount, queueCapacity);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (cleaner != null) {
+            cleaner.shutdownNow();
+        }
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Override
+    public void enqueue(ConversionJob job) {
+        jobs.put(job.getJobId(), job);
+
+        try {
+            executor.execute(() -> runJob(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getJobId());
+            logger.warn("Conversion queue is full ({}), rejecting job for {}", queueCapacity, job.getOriginalUrl());
+            throw e;
+        }
+    }
+
+    @Override
+    public ConversionJob find(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    private void runJob(ConversionJob job) {
+        job.setAttempts(job.getAttempts() + 1);
+        job.setStartedAt(System.currentTimeMillis());
+        job.setStatus(JobStatus.RUNNING);
+
+        try {
+            handler.handle(job);
+        } catch (Exception e) {
+            logger.error("Conversion job {} failed", job.getJobId(), e);
+            job.setMessage("转换失败: " + e.getMessage());
+            job.setStatus(JobStatus.FAILED);
+        } finally {
+            job.setFinishedAt(System.currentTimeMillis());
+        }
+
+        logger.info("Conversion job {} finished with status {}", job.getJobId(), job.getStatus().getValue());
+    }
+
+    private void evictFinishedJobs() {
+        long threshold = System.currentTimeMillis() - retentionMillis;
+        jobs.values().removeIf(job -> job.getStatus().isFinished() && job.getFinishedAt() < threshold);
+    }
+}
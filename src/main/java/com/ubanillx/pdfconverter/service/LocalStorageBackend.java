@@ -0,0 +1,170 @@
+package com.ubanillx.pdfconverter.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * 本地磁盘存储，按文件名哈希分层存放
+ * 文件放在 app.storage.directory/ab/cd/文件名（ab、cd 为文件名 SHA-256 的前几个字节），单个目录的文件数保持在较小规模；
+ * 迁移期间旧的平铺文件（直接位于存储根目录）仍可按原文件名找到，可选在后台把它们移动到分层目录
+ */
+@Service
+@ConditionalOnProperty(name = "app.storage.backend", havingValue = "local", matchIfMissing = true)
+public class LocalStorageBackend implements StorageBackend {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalStorageBackend.class);
+
+    // FileStorageService 生成的存储文件名：时间戳_8位ID.扩展名；根目录中的其他文件（转换中间文件等）不迁移
+    private static final Pattern STORED_NAME = Pattern.compile("\\d{8}_\\d{6}_[0-9a-f]{8}\\.[^./\\\\]*");
+
+    @Value("${app.storage.directory:./uploads}")
+    private String storageDirectory;
+
+    // 分层目录的层数，每层 256 个子目录；0 表示平铺
+    @Value("${app.storage.shard-depth:2}")
+    private int shardDepth;
+
+    // 启动时在后台把根目录中的旧平铺文件移动到分层目录
+    @Value("${app.storage.migrate-legacy:false}")
+    private boolean migrateLegacy;
+
+    @PostConstruct
+    public void init() {
+        if (migrateLegacy && shardDepth > 0) {
+            Thread migration = new Thread(() -> {
+                try {
+                    migrateLegacyFiles();
+                } catch (IOException e) {
+                    logger.warn("Legacy storage migration failed: {}", e.getMessage(), e);
+                }
+            }, "storage-migration");
+            migration.setDaemon(true);
+            migration.start();
+        }
+    }
+
+    @Override
+    public void store(String name, Path source) throws IOException {
+        Path target = prepareTarget(name);
+        Files.move(source, target);
+    }
+
+    @Override
+    public void store(String name, InputStream content) throws IOException {
+        Path target = prepareTarget(name);
+        Files.copy(content, target);
+    }
+
+    @Override
+    public File find(String name) {
+        if (!isValidName(name)) {
+            return null;
+        }
+        Path sharded = shardedPath(name);
+        if (Files.isRegularFile(sharded)) {
+            return sharded.toFile();
+        }
+        Path legacy = Paths.get(storageDirectory, name);
+        if (Files.isRegularFile(legacy)) {
+            return legacy.toFile();
+        }
+        // 查找期间文件可能刚被迁移
+        return Files.isRegularFile(sharded) ? sharded.toFile() : null;
+    }
+
+    @Override
+    public boolean delete(String name) throws IOException {
+        if (!isValidName(name)) {
+            return false;
+        }
+        boolean deleted = Files.deleteIfExists(shardedPath(name));
+        return Files.deleteIfExists(Paths.get(storageDirectory, name)) || deleted;
+    }
+
+    /**
+     * 把根目录中的旧平铺文件移动到分层目录，逐个目录项处理，不一次性列出整个目录
+     * @return 迁移的文件数
+     */
+    public int migrateLegacyFiles() throws IOException {
+        Path root = Paths.get(storageDirectory);
+        if (shardDepth <= 0 || !Files.isDirectory(root)) {
+            return 0;
+        }
+
+        int migrated = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root,
+                path -> isStoredName(path.getFileName().toString()) && Files.isRegularFile(path))) {
+            for (Path legacy : stream) {
+                String name = legacy.getFileName().toString();
+                try {
+                    Files.move(legacy, prepareTarget(name));
+                    migrated++;
+                } catch (FileAlreadyExistsException e) {
+                    logger.warn("Skipping legacy file already present in shard: {}", name);
+                } catch (IOException e) {
+                    logger.warn("Failed to migrate legacy file {}: {}", name, e.getMessage());
+                }
+            }
+        }
+        logger.info("Migrated {} legacy stored file(s) into sharded layout", migrated);
+        return migrated;
+    }
+
+    /**
+     * 是否为 FileStorageService 生成的存储文件名
+     */
+    static boolean isStoredName(String name) {
+        return STORED_NAME.matcher(name).matches();
+    }
+
+    private Path prepareTarget(String name) throws IOException {
+        if (!isValidName(name)) {
+            throw new IOException("Invalid storage name: " + name);
+        }
+        Path target = shardedPath(name);
+        Files.createDirectories(target.getParent());
+        return target;
+    }
+
+    Path shardedPath(String name) {
+        Path path = Paths.get(storageDirectory);
+        if (shardDepth > 0) {
+            String hash = hashName(name);
+            for (int level = 0; level < shardDepth; level++) {
+                path = path.resolve(hash.substring(level * 2, level * 2 + 2));
+            }
+        }
+        return path.resolve(name);
+    }
+
+    private static String hashName(String name) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(name.getBytes(StandardCharsets.UTF_8)));
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // 只允许单层文件名，防止路径穿越
+    private static boolean isValidName(String name) {
+        return name != null && !name.isEmpty() && !name.startsWith(".") && !name.contains("/") && !name.contains("\\");
+    }
+}
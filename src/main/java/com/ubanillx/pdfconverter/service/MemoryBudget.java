@@ -0,0 +1,61 @@
+package com.ubanillx.pdfconverter.service;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按估算字节数分配的堆内存预算
+ * 任务开始前预留估算的内存，预算不足时排队等待，等待超时或单个任务超出总预算时拒绝
+ */
+final class MemoryBudget {
+
+    private final long capacity;
+    private long reserved;
+    private long peakReserved;
+
+    MemoryBudget(long capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * 预留内存，预算不足时最多等待 timeoutMillis
+     * @throws RejectedExecutionException 超出总预算或等待超时
+     */
+    synchronized void acquire(long bytes, long timeoutMillis) throws InterruptedException {
+        if (bytes > capacity) {
+            throw new RejectedExecutionException("预计需要 " + toMegabytes(bytes) + " MB 内存，超出预算 "
+                    + toMegabytes(capacity) + " MB");
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (reserved + bytes > capacity) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new RejectedExecutionException("内存预算已满，请稍后重试");
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        reserved += bytes;
+        peakReserved = Math.max(peakReserved, reserved);
+    }
+
+    synchronized void release(long bytes) {
+        reserved -= bytes;
+        notifyAll();
+    }
+
+    long getCapacity() {
+        return capacity;
+    }
+
+    synchronized long getReserved() {
+        return reserved;
+    }
+
+    synchronized long getPeakReserved() {
+        return peakReserved;
+    }
+
+    static long toMegabytes(long bytes) {
+        return bytes / (1024 * 1024);
+    }
+}
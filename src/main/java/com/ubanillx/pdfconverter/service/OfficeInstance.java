@@ -0,0 +1,321 @@
+package com.ubanillx.pdfconverter.service;
+
+import com.sun.star.beans.PropertyValue;
+import com.sun.star.bridge.XUnoUrlResolver;
+import com.sun.star.frame.XComponentLoader;
+import com.sun.star.frame.XDesktop;
+import com.sun.star.frame.XStorable;
+import com.sun.star.lang.XComponent;
+import com.sun.star.lang.XMultiComponentFactory;
+import com.sun.star.lang.XServiceInfo;
+import com.sun.star.uno.UnoRuntime;
+import com.sun.star.uno.XComponentContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个 headless office 实例
+ * 每个实例监听独立的 socket 端口，并使用独立的用户配置目录，由 {@link OfficeInstancePool} 统一管理
+ */
+public class OfficeInstance {
+
+    private static final Logger logger = LoggerFactory.getLogger(OfficeInstance.class);
+
+    /**
+     * 启动 office 进程的方式；为 null 时表示进程由外部管理，实例只负责连接
+     */
+    @FunctionalInterface
+    public interface Launcher {
+        Process launch(OfficeInstance instance) throws Exception;
+    }
+
+    /**
+     * 结束外部管理的 office 进程（如容器内的监听进程），由外部的守护脚本重新拉起
+     */
+    @FunctionalInterface
+    public interface Terminator {
+        void terminate(OfficeInstance instance) throws Exception;
+    }
+
+    private final int index;
+    private final String host;
+    private final int port;
+    private final Launcher launcher;
+    private final ConversionMetrics metrics;
+    private final ConversionWatchdog watchdog;
+
+    private volatile Terminator terminator;
+    private volatile Process process;
+    private volatile XComponentContext remoteContext;
+    private volatile XComponentLoader loader;
+    private volatile XDesktop desktop;
+    private int conversionCount;
+
+    public OfficeInstance(int index, String host, int port, Launcher launcher, ConversionMetrics metrics,
+                          ConversionWatchdog watchdog) {
+        this.index = index;
+        this.host = host;
+        this.port = port;
+        this.launcher = launcher;
+        this.metrics = metrics;
+        this.watchdog = watchdog;
+    }
+
+    /**
+     * 启动（或连接）office 进程，直到 UNO 连接建立或超时
+     */
+    synchronized void start(XComponentContext localContext, long connectTimeoutMillis) throws Exception {
+        if (launcher != null) {
+            process = launcher.launch(this);
+        }
+
+        long deadline = System.currentTimeMillis() + connectTimeoutMillis;
+        Exception lastError = null;
+        while (System.currentTimeMillis() < deadline) {
+            if (process != null && !process.isAlive()) {
+                throw new Exception("Office process " + describe() + " exited with code " + process.exitValue());
+            }
+            try {
+                connect(localContext);
+                conversionCount = 0;
+                logger.info("Office instance {} is ready", describe());
+                return;
+            } catch (com.sun.star.connection.NoConnectException e) {
+                lastError = e;
+                Thread.sleep(250);
+            }
+        }
+
+        stop();
+        throw new Exception("Timed out connecting to office instance " + describe(), lastError);
+    }
+
+    private void connect(XComponentContext localContext) throws Exception {
+        XMultiComponentFactory localMcf = localContext.getServiceManager();
+        Object resolverObject = localMcf.createInstanceWithContext("com.sun.star.bridge.UnoUrlResolver", localContext);
+        XUnoUrlResolver resolver = UnoRuntime.queryInterface(XUnoUrlResolver.class, resolverObject);
+
+        Object contextObject = resolver.resolve(getUnoUrl());
+        XComponentContext context = UnoRuntime.queryInterface(XComponentContext.class, contextObject);
+        XMultiComponentFactory mcf = context.getServiceManager();
+        Object desktopObject = mcf.createInstanceWithContext("com.sun.star.frame.Desktop", context);
+
+        remoteContext = context;
+        desktop = UnoRuntime.queryInterface(XDesktop.class, desktopObject);
+        loader = UnoRuntime.queryInterface(XComponentLoader.class, desktopObject);
+    }
+
+    /**
+     * 在该实例上转换文档
+     * @param sourceUrl 源文件的 file:// URL（office 进程可见的路径）
+     * @param outputUrl 输出文件的 file:// URL（office 进程可见的路径）
+     * @param filterName 导出过滤器名称
+     */
+    public void convert(String sourceUrl, String outputUrl, String filterName) throws Exception {
+        XComponentLoader currentLoader = loader;
+        if (currentLoader == null) {
+            throw new Exception("Office instance " + describe() + " is not connected");
+        }
+
+        String sourceFormat = ConversionMetrics.formatOf(sourceUrl);
+        String targetFormat = ConversionMetrics.formatOf(outputUrl);
+        XComponent xComponent = null;
+        try {
+            // 准备加载属性
+            PropertyValue[] loadProps = new PropertyValue[1];
+            loadProps[0] = new PropertyValue();
+            loadProps[0].Name = "Hidden";
+            loadProps[0].Value = true;
+
+            // 加载文档，超过截止时间时看门狗结束 office 进程
+            xComponent = metrics.record(ConversionMetrics.LOAD, sourceFormat, targetFormat,
+                    () -> watchdog.call(this, ConversionMetrics.LOAD, () -> {
+                        XComponent loaded;
+                        try {
+                            loaded = currentLoader.loadComponentFromURL(sourceUrl, "_blank", 0, loadProps);
+                        } catch (com.sun.star.io.IOException | com.sun.star.lang.IllegalArgumentException e) {
+                            // office 能响应但无法读取文档：文档损坏或格式不受支持
+                            throw new SourceDocumentException("Failed to load document: " + sourceUrl, e);
+                        }
+                        if (loaded == null) {
+                            throw new SourceDocumentException("Failed to load document: " + sourceUrl);
+                        }
+                        return loaded;
+                    }));
+
+            // 准备保存属性
+            PropertyValue[] saveProps = new PropertyValue[2];
+            saveProps[0] = new PropertyValue();
+            saveProps[0].Name = "FilterName";
+            saveProps[0].Value = resolveFilterName(xComponent, filterName);
+
+            saveProps[1] = new PropertyValue();
+            saveProps[1].Name = "Overwrite";
+            saveProps[1].Value = true;
+
+            // 保存文档
+            XStorable xStorable = UnoRuntime.queryInterface(XStorable.class, xComponent);
+            metrics.recordRun(ConversionMetrics.STORE, sourceFormat, targetFormat,
+                    () -> watchdog.call(this, ConversionMetrics.STORE, () -> {
+                        xStorable.storeToURL(outputUrl, saveProps);
+                        return null;
+                    }));
+
+        } finally {
+            // 关闭文档；实例已被看门狗结束时连接已断开，不再调用
+            if (xComponent != null && loader == currentLoader) {
+                try {
+                    xComponent.dispose();
+                } catch (Exception e) {
+                    logger.warn("Failed to dispose document {}: {}", sourceUrl, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * PDF 导出过滤器因文档类型而异，表格和演示文稿不能使用 Writer 的过滤器
+     */
+    private String resolveFilterName(XComponent document, String filterName) {
+        if (!"writer_pdf_Export".equals(filterName)) {
+            return filterName;
+        }
+        XServiceInfo serviceInfo = UnoRuntime.queryInterface(XServiceInfo.class, document);
+        if (serviceInfo == null) {
+            return filterName;
+        }
+        if (serviceInfo.supportsService("com.sun.star.sheet.SpreadsheetDocument")) {
+            return "calc_pdf_Export";
+        }
+        if (serviceInfo.supportsService("com.sun.star.presentation.PresentationDocument")) {
+            return "impress_pdf_Export";
+        }
+        if (serviceInfo.supportsService("com.sun.star.drawing.DrawingDocument")) {
+            return "draw_pdf_Export";
+        }
+        return filterName;
+    }
+
+    /**
+     * 关闭 office 进程；外部管理的进程由其守护脚本负责重新拉起
+     */
+    synchronized void stop() {
+        XDesktop currentDesktop = desktop;
+        remoteContext = null;
+        loader = null;
+        desktop = null;
+
+        if (currentDesktop != null) {
+            try {
+                currentDesktop.terminate();
+            } catch (Exception e) {
+                logger.debug("Office instance {} did not terminate cleanly: {}", describe(), e.getMessage());
+            }
+        }
+
+        Process currentProcess = process;
+        process = null;
+        if (currentProcess != null) {
+            try {
+                if (!currentProcess.waitFor(5, TimeUnit.SECONDS)) {
+                    currentProcess.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                currentProcess.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 释放实例：本地启动的进程会被关闭，外部管理的进程只断开连接
+     */
+    void shutdown() {
+        if (launcher != null) {
+            stop();
+        } else {
+            remoteContext = null;
+            loader = null;
+            desktop = null;
+        }
+    }
+
+    /**
+     * 强制结束 office 进程，用于进程挂起无法正常退出或转换超时的情况
+     */
+    void kill() {
+        Process currentProcess = process;
+        Terminator currentTerminator = terminator;
+        if (currentProcess != null) {
+            currentProcess.destroyForcibly();
+        } else if (currentTerminator != null) {
+            try {
+                currentTerminator.terminate(this);
+            } catch (Exception e) {
+                logger.warn("Failed to terminate office instance {}: {}", describe(), e.getMessage());
+            }
+        }
+        remoteContext = null;
+        loader = null;
+        desktop = null;
+    }
+
+    /**
+     * 健康检查：进程存活并且 UNO 连接可以响应调用
+     */
+    boolean isHealthy() {
+        if (process != null && !process.isAlive()) {
+            return false;
+        }
+        XDesktop currentDesktop = desktop;
+        if (currentDesktop == null) {
+            return false;
+        }
+        try {
+            currentDesktop.getCurrentFrame();
+            return true;
+        } catch (Exception e) {
+            logger.warn("Office instance {} failed health check: {}", describe(), e.getMessage());
+            return false;
+        }
+    }
+
+    public void setTerminator(Terminator terminator) {
+        this.terminator = terminator;
+    }
+
+    synchronized int incrementConversionCount(int conversions) {
+        conversionCount += conversions;
+        return conversionCount;
+    }
+
+    public XComponentLoader getLoader() {
+        return loader;
+    }
+
+    public XComponentContext getRemoteContext() {
+        return remoteContext;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getUnoUrl() {
+        return "uno:socket,host=" + host + ",port=" + port + ";urp;StarOffice.ComponentContext";
+    }
+
+    public String describe() {
+        return "#" + index + " (" + host + ":" + port + ")";
+    }
+}
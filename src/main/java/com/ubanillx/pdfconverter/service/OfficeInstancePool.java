@@ -0,0 +1,197 @@
+package com.ubanillx.pdfconverter.service;
+
+import com.sun.star.comp.helper.Bootstrap;
+import com.sun.star.uno.XComponentContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * office 实例池
+ * 转换前 checkout 一个空闲实例，转换后归还；实例崩溃、健康检查失败或转换次数达到上限时在后台重启
+ */
+public class OfficeInstancePool implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(OfficeInstancePool.class);
+
+    private final List<OfficeInstance> instances;
+    private final BlockingQueue<OfficeInstance> idleInstances = new LinkedBlockingQueue<>();
+    private final int maxConversionsPerInstance;
+    private final long connectTimeoutMillis;
+    private final ScheduledExecutorService healthChecker;
+    private final ExecutorService restarter;
+    private final XComponentContext localContext;
+
+    private volatile boolean closed;
+
+    public OfficeInstancePool(List<OfficeInstance> instances, int maxConversionsPerInstance,
+                              long connectTimeoutMillis, long healthCheckIntervalMillis) throws Exception {
+        this.instances = Collections.unmodifiableList(new ArrayList<>(instances));
+        this.maxConversionsPerInstance = maxConversionsPerInstance;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.localContext = Bootstrap.createInitialComponentContext(null);
+        this.restarter = Executors.newFixedThreadPool(Math.max(1, instances.size()), runnable -> {
+            Thread thread = new Thread(runnable, "office-restarter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "office-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        List<OfficeInstance> failedInstances = new ArrayList<>();
+        Exception lastError = null;
+        for (OfficeInstance instance : this.instances) {
+            try {
+                instance.start(localContext, connectTimeoutMillis);
+                idleInstances.offer(instance);
+            } catch (Exception e) {
+                logger.error("Failed to start office instance {}: {}", instance.describe(), e.getMessage());
+                failedInstances.add(instance);
+                lastError = e;
+            }
+        }
+
+        // 一个实例都无法启动时直接失败，由调用方决定降级方式
+        if (idleInstances.isEmpty()) {
+            close();
+            throw new Exception("No office instance could be started", lastError);
+        }
+        failedInstances.forEach(this::scheduleRestart);
+
+        if (healthCheckIntervalMillis > 0) {
+            healthChecker.scheduleWithFixedDelay(this::checkIdleInstances,
+                    healthCheckIntervalMillis, healthCheckIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        logger.info("Office instance pool started with {} instance(s), {} ready",
+                this.instances.size(), idleInstances.size());
+    }
+
+    /**
+     * 取出一个可用实例，超时仍无可用实例时抛出异常
+     */
+    public OfficeInstance checkout(long timeoutMillis) throws Exception {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!closed) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                break;
+            }
+            OfficeInstance instance = idleInstances.poll(remaining, TimeUnit.MILLISECONDS);
+            if (instance == null) {
+                break;
+            }
+            if (instance.isHealthy()) {
+                return instance;
+            }
+            logger.warn("Office instance {} is unhealthy, restarting", instance.describe());
+            scheduleRestart(instance);
+        }
+        throw new Exception("No office instance available within " + timeoutMillis + " ms");
+    }
+
+    /**
+     * 归还实例；转换失败或达到转换次数上限的实例会被重启
+     */
+    public void release(OfficeInstance instance, boolean failed) {
+        release(instance, failed, 1);
+    }
+
+    /**
+     * 归还实例，conversions 为本次借出期间完成的转换次数（批量转换时一次借出会转换多个文档）
+     */
+    public void release(OfficeInstance instance, boolean failed, int conversions) {
+        int count = instance.incrementConversionCount(conversions);
+        if (failed && !instance.isHealthy()) {
+            logger.warn("Office instance {} crashed during conversion, restarting", instance.describe());
+            scheduleRestart(instance);
+        } else if (maxConversionsPerInstance > 0 && count >= maxConversionsPerInstance) {
+            logger.info("Office instance {} reached {} conversions, recycling", instance.describe(), count);
+            scheduleRestart(instance);
+        } else {
+            idleInstances.offer(instance);
+        }
+    }
+
+    /**
+     * 立即结束并重启实例，用于转换挂起等无法正常归还的情况
+     */
+    public void invalidate(OfficeInstance instance) {
+        logger.warn("Invalidating office instance {}", instance.describe());
+        instance.kill();
+        scheduleRestart(instance);
+    }
+
+    private void scheduleRestart(OfficeInstance instance) {
+        if (closed) {
+            return;
+        }
+        restarter.execute(() -> {
+            while (!closed) {
+                try {
+                    instance.stop();
+                    instance.start(localContext, connectTimeoutMillis);
+                    idleInstances.offer(instance);
+                    return;
+                } catch (Exception e) {
+                    logger.error("Failed to restart office instance {}: {}", instance.describe(), e.getMessage());
+                    try {
+                        Thread.sleep(connectTimeoutMillis);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * 逐个取出空闲实例检查，检查期间其余空闲实例仍可被借出；健康的实例放回队尾
+     */
+    private void checkIdleInstances() {
+        int count = idleInstances.size();
+        for (int i = 0; i < count && !closed; i++) {
+            OfficeInstance instance = idleInstances.poll();
+            if (instance == null) {
+                return;
+            }
+            if (instance.isHealthy()) {
+                idleInstances.offer(instance);
+            } else {
+                logger.warn("Office instance {} failed periodic health check, restarting", instance.describe());
+                scheduleRestart(instance);
+            }
+        }
+    }
+
+    public int getSize() {
+        return instances.size();
+    }
+
+    public int getIdleCount() {
+        return idleInstances.size();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        healthChecker.shutdownNow();
+        restarter.shutdownNow();
+        for (OfficeInstance instance : instances) {
+            instance.shutdown();
+        }
+        logger.info("Office instance pool stopped");
+    }
+}
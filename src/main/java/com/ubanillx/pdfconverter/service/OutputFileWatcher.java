@@ -0,0 +1,126 @@
+package com.ubanillx.pdfconverter.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 等待转换输出文件写完
+ * 通过 WatchService 监听输出目录，文件出现后在 stableMillis 内大小和修改时间不再变化即视为写入完成（空文件也是有效的输出）；
+ * Docker 卷（尤其是 macOS/Windows 上的绑定挂载）不一定产生文件系统事件，因此等待本身按 pollIntervalMillis 兜底轮询
+ */
+public final class OutputFileWatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutputFileWatcher.class);
+
+    private OutputFileWatcher() {
+    }
+
+    /**
+     * @param file 期望的输出文件
+     * @param timeoutMillis 最长等待时间
+     * @param stableMillis 文件大小和修改时间保持不变的时长
+     * @param pollIntervalMillis 没有文件系统事件时的轮询间隔
+     * @return 文件在超时前出现并写入完成时返回 true
+     */
+    public static boolean awaitStableFile(Path file, long timeoutMillis, long stableMillis, long pollIntervalMillis)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        Path directory = file.toAbsolutePath().getParent();
+
+        WatchService watchService = null;
+        try {
+            Files.createDirectories(directory);
+            watchService = FileSystems.getDefault().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.debug("WatchService unavailable for {}, falling back to polling: {}", directory, e.getMessage());
+            closeQuietly(watchService);
+            watchService = null;
+        }
+
+        try {
+            FileState lastState = FileState.ABSENT;
+            long stableSince = 0;
+            while (true) {
+                long now = System.currentTimeMillis();
+                FileState state = FileState.of(file);
+                if (state.exists() && state.equals(lastState)) {
+                    if (now - stableSince >= stableMillis) {
+                        return true;
+                    }
+                } else {
+                    lastState = state;
+                    stableSince = now;
+                }
+
+                long remaining = deadline - now;
+                if (remaining <= 0) {
+                    return false;
+                }
+                // 文件出现后只需等到稳定窗口结束；尚未出现时等待下一个事件或轮询间隔
+                long wait = state.exists() ? stableMillis - (now - stableSince) : pollIntervalMillis;
+                waitForChange(watchService, Math.max(1, Math.min(remaining, wait)));
+            }
+        } finally {
+            closeQuietly(watchService);
+        }
+    }
+
+    private static void waitForChange(WatchService watchService, long millis) throws InterruptedException {
+        if (watchService == null) {
+            Thread.sleep(millis);
+            return;
+        }
+        try {
+            WatchKey key = watchService.poll(millis, TimeUnit.MILLISECONDS);
+            if (key != null) {
+                key.pollEvents();
+                key.reset();
+            }
+        } catch (ClosedWatchServiceException e) {
+            Thread.sleep(millis);
+        }
+    }
+
+    private static void closeQuietly(WatchService watchService) {
+        if (watchService == null) {
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close WatchService: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 文件是否存在与大小分开记录，大小为 0 的文件同样按大小和修改时间判断是否写完
+     */
+    private record FileState(boolean exists, long size, long lastModified) {
+
+        static final FileState ABSENT = new FileState(false, 0, 0);
+
+        static FileState of(Path file) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                if (!attributes.isRegularFile()) {
+                    return ABSENT;
+                }
+                return new FileState(true, attributes.size(), attributes.lastModifiedTime().toMillis());
+            } catch (IOException e) {
+                return ABSENT;
+            }
+        }
+    }
+}
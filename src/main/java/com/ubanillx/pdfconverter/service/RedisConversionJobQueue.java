@@ -0,0 +1,365 @@
+package com.ubanillx.pdfconverter.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ubanillx.pdfconverter.model.ConversionJob;
+import com.ubanillx.pdfconverter.model.JobStatus;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于 Redis 的分布式任务队列
+ * 多个转换节点共享同一个 Redis，每个节点只在有空闲 worker 时领取任务：
+ * <ul>
+ *     <li>pending 列表保存等待执行的任务ID</li>
+ *     <li>processing 有序集合保存执行中的任务，score 为可见性超时的截止时间，执行期间由心跳续期</li>
+ *     <li>超时未完成（节点宕机）的任务由任意节点重新放回 pending，超过最大尝试次数后进入 dead 列表</li>
+ * </ul>
+ */
+@Service
+@ConditionalOnProperty(name = "app.jobs.queue", havingValue = "redis")
+public class RedisConversionJobQueue implements ConversionJobQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisConversionJobQueue.class);
+
+    // 原子地领取任务：从 pending 取出并登记到 processing，截止时间使用 Redis 服务器时钟
+    private static final RedisScript<String> CLAIM_SCRIPT = new DefaultRedisScript<>(
+            "local id = redis.call('RPOP', KEYS[1]) " +
+            "if not id then return nil end " +
+            "local t = redis.call('TIME') " +
+            "local now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000) " +
+            "redis.call('ZADD', KEYS[2], now + tonumber(ARGV[1]), id) " +
+            "redis.call('HINCRBY', KEYS[3], id, 1) " +
+            "return id",
+            String.class);
+
+    // 为本节点执行中的任务续期，XX 保证不会把已被回收的任务重新加入
+    private static final RedisScript<Long> HEARTBEAT_SCRIPT = new DefaultRedisScript<>(
+            "local t = redis.call('TIME') " +
+            "local deadline = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000) + tonumber(ARGV[1]) " +
+            "local updated = 0 " +
+            "for i = 2, #ARGV do " +
+            "  updated = updated + redis.call('ZADD', KEYS[1], 'XX', 'CH', deadline, ARGV[i]) " +
+            "end " +
+            "return updated",
+            Long.class);
+
+    // 回收超时任务：未超过最大尝试次数的重新排队，否则进入死信列表（只保留最新的 ARGV[2] 个）；返回 "R:<id>" / "D:<id>"
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final RedisScript<List> REAP_SCRIPT = new DefaultRedisScript<>(
+            "local t = redis.call('TIME') " +
+            "local now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000) " +
+            "local expired = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', now, 'LIMIT', 0, 100) " +
+            "local result = {} " +
+            "for _, id in ipairs(expired) do " +
+            "  if redis.call('ZREM', KEYS[1], id) == 1 then " +
+            "    local attempts = tonumber(redis.call('HGET', KEYS[4], id) or '0') " +
+            "    if attempts >= tonumber(ARGV[1]) then " +
+            "      redis.call('LPUSH', KEYS[3], id) " +
+            "      redis.call('LTRIM', KEYS[3], 0, tonumber(ARGV[2]) - 1) " +
+            "      redis.call('HDEL', KEYS[4], id) " +
+            "      table.insert(result, 'D:' .. id) " +
+            "    else " +
+            "      redis.call('RPUSH', KEYS[2], id) " +
+            "      table.insert(result, 'R:' .. id) " +
+            "    end " +
+            "  end " +
+            "end " +
+            "return result",
+            List.class);
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.jobs.workers:4}")
+    private int workerCount;
+
+    @Value("${app.jobs.queue-capacity:200}")
+    private int queueCapacity;
+
+    @Value("${app.jobs.retention:3600000}")
+    private long retentionMillis;
+
+    @Value("${app.jobs.redis.key-prefix:pdfconverter:jobs}")
+    private String keyPrefix;
+
+    @Value("${app.jobs.redis.visibility-timeout:120000}")
+    private long visibilityTimeoutMillis;
+
+    @Value("${app.jobs.redis.max-attempts:3}")
+    private int maxAttempts;
+
+    // 死信列表只保留最新的任务 ID，更早的任务记录已按 retention 过期
+    @Value("${app.jobs.redis.dead-letter-max-size:1000}")
+    private long deadLetterMaxSize;
+
+    @Value("${app.jobs.redis.poll-interval:500}")
+    private long pollIntervalMillis;
+
+    private final Set<String> inFlightJobs = ConcurrentHashMap.newKeySet();
+
+    private ExecutorService workers;
+    private ScheduledExecutorService maintenance;
+    private volatile boolean running;
+    private Handler handler;
+
+    @Override
+    public void start(Handler handler) {
+        this.handler = handler;
+        this.running = true;
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(workerCount,
+                runnable -> new Thread(runnable, "redis-conversion-worker-" + threadCounter.incrementAndGet()));
+        for (int i = 0; i < workerCount; i++) {
+            workers.execute(this::consumeLoop);
+        }
+
+        maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "redis-conversion-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long heartbeatInterval = Math.max(1000L, visibilityTimeoutMillis / 3);
+        maintenance.scheduleWithFixedDelay(this::heartbeat, heartbeatInterval, heartbeatInterval, TimeUnit.MILLISECONDS);
+        maintenance.scheduleWithFixedDelay(this::reapExpiredJobs, heartbeatInterval, heartbeatInterval, TimeUnit.MILLISECONDS);
+
+        logger.info("Redis conversion job queue started: workers={}, visibilityTimeout={}ms, maxAttempts={}",
+                workerCount, visibilityTimeoutMillis, maxAttempts);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (maintenance != null) {
+            maintenance.shutdownNow();
+        }
+        if (workers != null) {
+            workers.shutdown();
+        }
+    }
+
+    @Override
+    public void enqueue(ConversionJob job) {
+        Long depth = redisTemplate.opsForList().size(pendingKey());
+        if (depth != null && depth >= queueCapacity) {
+            logger.warn("Redis conversion queue is full ({}), rejecting job for {}", depth, job.getOriginalUrl());
+            throw new RejectedExecutionException("Conversion queue is full");
+        }
+
+        save(job);
+        redisTemplate.opsForList().leftPush(pendingKey(), job.getJobId());
+    }
+
+    @Override
+    public ConversionJob find(String jobId) {
+        String json = redisTemplate.opsForValue().get(jobKey(jobId));
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, ConversionJob.class);
+        } catch (Exception e) {
+            logger.error("Failed to parse conversion job {}", jobId, e);
+            return null;
+        }
+    }
+
+    @Override
+    public int getQueueDepth() {
+        Long depth = redisTemplate.opsForList().size(pendingKey());
+        return depth == null ? 0 : depth.intValue();
+    }
+
+    private void consumeLoop() {
+        while (running) {
+            try {
+                String jobId = redisTemplate.execute(CLAIM_SCRIPT,
+                        List.of(pendingKey(), processingKey(), attemptsKey()),
+                        String.valueOf(visibilityTimeoutMillis));
+                if (jobId == null) {
+                    Thread.sleep(pollIntervalMillis);
+                    continue;
+                }
+                process(jobId);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Failed to poll Redis conversion queue: {}", e.getMessage());
+                try {
+                    Thread.sleep(pollIntervalMillis * 4);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void process(String jobId) {
+        ConversionJob job = find(jobId);
+        if (job == null) {
+            logger.warn("Conversion job {} expired before it could run, dropping", jobId);
+            complete(jobId);
+            return;
+        }
+
+        inFlightJobs.add(jobId);
+        try {
+            job.setAttempts(readAttempts(jobId));
+            job.setStartedAt(System.currentTimeMillis());
+            job.setStatus(JobStatus.RUNNING);
+            save(job);
+
+            handler.handle(job);
+
+            job.setFinishedAt(System.currentTimeMillis());
+            save(job);
+            complete(jobId);
+            logger.info("Conversion job {} finished with status {}", jobId, job.getStatus().getValue());
+
+        } catch (Exception e) {
+            logger.error("Conversion job {} failed on attempt {}", jobId, job.getAttempts(), e);
+            job.setMessage("转换失败: " + e.getMessage());
+            retryOrDeadLetter(job);
+        } finally {
+            inFlightJobs.remove(jobId);
+        }
+    }
+
+    private void retryOrDeadLetter(ConversionJob job) {
+        String jobId = job.getJobId();
+        Long removed = redisTemplate.opsForZSet().remove(processingKey(), jobId);
+        if (removed == null || removed == 0) {
+            // 已被回收（心跳丢失），由回收方负责后续处理
+            return;
+        }
+
+        if (job.getAttempts() >= maxAttempts) {
+            // 先进入死信列表再保存终态，客户端看到 failed 时任务一定已在死信列表中
+            redisTemplate.opsForHash().delete(attemptsKey(), jobId);
+            redisTemplate.opsForList().leftPush(deadKey(), jobId);
+            redisTemplate.opsForList().trim(deadKey(), 0, deadLetterMaxSize - 1);
+            job.setStatus(JobStatus.FAILED);
+            job.setFinishedAt(System.currentTimeMillis());
+            save(job);
+            logger.warn("Conversion job {} moved to dead-letter list after {} attempts", jobId, job.getAttempts());
+        } else {
+            job.setStatus(JobStatus.QUEUED);
+            save(job);
+            redisTemplate.opsForList().rightPush(pendingKey(), jobId);
+        }
+    }
+
+    private void complete(String jobId) {
+        redisTemplate.opsForZSet().remove(processingKey(), jobId);
+        redisTemplate.opsForHash().delete(attemptsKey(), jobId);
+    }
+
+    private void heartbeat() {
+        if (inFlightJobs.isEmpty()) {
+            return;
+        }
+        try {
+            List<String> args = new ArrayList<>();
+            args.add(String.valueOf(visibilityTimeoutMillis));
+            args.addAll(inFlightJobs);
+            redisTemplate.execute(HEARTBEAT_SCRIPT, Collections.singletonList(processingKey()), args.toArray());
+        } catch (Exception e) {
+            logger.warn("Failed to extend visibility timeout of in-flight jobs: {}", e.getMessage());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void reapExpiredJobs() {
+        try {
+            List<String> reaped = redisTemplate.execute(REAP_SCRIPT,
+                    List.of(processingKey(), pendingKey(), deadKey(), attemptsKey()),
+                    String.valueOf(maxAttempts), String.valueOf(deadLetterMaxSize));
+            if (reaped == null) {
+                return;
+            }
+            for (String entry : reaped) {
+                String jobId = entry.substring(2);
+                ConversionJob job = find(jobId);
+                if (job == null) {
+                    continue;
+                }
+                if (entry.startsWith("D:")) {
+                    job.setStatus(JobStatus.FAILED);
+                    job.setMessage("转换超时，已超过最大重试次数");
+                    job.setFinishedAt(System.currentTimeMillis());
+                    logger.warn("Conversion job {} timed out and was moved to dead-letter list", jobId);
+                } else {
+                    job.setStatus(JobStatus.QUEUED);
+                    logger.warn("Conversion job {} exceeded its visibility timeout, requeued", jobId);
+                }
+                save(job);
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to reap expired conversion jobs: {}", e.getMessage());
+        }
+    }
+
+    private int readAttempts(String jobId) {
+        Object attempts = redisTemplate.opsForHash().get(attemptsKey(), jobId);
+        return attempts == null ? 1 : Integer.parseInt(attempts.toString());
+    }
+
+    private void save(ConversionJob job) {
+        try {
+            String json = objectMapper.writeValueAsString(job);
+            if (job.getStatus().isFinished()) {
+                redisTemplate.opsForValue().set(jobKey(job.getJobId()), json, Duration.ofMillis(retentionMillis));
+            } else {
+                redisTemplate.opsForValue().set(jobKey(job.getJobId()), json);
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to save conversion job " + job.getJobId(), e);
+        }
+    }
+
+    private String pendingKey() {
+        return keyPrefix + ":pending";
+    }
+
+    private String processingKey() {
+        return keyPrefix + ":processing";
+    }
+
+    private String deadKey() {
+        return keyPrefix + ":dead";
+    }
+
+    private String attemptsKey() {
+        return keyPrefix + ":attempts";
+    }
+
+    private String jobKey(String jobId) {
+        return keyPrefix + ":job:" + jobId;
+    }
+}
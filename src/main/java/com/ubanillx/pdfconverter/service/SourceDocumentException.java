@@ -0,0 +1,18 @@
+package com.ubanillx.pdfconverter.service;
+
+import java.io.IOException;
+
+/**
+ * 源文件的错误：下载失败、文件不存在、超过大小限制、URL 不受支持，或文档损坏无法加载
+ * 错误出在请求本身，换一个引擎也会同样失败，{@link ConversionEngineRouter} 不计入引擎的失败，也不换引擎重试
+ */
+public class SourceDocumentException extends IOException {
+
+    public SourceDocumentException(String message) {
+        super(message);
+    }
+
+    public SourceDocumentException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,37 @@
+package com.ubanillx.pdfconverter.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * 存储文件的物理存放位置
+ * 对外的存储文件名（/files/ 后面的部分）保持不变，由实现决定文件实际放在哪里
+ */
+public interface StorageBackend {
+
+    /**
+     * 把已有文件移动到存储中
+     * @param name 存储文件名
+     * @param source 源文件，成功后不再存在
+     */
+    void store(String name, Path source) throws IOException;
+
+    /**
+     * 把输入流的内容写入存储
+     */
+    void store(String name, InputStream content) throws IOException;
+
+    /**
+     * 查找存储文件
+     * @return 磁盘上的文件；不存在时返回 null
+     */
+    File find(String name);
+
+    /**
+     * 删除存储文件
+     * @return 文件是否存在并已删除
+     */
+    boolean delete(String name) throws IOException;
+}
@@ -0,0 +1,287 @@
+package com.ubanillx.pdfconverter.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 过期文件清理
+ * 定时删除超过保留时间的存储文件、存储目录和 Docker outputs 目录中的转换中间文件、系统临时目录中的下载临时文件；
+ * 磁盘使用率超过高水位时逐步缩短存储文件的保留时间，直到降到低水位以下；此时只删除没有其他硬链接的存储文件，
+ * 转换缓存（ConversionCacheService）中仍有链接的文件删除后不释放空间，缓存由自己的容量上限淘汰。
+ * 目录逐项遍历，每次读取属性和删除都计入 I/O 速率限制，避免清理本身影响转换延迟
+ */
+@Service
+public class StorageReaper {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageReaper.class);
+
+    // 下载源文件和水印图片时在系统临时目录中创建的文件
+    private static final String TEMP_FILE_GLOB = "{libreoffice_*,watermark_image_*}";
+
+    @Value("${app.retention.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.retention.interval:600000}")
+    private long intervalMillis;
+
+    // 存储文件（原始上传和转换结果）的保留时间
+    @Value("${app.retention.stored-ttl:604800000}")
+    private long storedTtlMillis;
+
+    // 转换中间文件（硬链接、下载的源文件、未存储的输出）的保留时间，需大于最长的转换时间
+    @Value("${app.retention.scratch-ttl:3600000}")
+    private long scratchTtlMillis;
+
+    @Value("${app.retention.temp-ttl:3600000}")
+    private long tempTtlMillis;
+
+    // 磁盘压力下存储文件至少保留的时间
+    @Value("${app.retention.min-stored-age:3600000}")
+    private long minStoredAgeMillis;
+
+    // 磁盘使用率（0 到 1）超过高水位时开始提前清理，降到低水位以下停止
+    @Value("${app.retention.high-watermark:0.9}")
+    private double highWatermark;
+
+    @Value("${app.retention.low-watermark:0.8}")
+    private double lowWatermark;
+
+    // 每秒最多读取属性或删除的文件数，0 表示不限制
+    @Value("${app.retention.max-io-per-second:2000}")
+    private int maxIoPerSecond;
+
+    @Value("${app.storage.directory:./uploads}")
+    private String storageDirectory;
+
+    @Value("${app.storage.shard-depth:2}")
+    private int shardDepth;
+
+    @Value("${java.io.tmpdir}")
+    private String tempDirectory;
+
+    // Docker 卷映射的输出目录（见 DockerLibreOfficeService）
+    private String dockerOutputDirectory = "outputs";
+
+    private ScheduledExecutorService scheduler;
+    private long nextIoNanos;
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong deletedFiles = new AtomicLong();
+    private final AtomicLong freedBytes = new AtomicLong();
+    private volatile long lastRunMillis;
+    private volatile double lastDiskUsage = -1;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            logger.info("Storage retention disabled");
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "storage-reaper");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                reap();
+            } catch (Exception e) {
+                logger.error("Storage reaper run failed: {}", e.getMessage(), e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 执行一轮清理
+     */
+    public synchronized void reap() throws IOException {
+        long start = System.currentTimeMillis();
+        long deletedBefore = deletedFiles.get();
+        long freedBefore = freedBytes.get();
+
+        Path root = Paths.get(storageDirectory);
+        reapStorage(root, start - storedTtlMillis, start - scratchTtlMillis, false);
+        reapDirectory(Paths.get(dockerOutputDirectory), "*", start - scratchTtlMillis);
+        reapDirectory(Paths.get(tempDirectory), TEMP_FILE_GLOB, start - tempTtlMillis);
+
+        // 磁盘压力：存储文件的保留时间逐次减半，直到使用率降到低水位或达到最短保留时间
+        double usage = diskUsage(root);
+        if (usage >= highWatermark) {
+            long age = storedTtlMillis;
+            while (usage > lowWatermark && age > minStoredAgeMillis) {
+                age = Math.max(age / 2, minStoredAgeMillis);
+                logger.warn("Disk usage {}% above watermark, removing stored files older than {} min",
+                        Math.round(usage * 100), TimeUnit.MILLISECONDS.toMinutes(age));
+                reapStorage(root, start - age, start - scratchTtlMillis, true);
+                usage = diskUsage(root);
+            }
+        }
+        lastDiskUsage = usage;
+
+        runs.incrementAndGet();
+        lastRunMillis = System.currentTimeMillis() - start;
+        logger.info("Storage reaper removed {} file(s), {} bytes in {} ms (disk usage {}%)",
+                deletedFiles.get() - deletedBefore, freedBytes.get() - freedBefore, lastRunMillis,
+                usage >= 0 ? Math.round(usage * 100) : "?");
+    }
+
+    /**
+     * 遍历存储目录：存储文件名按存储保留时间判断，根目录中的其他文件视为中间文件
+     * @param unlinkedOnly 只删除链接数为 1 的存储文件（磁盘压力下只删除能释放空间的文件）
+     */
+    private void reapStorage(Path root, long storedCutoff, long scratchCutoff, boolean unlinkedOnly)
+            throws IOException {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        Files.walkFileTree(root, EnumSet.noneOf(FileVisitOption.class), Math.max(0, shardDepth) + 1,
+                new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        pace();
+                        if (!attrs.isRegularFile()) {
+                            return FileVisitResult.CONTINUE;
+                        }
+                        if (LocalStorageBackend.isStoredName(file.getFileName().toString())) {
+                            deleteIfOlder(file, attrs, storedCutoff, false, unlinkedOnly);
+                        } else if (root.equals(file.getParent())) {
+                            deleteIfOlder(file, attrs, scratchCutoff, true, false);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        // 文件可能在遍历期间被删除
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+    }
+
+    private void reapDirectory(Path directory, String glob, long cutoff) {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob)) {
+            for (Path file : stream) {
+                pace();
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                    if (attrs.isRegularFile()) {
+                        deleteIfOlder(file, attrs, cutoff, true, false);
+                    }
+                } catch (IOException e) {
+                    // 文件可能在遍历期间被删除
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to clean directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    /**
+     * @param checkChanged 同时检查 inode 变更时间：中间文件可能是刚为旧存储文件创建的硬链接（DockerLibreOfficeService），
+     *                     修改时间沿用原文件，变更时间才是链接创建时间
+     * @param unlinkedOnly 跳过还有其他硬链接的文件
+     */
+    private void deleteIfOlder(Path file, BasicFileAttributes attrs, long cutoff, boolean checkChanged,
+                               boolean unlinkedOnly) {
+        if (attrs.lastModifiedTime().toMillis() >= cutoff || (checkChanged && lastChanged(file) >= cutoff)) {
+            return;
+        }
+        if (unlinkedOnly && linkCount(file) > 1) {
+            return;
+        }
+        pace();
+        try {
+            if (Files.deleteIfExists(file)) {
+                deletedFiles.incrementAndGet();
+                freedBytes.addAndGet(attrs.size());
+                logger.debug("Removed expired file {}", file);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to delete expired file {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static long lastChanged(Path file) {
+        try {
+            return ((FileTime) Files.getAttribute(file, "unix:ctime")).toMillis();
+        } catch (UnsupportedOperationException | IllegalArgumentException | IOException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static int linkCount(Path file) {
+        try {
+            return (Integer) Files.getAttribute(file, "unix:nlink");
+        } catch (UnsupportedOperationException | IllegalArgumentException | IOException e) {
+            return 1;
+        }
+    }
+
+    private static double diskUsage(Path path) {
+        try {
+            FileStore store = Files.getFileStore(path);
+            long total = store.getTotalSpace();
+            return total > 0 ? 1 - (double) store.getUsableSpace() / total : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    // 按 max-io-per-second 均匀分布 I/O
+    private void pace() {
+        if (maxIoPerSecond <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (nextIoNanos > now) {
+            LockSupport.parkNanos(nextIoNanos - now);
+        }
+        nextIoNanos = Math.max(now, nextIoNanos) + 1_000_000_000L / maxIoPerSecond;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("runs", runs.get());
+        stats.put("deletedFiles", deletedFiles.get());
+        stats.put("freedBytes", freedBytes.get());
+        stats.put("lastRunMillis", lastRunMillis);
+        stats.put("diskUsage", lastDiskUsage);
+        return stats;
+    }
+}
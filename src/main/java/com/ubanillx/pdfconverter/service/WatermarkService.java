@@ -1,38 +1,129 @@
 package com.ubanillx.pdfconverter.service;
 
+import com.itextpdf.io.image.ImageData;
 import com.itextpdf.io.image.ImageDataFactory;
-import com.itextpdf.kernel.colors.ColorConstants;
-import com.itextpdf.kernel.font.PdfFont;
-import com.itextpdf.kernel.font.PdfFontFactory;
-import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.io.source.IRandomAccessSource;
+import com.itextpdf.io.source.RandomAccessSourceFactory;
 import com.itextpdf.kernel.pdf.PdfDocument;
 import com.itextpdf.kernel.pdf.PdfReader;
 import com.itextpdf.kernel.pdf.PdfWriter;
-import com.itextpdf.layout.Canvas;
-import com.itextpdf.layout.Document;
-import com.itextpdf.layout.element.Paragraph;
-import com.itextpdf.layout.element.Text;
-import com.itextpdf.layout.properties.HorizontalAlignment;
-import com.itextpdf.layout.properties.TextAlignment;
-import com.itextpdf.layout.properties.VerticalAlignment;
+import com.itextpdf.kernel.pdf.ReaderProperties;
+import com.itextpdf.kernel.pdf.xobject.PdfFormXObject;
+import com.ubanillx.pdfconverter.model.WatermarkOptions;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
 import java.io.IOException;
-import java.net.URL;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class WatermarkService {
     
     private static final Logger logger = LoggerFactory.getLogger(WatermarkService.class);
     
+    // 普通模式下整个对象图常驻堆内存，按源文件大小的倍数估算
+    private static final int NORMAL_MODE_HEAP_FACTOR = 3;
+    
+    // 低内存模式逐页写出并释放，只需为交叉引用表和当前页预留
+    private static final long LOW_MEMORY_MODE_RESERVE = 64L * 1024 * 1024;
+    
+    // 按线程统计任务分配的内存；JVM 不支持时为 null
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN =
+            ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                    && bean.isThreadAllocatedMemorySupported() ? bean : null;
+    
+    @Autowired
+    private FileDownloadService fileDownloadService;
+    
+    @Autowired
+    private FileStorageService fileStorageService;
+    
+    @Autowired
+    private FontRegistry fontRegistry;
+    
+    @Autowired
+    private ConversionMetrics metrics;
+    
+    @Value("${app.watermark.template-cache-size:64}")
+    private int templateCacheSize;
+    
+    // 缓存的模板中图片数据占用的内存上限（按图片文件大小计）
+    @Value("${app.watermark.template-cache-max-bytes:67108864}")
+    private long templateCacheMaxBytes;
+    
+    // 水印图片文件的大小上限
+    @Value("${app.watermark.max-image-size:10485760}")
+    private long maxImageBytes;
+    
+    // 图片模板的有效期，过期后重新读取图片，图片地址的内容变化后随之更新
+    @Value("${app.watermark.image-template-ttl:300000}")
+    private long imageTemplateTtlMillis;
+    
+    // 源文件达到该大小时使用低内存模式：内存映射读取、逐页写出并释放
+    @Value("${app.watermark.low-memory-threshold:104857600}")
+    private long lowMemoryThreshold;
+    
+    // 同时进行的水印任务可预留的堆内存总量，0 表示最大堆的一半
+    @Value("${app.watermark.memory-budget:0}")
+    private long memoryBudgetBytes;
+    
+    // 内存预算不足时排队等待的最长时间，超时后拒绝
+    @Value("${app.watermark.memory-wait-timeout:60000}")
+    private long memoryWaitTimeoutMillis;
+    
+    private MemoryBudget memoryBudget;
+    
+    private final AtomicLong lowMemoryJobs = new AtomicLong();
+    private final AtomicLong rejectedJobs = new AtomicLong();
+    private final AtomicLong maxJobAllocated = new AtomicLong();
+    
+    /**
+     * 内存预算不足时拒绝水印任务
+     */
+    public static class MemoryBudgetExceededException extends RejectedExecutionException {
+        public MemoryBudgetExceededException(String message) {
+            super(message);
+        }
+    }
+    
+    // accessOrder=true，超过数量或字节上限时淘汰最久未使用的模板
+    private final LinkedHashMap<String, CachedTemplate> templates = new LinkedHashMap<>(16, 0.75f, true);
+    private long templateCacheBytes;
+    
+    private static class CachedTemplate {
+        final WatermarkTemplate template;
+        // 模板持有的图片数据大小，文字模板为 0（字体由 FontRegistry 计入）
+        final long size;
+        // 图片模板的过期时间，文字模板为 Long.MAX_VALUE
+        final long expiresAt;
+        
+        CachedTemplate(WatermarkTemplate template, long size, long expiresAt) {
+            this.template = template;
+            this.size = size;
+            this.expiresAt = expiresAt;
+        }
+    }
+    
+    @PostConstruct
+    public void init() {
+        memoryBudget = new MemoryBudget(memoryBudgetBytes > 0 ? memoryBudgetBytes : Runtime.getRuntime().maxMemory() / 2);
+    }
+    
     /**
      * 为PDF文件添加水印
      * @param sourceUrl 源文件URL
@@ -41,96 +132,301 @@ public class WatermarkService {
      * @return 加水印后的文件
      */
     public File addWatermarkToPdf(String sourceUrl, String watermarkText, File outputDirectory) {
+        return addWatermarkToPdf(sourceUrl, new WatermarkOptions(watermarkText), outputDirectory);
+    }
+    
+    /**
+     * 按水印参数为PDF文件添加水印
+     * @param sourceUrl 源文件URL
+     * @param options 水印参数
+     * @param outputDirectory 输出目录
+     * @return 加水印后的文件
+     */
+    public File addWatermarkToPdf(String sourceUrl, WatermarkOptions options, File outputDirectory) {
         try {
-            logger.info("开始为PDF添加水印: URL={}, 水印文字={}", sourceUrl, watermarkText);
+            logger.info("开始为PDF添加水印: URL={}, 水印文字={}, 图片={}", sourceUrl,
+                    options.getWatermarkText(), options.getImageUrl());
             
             // 验证输入参数
             if (sourceUrl == null || sourceUrl.trim().isEmpty()) {
                 throw new IllegalArgumentException("源文件URL不能为空");
             }
             
-            if (watermarkText == null || watermarkText.trim().isEmpty()) {
-                throw new IllegalArgumentException("水印文字不能为空");
-            }
-            
-            // 生成输出文件名
-            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-            String outputFileName = "watermarked_" + timestamp + "_" + System.currentTimeMillis() + ".pdf";
-            File outputFile = new File(outputDirectory, outputFileName);
+            // 先编译（或取缓存的）模板，参数无效时不必下载源文件
+            getTemplate(options);
             
-            // 下载源文件到临时位置
-            File tempSourceFile = downloadFile(sourceUrl, outputDirectory);
+            // 本服务存储的文件直接读取，其他地址下载到临时位置
+            File localSourceFile = fileStorageService.resolveLocalFile(sourceUrl);
+            File tempSourceFile = localSourceFile != null ? localSourceFile : downloadFile(sourceUrl, outputDirectory);
             
             try {
-                // 创建PDF读取器和写入器
-                PdfReader reader = new PdfReader(tempSourceFile);
-                PdfWriter writer = new PdfWriter(outputFile);
-                PdfDocument pdfDoc = new PdfDocument(reader, writer);
-                Document document = new Document(pdfDoc);
-                
-                // 获取字体
-                PdfFont font = PdfFontFactory.createFont();
-                
-                // 为每一页添加水印
-                int numberOfPages = pdfDoc.getNumberOfPages();
-                for (int i = 1; i <= numberOfPages; i++) {
-                    Rectangle pageSize = pdfDoc.getPage(i).getPageSize();
-                    
-                    // 创建水印文本
-                    Text watermark = new Text(watermarkText)
-                            .setFont(font)
-                            .setFontSize(50)
-                            .setFontColor(ColorConstants.LIGHT_GRAY)
-                            .setOpacity(0.3f);
-                    
-                    Paragraph watermarkParagraph = new Paragraph(watermark)
-                            .setTextAlignment(TextAlignment.CENTER)
-                            .setHorizontalAlignment(HorizontalAlignment.CENTER)
-                            .setVerticalAlignment(VerticalAlignment.MIDDLE);
-                    
-                    // 在页面中心添加水印
-                    Canvas canvas = new Canvas(pdfDoc.getPage(i), pageSize);
-                    canvas.showTextAligned(watermarkParagraph, 
-                            pageSize.getWidth() / 2, 
-                            pageSize.getHeight() / 2, 
-                            i, 
-                            TextAlignment.CENTER, 
-                            VerticalAlignment.MIDDLE, 
-                            45); // 45度旋转
-                    canvas.close();
-                }
-                
-                document.close();
-                pdfDoc.close();
-                
-                logger.info("水印添加成功: {}", outputFile.getAbsolutePath());
-                return outputFile;
-                
+                return watermarkFile(tempSourceFile, options, outputDirectory);
             } finally {
-                // 清理临时文件
-                if (tempSourceFile.exists()) {
+                // 清理临时文件（直接读取的存储文件保留）
+                if (localSourceFile == null && tempSourceFile.exists()) {
                     tempSourceFile.delete();
                 }
             }
             
+        } catch (IllegalArgumentException | RejectedExecutionException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("添加水印失败", e);
+            throw new RuntimeException("添加水印失败: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * 为本地PDF文件添加水印，源文件不会被修改或删除
+     * 转换+水印流水线直接把转换结果交给这里，不经过存储和下载
+     * @param sourceFile 本地PDF文件
+     * @param options 水印参数
+     * @param outputDirectory 输出目录
+     * @return 加水印后的文件
+     */
+    public File addWatermarkToFile(File sourceFile, WatermarkOptions options, File outputDirectory) {
+        try {
+            logger.info("开始为PDF添加水印: 文件={}, 水印文字={}, 图片={}", sourceFile,
+                    options.getWatermarkText(), options.getImageUrl());
+            return watermarkFile(sourceFile, options, outputDirectory);
+        } catch (IllegalArgumentException | RejectedExecutionException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("添加水印失败", e);
             throw new RuntimeException("添加水印失败: " + e.getMessage(), e);
         }
     }
     
+    private File watermarkFile(File sourceFile, WatermarkOptions options, File outputDirectory) throws Exception {
+        return metrics.record(ConversionMetrics.WATERMARK, "pdf", "pdf",
+                () -> stampFile(sourceFile, options, outputDirectory));
+    }
+    
+    private File stampFile(File sourceFile, WatermarkOptions options, File outputDirectory) throws Exception {
+        // 相同参数的水印模板只编译一次
+        WatermarkTemplate template = getTemplate(options);
+        
+        // 生成输出文件名，并发任务在同一毫秒内也不会重名
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        String outputFileName = "watermarked_" + timestamp + "_" + UUID.randomUUID() + ".pdf";
+        File outputFile = new File(outputDirectory, outputFileName);
+        
+        // 按源文件大小估算所需堆内存，普通模式放不进预算时改用低内存模式
+        long sourceSize = sourceFile.length();
+        long normalEstimate = sourceSize * NORMAL_MODE_HEAP_FACTOR;
+        boolean lowMemory = sourceSize >= lowMemoryThreshold || normalEstimate > memoryBudget.getCapacity();
+        long estimate = lowMemory ? Math.min(normalEstimate, LOW_MEMORY_MODE_RESERVE) : normalEstimate;
+        try {
+            memoryBudget.acquire(estimate, memoryWaitTimeoutMillis);
+        } catch (RejectedExecutionException e) {
+            rejectedJobs.incrementAndGet();
+            logger.warn("拒绝水印任务: {} ({} MB): {}", sourceFile.getName(), MemoryBudget.toMegabytes(sourceSize),
+                    e.getMessage());
+            throw new MemoryBudgetExceededException(e.getMessage());
+        }
+        
+        // 统计本任务在当前线程上分配的内存，用于校准预留量；已用堆内存是整个进程的，不能归到单个任务
+        long allocatedBefore = currentThreadAllocatedBytes();
+        try {
+            int numberOfPages;
+            if (lowMemory) {
+                lowMemoryJobs.incrementAndGet();
+                numberOfPages = addWatermarkWithFlushing(sourceFile, outputFile, template);
+            } else {
+                numberOfPages = addWatermarkSequentially(sourceFile, outputFile, template);
+            }
+            
+            logger.info("水印添加成功: {} ({} 页)", outputFile.getAbsolutePath(), numberOfPages);
+            return outputFile;
+        } finally {
+            memoryBudget.release(estimate);
+            long total = currentThreadAllocatedBytes() - allocatedBefore;
+            maxJobAllocated.accumulateAndGet(total, Math::max);
+            logger.info("水印任务分配内存 {} MB（{}，预留 {} MB）", MemoryBudget.toMegabytes(total),
+                    lowMemory ? "低内存模式" : "普通模式", MemoryBudget.toMegabytes(estimate));
+        }
+    }
+    
+    /**
+     * 打开源文件；低内存模式下内存映射随机读取，已解析对象的原始字节随即释放
+     */
+    private static PdfReader openReader(File pdfFile, boolean lowMemory) throws IOException {
+        if (!lowMemory) {
+            return new PdfReader(pdfFile);
+        }
+        IRandomAccessSource source = new RandomAccessSourceFactory()
+                .setForceRead(false)
+                .createBestSource(pdfFile.getAbsolutePath());
+        return new PdfReader(source, new ReaderProperties()).setMemorySavingMode(true);
+    }
+    
+    /**
+     * 当前线程累计分配的字节数，JVM 不支持或已关闭统计时为 0
+     */
+    private static long currentThreadAllocatedBytes() {
+        return THREAD_BEAN != null ? Math.max(0, THREAD_BEAN.getCurrentThreadAllocatedBytes()) : 0;
+    }
+    
+    /**
+     * 低内存模式：逐页添加水印后立即写出并释放该页，堆中只保留当前页和共用的水印 XObject
+     * @return 文档页数
+     */
+    private int addWatermarkWithFlushing(File sourceFile, File outputFile, WatermarkTemplate template)
+            throws IOException {
+        try (PdfDocument pdfDoc = new PdfDocument(openReader(sourceFile, true), new PdfWriter(outputFile))) {
+            PdfFormXObject stamp = template.createStamp(pdfDoc);
+            
+            int numberOfPages = pdfDoc.getNumberOfPages();
+            for (int i = 1; i <= numberOfPages; i++) {
+                if (template.appliesTo(i, numberOfPages)) {
+                    template.stampPage(pdfDoc, i, stamp);
+                }
+                // 不写出页面引用的 XObject，后续页仍要使用水印
+                pdfDoc.getPage(i).flush(false);
+            }
+            return numberOfPages;
+        }
+    }
+    
+    public Map<String, Object> getMemoryStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("budgetBytes", memoryBudget.getCapacity());
+        stats.put("reservedBytes", memoryBudget.getReserved());
+        stats.put("peakReservedBytes", memoryBudget.getPeakReserved());
+        // 单个任务分配的内存总量（含已回收部分）的最大值，是预留量的上限参考
+        stats.put("maxJobAllocatedBytes", maxJobAllocated.get());
+        // 整个进程当前已用的堆内存
+        Runtime runtime = Runtime.getRuntime();
+        stats.put("processUsedHeapBytes", runtime.totalMemory() - runtime.freeMemory());
+        stats.put("lowMemoryJobs", lowMemoryJobs.get());
+        stats.put("rejectedJobs", rejectedJobs.get());
+        synchronized (templates) {
+            stats.put("cachedTemplates", templates.size());
+            stats.put("templateCacheBytes", templateCacheBytes);
+        }
+        return stats;
+    }
+    
+    /**
+     * 在同一个文档中逐页添加水印
+     * @return 文档页数
+     */
+    private int addWatermarkSequentially(File sourceFile, File outputFile, WatermarkTemplate template)
+            throws IOException {
+        // 创建PDF读取器和写入器
+        try (PdfDocument pdfDoc = new PdfDocument(openReader(sourceFile, false), new PdfWriter(outputFile))) {
+            // 水印只绘制一次，各页引用同一个 XObject
+            PdfFormXObject stamp = template.createStamp(pdfDoc);
+            
+            // 为选中的页添加水印
+            int numberOfPages = pdfDoc.getNumberOfPages();
+            for (int i = 1; i <= numberOfPages; i++) {
+                if (template.appliesTo(i, numberOfPages)) {
+                    template.stampPage(pdfDoc, i, stamp);
+                }
+            }
+            return numberOfPages;
+        }
+    }
+    
+    /**
+     * 获取水印模板，按参数缓存，超过数量或字节上限时淘汰最久未使用的模板；图片模板过期后重新编译
+     */
+    WatermarkTemplate getTemplate(WatermarkOptions options) throws IOException {
+        String key = options.cacheKey();
+        synchronized (templates) {
+            CachedTemplate cached = templates.get(key);
+            if (cached != null && cached.expiresAt > System.currentTimeMillis()) {
+                return cached.template;
+            }
+        }
+        
+        CachedTemplate compiled = compileTemplate(options);
+        synchronized (templates) {
+            CachedTemplate previous = templates.put(key, compiled);
+            if (previous != null) {
+                templateCacheBytes -= previous.size;
+            }
+            templateCacheBytes += compiled.size;
+            evictTemplatesIfNecessary(key);
+        }
+        return compiled.template;
+    }
+    
+    // 调用方需持有 templates 的锁；刚编译的模板即使超出上限也保留
+    private void evictTemplatesIfNecessary(String keep) {
+        Iterator<Map.Entry<String, CachedTemplate>> iterator = templates.entrySet().iterator();
+        while ((templates.size() > Math.max(1, templateCacheSize) || templateCacheBytes > templateCacheMaxBytes)
+                && iterator.hasNext()) {
+            Map.Entry<String, CachedTemplate> entry = iterator.next();
+            if (entry.getKey().equals(keep)) {
+                continue;
+            }
+            iterator.remove();
+            templateCacheBytes -= entry.getValue().size;
+        }
+    }
+    
+    private CachedTemplate compileTemplate(WatermarkOptions options) throws IOException {
+        if (options.isImageWatermark()) {
+            logger.info("编译图片水印模板: {}", options.getImageUrl());
+            byte[] image = loadImage(options.getImageUrl());
+            ImageData imageData;
+            try {
+                imageData = ImageDataFactory.create(image);
+            } catch (com.itextpdf.io.exceptions.IOException e) {
+                throw new IllegalArgumentException("无法识别的水印图片: " + options.getImageUrl(), e);
+            }
+            long expiresAt = imageTemplateTtlMillis > 0
+                    ? System.currentTimeMillis() + imageTemplateTtlMillis : Long.MAX_VALUE;
+            return new CachedTemplate(new WatermarkTemplate(options, null, null, imageData), image.length, expiresAt);
+        }
+        
+        String text = options.getWatermarkText();
+        if (text == null || text.trim().isEmpty()) {
+            throw new IllegalArgumentException("水印文字和水印图片不能同时为空");
+        }
+        
+        // 字体由注册表解析和缓存，模板只保留字体名称，避免模板缓存绕过字体内存预算
+        FontRegistry.ResolvedFont font = fontRegistry.resolve(options.getFontName(), text);
+        logger.info("编译文字水印模板: 字体={}", font.getName());
+        return new CachedTemplate(new WatermarkTemplate(options, fontRegistry, font, null), 0, Long.MAX_VALUE);
+    }
+    
+    /**
+     * 读取水印图片，超过 app.watermark.max-image-size 时拒绝
+     */
+    private byte[] loadImage(String imageUrl) throws IOException {
+        File localImage = fileStorageService.resolveLocalFile(imageUrl);
+        Path tempImage = null;
+        try {
+            Path imagePath;
+            if (localImage != null) {
+                imagePath = localImage.toPath();
+            } else {
+                tempImage = Files.createTempFile("watermark_image_", ".tmp");
+                imagePath = fileDownloadService.download(imageUrl, tempImage);
+            }
+            if (Files.size(imagePath) > maxImageBytes) {
+                throw new IllegalArgumentException("水印图片不能超过 " + MemoryBudget.toMegabytes(maxImageBytes)
+                        + " MB: " + imageUrl);
+            }
+            return Files.readAllBytes(imagePath);
+        } finally {
+            if (tempImage != null) {
+                Files.deleteIfExists(tempImage);
+            }
+        }
+    }
+    
     /**
      * 下载文件到本地临时位置
      */
     private File downloadFile(String url, File outputDirectory) throws IOException {
         try {
-            URL fileUrl = new URL(url);
-            String fileName = "temp_" + System.currentTimeMillis() + ".pdf";
-            File tempFile = new File(outputDirectory, fileName);
+            File tempFile = Files.createTempFile(outputDirectory.toPath(), "temp_", ".pdf").toFile();
             
-            // 使用Java NIO下载文件
-            Path targetPath = Paths.get(tempFile.getAbsolutePath());
-            Files.copy(fileUrl.openStream(), targetPath);
+            fileDownloadService.download(url, tempFile.toPath());
             
             logger.info("文件下载完成: {}", tempFile.getAbsolutePath());
             return tempFile;
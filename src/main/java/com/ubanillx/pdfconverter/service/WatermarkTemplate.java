@@ -0,0 +1,297 @@
+package com.ubanillx.pdfconverter.service;
+
+import com.itextpdf.io.image.ImageData;
+import com.itextpdf.io.source.ByteArrayOutputStream;
+import com.itextpdf.kernel.colors.DeviceRgb;
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.font.PdfFontFactory;
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfOutputStream;
+import com.itextpdf.kernel.pdf.PdfPage;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
+import com.itextpdf.kernel.pdf.extgstate.PdfExtGState;
+import com.itextpdf.kernel.pdf.xobject.PdfFormXObject;
+import com.ubanillx.pdfconverter.model.WatermarkOptions;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiPredicate;
+
+/**
+ * 编译后的水印模板
+ * 图片数据、文字尺寸、颜色和页码选择在编译时解析一次，之后在任意文档中复用；字体程序由 {@link FontRegistry} 持有，
+ * 模板只记录字体名称；
+ * 每个文档只需要用 {@link #createStamp(PdfDocument)} 生成一次 Form XObject，再用 {@link #stampPage} 放到各页
+ */
+public class WatermarkTemplate {
+
+    private static final float MARGIN = 36;
+
+    // 平铺时每页最多放置的水印数，防止过小的水印或间距生成巨大的内容流
+    static final int MAX_TILES_PER_PAGE = 2000;
+
+    private final WatermarkOptions options;
+    private final FontRegistry fontRegistry;
+    private final String fontName;
+    private final ImageData imageData;
+    private final DeviceRgb color;
+    private final float width;
+    private final float height;
+    private final float descent;
+    private final float cos;
+    private final float sin;
+    private final BiPredicate<Integer, Integer> pageSelector;
+
+    /**
+     * @param options 水印参数
+     * @param fontRegistry 字体注册表，图片水印时为 null
+     * @param font 文字水印的字体，图片水印时为 null
+     * @param imageData 图片水印的图片，文字水印时为 null
+     */
+    WatermarkTemplate(WatermarkOptions options, FontRegistry fontRegistry, FontRegistry.ResolvedFont font,
+                      ImageData imageData) {
+        this.options = options;
+        this.fontRegistry = fontRegistry;
+        this.fontName = font != null ? font.getName() : null;
+        this.imageData = imageData;
+        this.color = parseColor(options.getColor());
+        this.pageSelector = parsePageSelector(options.getPages());
+
+        // NaN 与任何值比较都为 false，先排除非有限值再检查范围
+        if (!Float.isFinite(options.getFontSize()) || options.getFontSize() <= 0) {
+            throw new IllegalArgumentException("字体大小必须大于 0");
+        }
+        if (!Float.isFinite(options.getOpacity()) || options.getOpacity() < 0 || options.getOpacity() > 1) {
+            throw new IllegalArgumentException("不透明度必须在 0 到 1 之间");
+        }
+        if (!Float.isFinite(options.getImageScale()) || options.getImageScale() <= 0) {
+            throw new IllegalArgumentException("图片缩放比例必须大于 0");
+        }
+        if (!(options.getTileSpacing() >= 0) || Float.isInfinite(options.getTileSpacing())) {
+            throw new IllegalArgumentException("平铺间距不能小于 0");
+        }
+        anchor(options.getPosition(), new Rectangle(0, 0, 1, 1), 0, 0);
+
+        if (imageData != null) {
+            width = imageData.getWidth() * options.getImageScale();
+            height = imageData.getHeight() * options.getImageScale();
+            descent = 0;
+        } else {
+            // 字体尺寸只在编译时计算一次
+            PdfFont measuringFont = PdfFontFactory.createFont(font.getProgram(), font.getEncoding());
+            String text = options.getWatermarkText();
+            float size = options.getFontSize();
+            width = measuringFont.getWidth(text, size);
+            descent = measuringFont.getDescent(text, size);
+            height = measuringFont.getAscent(text, size) - descent;
+        }
+
+        double angle = Math.toRadians(options.getRotation());
+        cos = (float) Math.cos(angle);
+        sin = (float) Math.sin(angle);
+    }
+
+    /**
+     * 在文档中生成水印 Form XObject，同一文档的所有页共用
+     */
+    public PdfFormXObject createStamp(PdfDocument pdfDoc) {
+        PdfFormXObject stamp = new PdfFormXObject(new Rectangle(0, 0, width, height));
+        PdfCanvas canvas = new PdfCanvas(stamp, pdfDoc)
+                .saveState()
+                .setExtGState(new PdfExtGState().setFillOpacity(options.getOpacity()));
+
+        if (imageData != null) {
+            canvas.addImageWithTransformationMatrix(imageData, width, 0, 0, height, 0, 0);
+        } else {
+            PdfFont font = createFont();
+            canvas.setFillColor(color)
+                    .beginText()
+                    .setFontAndSize(font, options.getFontSize())
+                    .moveText(0, -descent)
+                    .showText(options.getWatermarkText())
+                    .endText();
+        }
+
+        canvas.restoreState();
+        return stamp;
+    }
+
+    // 注册表中的字体被淘汰时会在这里重新解析
+    private PdfFont createFont() {
+        try {
+            FontRegistry.ResolvedFont font = fontRegistry.resolve(fontName);
+            return PdfFontFactory.createFont(font.getProgram(), font.getEncoding());
+        } catch (IOException e) {
+            throw new UncheckedIOException("加载字体失败: " + fontName, e);
+        }
+    }
+
+    /**
+     * 页码是否被选中
+     * @param pageNumber 页码（原文档中的页码，从 1 开始）
+     * @param totalPages 原文档总页数
+     */
+    public boolean appliesTo(int pageNumber, int totalPages) {
+        return pageSelector.test(pageNumber, totalPages);
+    }
+
+    /**
+     * 在页面上放置水印，平铺时在整页按网格重复放置同一个 XObject
+     * 原有内容用 q/Q 包起来（与 PdfCanvas(page, true) 相同），其结尾未恢复的坐标变换和裁剪区域不影响水印
+     */
+    public void stampPage(PdfDocument pdfDoc, int pageNumber, PdfFormXObject stamp) {
+        PdfPage page = pdfDoc.getPage(pageNumber);
+        PdfName stampName = page.getResources().addForm(stamp);
+        boolean wrapOldContent = page.getContentStreamCount() > 0;
+        if (wrapOldContent) {
+            page.newContentStreamBefore().getOutputStream().writeString("q").writeNewLine();
+        }
+        PdfOutputStream out = page.newContentStreamAfter().getOutputStream();
+        if (wrapOldContent) {
+            out.writeString("Q").writeNewLine();
+        }
+        out.writeBytes(pageContent(page.getPageSize(), stampName));
+    }
+
+    /**
+     * 生成在页面上放置水印的内容流
+     * @param pageSize 页面尺寸
+     * @param stampName 水印 XObject 在页面资源中的名称
+     */
+    public byte[] pageContent(Rectangle pageSize, PdfName stampName) {
+        // 旋转后的外接矩形尺寸
+        float extentWidth = Math.abs(width * cos) + Math.abs(height * sin);
+        float extentHeight = Math.abs(width * sin) + Math.abs(height * cos);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PdfOutputStream out = new PdfOutputStream(bytes);
+        for (float[] center : placements(pageSize, extentWidth, extentHeight)) {
+            float e = center[0] - (width / 2 * cos - height / 2 * sin);
+            float f = center[1] - (width / 2 * sin + height / 2 * cos);
+            out.writeString("q").writeNewLine();
+            for (float value : new float[]{cos, sin, -sin, cos, e, f}) {
+                out.writeFloat(value).writeSpace();
+            }
+            out.writeString("cm").writeNewLine()
+                    .write(stampName).writeSpace()
+                    .writeString("Do").writeNewLine()
+                    .writeString("Q").writeNewLine();
+        }
+        return bytes.toByteArray();
+    }
+
+    private List<float[]> placements(Rectangle pageSize, float extentWidth, float extentHeight) {
+        List<float[]> centers = new ArrayList<>();
+        if (!options.isTiled()) {
+            centers.add(anchor(options.getPosition(), pageSize, extentWidth, extentHeight));
+            return centers;
+        }
+
+        float stepX = extentWidth + options.getTileSpacing();
+        float stepY = extentHeight + options.getTileSpacing();
+        for (float y = pageSize.getBottom() + stepY / 2; y - extentHeight / 2 < pageSize.getTop(); y += stepY) {
+            for (float x = pageSize.getLeft() + stepX / 2; x - extentWidth / 2 < pageSize.getRight(); x += stepX) {
+                // 步长为 0 或小到加不上去时循环不会结束，也由这里终止
+                if (centers.size() >= MAX_TILES_PER_PAGE) {
+                    throw new IllegalArgumentException("平铺水印过密，每页最多 " + MAX_TILES_PER_PAGE
+                            + " 个，请增大字体、图片缩放比例或平铺间距");
+                }
+                centers.add(new float[]{x, y});
+            }
+        }
+        return centers;
+    }
+
+    /**
+     * 水印中心点：九宫格位置，距页面边缘保留固定边距
+     */
+    private static float[] anchor(String position, Rectangle pageSize, float extentWidth, float extentHeight) {
+        float left = pageSize.getLeft() + MARGIN + extentWidth / 2;
+        float right = pageSize.getRight() - MARGIN - extentWidth / 2;
+        float bottom = pageSize.getBottom() + MARGIN + extentHeight / 2;
+        float top = pageSize.getTop() - MARGIN - extentHeight / 2;
+        float centerX = pageSize.getLeft() + pageSize.getWidth() / 2;
+        float centerY = pageSize.getBottom() + pageSize.getHeight() / 2;
+
+        switch (position.toLowerCase()) {
+            case "center":
+                return new float[]{centerX, centerY};
+            case "top-left":
+                return new float[]{left, top};
+            case "top":
+                return new float[]{centerX, top};
+            case "top-right":
+                return new float[]{right, top};
+            case "left":
+                return new float[]{left, centerY};
+            case "right":
+                return new float[]{right, centerY};
+            case "bottom-left":
+                return new float[]{left, bottom};
+            case "bottom":
+                return new float[]{centerX, bottom};
+            case "bottom-right":
+                return new float[]{right, bottom};
+            default:
+                throw new IllegalArgumentException("不支持的水印位置: " + position);
+        }
+    }
+
+    private static DeviceRgb parseColor(String color) {
+        String hex = color.startsWith("#") ? color.substring(1) : color;
+        if (!hex.matches("[0-9a-fA-F]{6}")) {
+            throw new IllegalArgumentException("颜色格式应为 #RRGGBB: " + color);
+        }
+        int rgb = Integer.parseInt(hex, 16);
+        return new DeviceRgb((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+    }
+
+    /**
+     * 解析页码选择，如 "all"、"first,last"、"odd"、"1-3,5,10-"
+     */
+    static BiPredicate<Integer, Integer> parsePageSelector(String pages) {
+        BiPredicate<Integer, Integer> selector = (page, total) -> false;
+        for (String rawToken : pages.toLowerCase().replace(" ", "").split(",")) {
+            BiPredicate<Integer, Integer> part = parsePageToken(rawToken, pages);
+            selector = selector.or(part);
+        }
+        return selector;
+    }
+
+    private static BiPredicate<Integer, Integer> parsePageToken(String token, String pages) {
+        switch (token) {
+            case "all":
+                return (page, total) -> true;
+            case "first":
+                return (page, total) -> page == 1;
+            case "last":
+                return (page, total) -> page.equals(total);
+            case "odd":
+                return (page, total) -> page % 2 == 1;
+            case "even":
+                return (page, total) -> page % 2 == 0;
+            default:
+                break;
+        }
+
+        try {
+            int dash = token.indexOf('-');
+            if (dash < 0) {
+                int single = Integer.parseInt(token);
+                return (page, total) -> page == single;
+            }
+            int from = dash == 0 ? 1 : Integer.parseInt(token.substring(0, dash));
+            int to = dash == token.length() - 1 ? Integer.MAX_VALUE : Integer.parseInt(token.substring(dash + 1));
+            if (from < 1 || to < from) {
+                throw new NumberFormatException();
+            }
+            return (page, total) -> page >= from && page <= to;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("无效的页码选择: " + pages);
+        }
+    }
+}
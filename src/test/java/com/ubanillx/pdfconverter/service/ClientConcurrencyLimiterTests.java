@@ -0,0 +1,49 @@
+package com.ubanillx.pdfconverter.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ClientConcurrencyLimiterTests {
+
+    @Test
+    void limitsConcurrentConversionsPerClient() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ClientConcurrencyLimiter limiter = new ClientConcurrencyLimiter();
+        ReflectionTestUtils.setField(limiter, "meterRegistry", registry);
+        ReflectionTestUtils.setField(limiter, "maxConcurrentPerClient", 2);
+        limiter.init();
+
+        ClientConcurrencyLimiter.Permit first = limiter.acquire("a");
+        ClientConcurrencyLimiter.Permit second = limiter.acquire("a");
+        assertThrows(RejectedExecutionException.class, () -> limiter.acquire("a"));
+        // 其他客户端不受影响
+        try (ClientConcurrencyLimiter.Permit other = limiter.acquire("b")) {
+            assertEquals(2.0, registry.get("pdfconverter.admission.clients").gauge().value());
+        }
+
+        // 重复归还只释放一个名额
+        first.close();
+        first.close();
+        ClientConcurrencyLimiter.Permit third = limiter.acquire("a");
+        assertThrows(RejectedExecutionException.class, () -> limiter.acquire("a"));
+        second.close();
+        third.close();
+
+        assertEquals(0.0, registry.get("pdfconverter.admission.clients").gauge().value());
+        assertEquals(2.0, registry.get("pdfconverter.admission.client.rejections").counter().count());
+        assertEquals(0, limiter.getStats().get("inFlight"));
+
+        // 0 表示不限制
+        ReflectionTestUtils.setField(limiter, "maxConcurrentPerClient", 0);
+        for (int i = 0; i < 10; i++) {
+            assertDoesNotThrow(() -> limiter.acquire("a"));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.ubanillx.pdfconverter.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConversionCacheServiceTests {
+
+    @TempDir
+    Path tempDir;
+
+    private ConversionCacheService cacheService;
+
+    @BeforeEach
+    void setUp() {
+        cacheService = new ConversionCacheService();
+        ReflectionTestUtils.setField(cacheService, "enabled", true);
+        ReflectionTestUtils.setField(cacheService, "cacheDirectory", tempDir.resolve("cache").toString());
+        ReflectionTestUtils.setField(cacheService, "maxSizeBytes", 10L);
+        cacheService.init();
+    }
+
+    @Test
+    void keyDependsOnContentFormatAndFilter() throws Exception {
+        File first = write("a.docx", "same");
+        File second = write("b.docx", "same");
+
+        String key = cacheService.computeKey(first, "pdf", "writer_pdf_Export");
+        assertEquals(key, cacheService.computeKey(second, "PDF", "writer_pdf_Export"));
+        assertNotEquals(key, cacheService.computeKey(first, "odt", "writer_pdf_Export"));
+        assertNotEquals(key, cacheService.computeKey(first, "pdf", "writer8"));
+    }
+
+    @Test
+    void hitReturnsStoredResultAndLeastRecentlyUsedIsEvicted() throws Exception {
+        cacheService.store("k1", write("one.pdf", "12345"));
+        cacheService.store("k2", write("two.pdf", "67890"));
+
+        File output = tempDir.resolve("out/one.pdf").toFile();
+        assertTrue(cacheService.lookup("k1", output));
+        assertEquals("12345", Files.readString(output.toPath()));
+
+        // k2 是最久未访问的条目，超过 10 字节上限时被淘汰
+        cacheService.store("k3", write("three.pdf", "abc"));
+        assertFalse(cacheService.lookup("k2", tempDir.resolve("out/two.pdf").toFile()));
+        assertTrue(cacheService.lookup("k1", tempDir.resolve("out/again.pdf").toFile()));
+
+        assertEquals(2L, cacheService.getHitCount());
+        assertEquals(1L, cacheService.getMissCount());
+    }
+
+    @Test
+    void hitDoesNotChangeModificationTimeOfLinkedFiles() throws Exception {
+        File stored = write("stored.pdf", "12345");
+        FileTime storedTime = FileTime.fromMillis(System.currentTimeMillis() - 3_600_000);
+        Files.setLastModifiedTime(stored.toPath(), storedTime);
+        cacheService.store("k1", stored);
+
+        assertTrue(cacheService.lookup("k1", tempDir.resolve("out/hit.pdf").toFile()));
+        // 缓存条目与存储文件可能是同一个 inode，命中不能改变它的修改时间
+        assertEquals(storedTime.toMillis(), Files.getLastModifiedTime(stored.toPath()).toMillis());
+    }
+
+    @Test
+    void initDeletesTempFilesLeftByAnInterruptedStore() throws Exception {
+        Path cacheDir = tempDir.resolve("cache");
+        Path staleTemp = cacheDir.resolve(".k1_123456789.tmp");
+        Files.writeString(staleTemp, "12345");
+        Files.writeString(cacheDir.resolve("k2.pdf"), "67890");
+
+        ConversionCacheService restarted = new ConversionCacheService();
+        ReflectionTestUtils.setField(restarted, "enabled", true);
+        ReflectionTestUtils.setField(restarted, "cacheDirectory", cacheDir.toString());
+        ReflectionTestUtils.setField(restarted, "maxSizeBytes", 10L);
+        restarted.init();
+
+        assertFalse(Files.exists(staleTemp));
+        assertTrue(restarted.lookup("k2", tempDir.resolve("out/two.pdf").toFile()));
+        assertFalse(restarted.lookup("k1", tempDir.resolve("out/one.pdf").toFile()));
+    }
+
+    private File write(String name, String content) throws Exception {
+        Path path = tempDir.resolve(name);
+        Files.writeString(path, content);
+        return path.toFile();
+    }
+}
@@ -0,0 +1,370 @@
+package com.ubanillx.pdfconverter.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConversionEngineRouterTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void routesByFormatSizeAndLoadAndFallsBackOnFailure() throws Exception {
+        StubEngine small = new StubEngine("small", 1);
+        StubEngine large = new StubEngine("large", 2);
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("app.conversion.route.small.formats", "docx,txt")
+                .withProperty("app.conversion.route.small.max-file-size", "100");
+        ConversionEngineRouter router = router("small,large", environment, small, large);
+
+        String smallFile = stored("small.docx", 10);
+        String bigFile = stored("big.docx", 1000);
+        assertEquals("small", router.convertFile(smallFile, "docx", "pdf", tempDir.toString()).getName());
+        assertEquals("large", router.convertFile(bigFile, "docx", "pdf", tempDir.toString()).getName());
+        assertEquals("large", router.convertFile(smallFile, "pptx", "pdf", tempDir.toString()).getName());
+
+        // small 忙时选择负载更低的 large
+        small.block();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> router.convertFile(smallFile, "docx", "pdf", tempDir.toString()));
+            assertTrue(small.started.await(5, TimeUnit.SECONDS));
+            assertEquals("large", router.convertFile(smallFile, "docx", "pdf", tempDir.toString()).getName());
+        } finally {
+            small.release();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        }
+
+        // small 失败时改由 large 重试
+        small.failing = true;
+        assertEquals("large", router.convertFile(smallFile, "docx", "pdf", tempDir.toString()).getName());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> largeStats = (Map<String, Object>) router.getStats().get("large");
+        assertEquals(1.0, largeStats.get("fallbacks"));
+    }
+
+    @Test
+    void suspendsFailingEngineAndRejectsWhenSaturated() throws Exception {
+        StubEngine primary = new StubEngine("primary", 1);
+        StubEngine secondary = new StubEngine("secondary", 1);
+        ConversionEngineRouter router = router("primary,secondary", new MockEnvironment(), primary, secondary);
+        ReflectionTestUtils.setField(router, "fallbackOnError", false);
+        String source = stored("doc.docx", 10);
+
+        primary.failing = true;
+        for (int i = 0; i < 2; i++) {
+            assertThrows(IOException.class, () -> router.convertFile(source, "docx", "pdf", tempDir.toString()));
+        }
+        primary.failing = false;
+        assertEquals(List.of("primary", "primary"), primary.calls);
+        assertEquals("secondary", router.convertFile(source, "docx", "pdf", tempDir.toString()).getName());
+
+        // 唯一可用的引擎饱和（容量 1 + 排队 0）时拒绝
+        ReflectionTestUtils.setField(router, "maxQueue", 0);
+        secondary.block();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> router.convertFile(source, "docx", "pdf", tempDir.toString()));
+            assertTrue(secondary.started.await(5, TimeUnit.SECONDS));
+            assertThrows(RejectedExecutionException.class,
+                    () -> router.convertFile(source, "docx", "pdf", tempDir.toString()));
+        } finally {
+            secondary.release();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void rejectsInsteadOfCallingAnUnhealthyEngine() throws Exception {
+        StubEngine primary = new StubEngine("primary", 1);
+        ConversionEngineRouter router = router("primary", new MockEnvironment(), primary);
+        String source = stored("doc.docx", 10);
+
+        primary.healthy = false;
+        assertThrows(RejectedExecutionException.class,
+                () -> router.convertFile(source, "docx", "pdf", tempDir.toString()));
+        assertThrows(RejectedExecutionException.class,
+                () -> router.convertFile(source, "docx", "pdf", tempDir.toString(), true));
+        assertTrue(primary.calls.isEmpty());
+
+        primary.healthy = true;
+        assertEquals("primary", router.convertFile(source, "docx", "pdf", tempDir.toString()).getName());
+    }
+
+    @Test
+    void passesSourceErrorsThroughWithoutSuspendingOrFallingBack() throws Exception {
+        StubEngine primary = new StubEngine("primary", 1);
+        StubEngine secondary = new StubEngine("secondary", 1);
+        ConversionEngineRouter router = router("primary,secondary", new MockEnvironment(), primary, secondary);
+        String source = stored("doc.docx", 10);
+
+        // 源文件错误不换引擎重试，也不计入失败：超过失败阈值后 primary 仍然可用
+        primary.sourceError = true;
+        for (int i = 0; i < 3; i++) {
+            assertThrows(SourceDocumentException.class,
+                    () -> router.convertFile(source, "docx", "pdf", tempDir.toString()));
+        }
+        assertEquals(List.of("primary", "primary", "primary"), primary.calls);
+        assertTrue(secondary.calls.isEmpty());
+
+        primary.sourceError = false;
+        assertEquals("primary", router.convertFile(source, "docx", "pdf", tempDir.toString()).getName());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> primaryStats = (Map<String, Object>) router.getStats().get("primary");
+        assertEquals(0L, primaryStats.get("failures"));
+        assertEquals(false, primaryStats.get("suspended"));
+    }
+
+    @Test
+    void queuesBeyondCapacityAndRejectsWhenQueueIsFullOrWaitTimesOut() throws Exception {
+        StubEngine only = new StubEngine("only", 1);
+        ConversionEngineRouter router = router("only", new MockEnvironment(), only);
+        ReflectionTestUtils.setField(router, "maxQueue", 1);
+        MeterRegistry registry = (MeterRegistry) ReflectionTestUtils.getField(router, "meterRegistry");
+        String source = stored("doc.docx", 10);
+
+        only.block();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<File> running = executor.submit(() -> router.convertFile(source, "docx", "pdf", tempDir.toString()));
+            assertTrue(only.started.await(5, TimeUnit.SECONDS));
+            // 容量已满，第二个转换排队等待名额
+            Future<File> queued = executor.submit(() -> router.convertFile(source, "docx", "pdf", tempDir.toString()));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (registry.get("pdfconverter.engine.queue").gauge().value() < 1
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1.0, registry.get("pdfconverter.engine.queue").gauge().value());
+            // 队列已满时立即拒绝
+            assertThrows(RejectedExecutionException.class,
+                    () -> router.convertFile(source, "docx", "pdf", tempDir.toString()));
+
+            only.release();
+            assertEquals("only", running.get(5, TimeUnit.SECONDS).getName());
+            assertEquals("only", queued.get(5, TimeUnit.SECONDS).getName());
+            assertEquals(List.of("only", "only"), only.calls);
+        } finally {
+            only.release();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        }
+
+        // 等待超过 max-wait 时拒绝
+        ReflectionTestUtils.setField(router, "maxWaitMillis", 50L);
+        only.block();
+        ExecutorService blocker = Executors.newSingleThreadExecutor();
+        try {
+            blocker.submit(() -> router.convertFile(source, "docx", "pdf", tempDir.toString()));
+            assertTrue(only.started.await(5, TimeUnit.SECONDS));
+            assertThrows(RejectedExecutionException.class,
+                    () -> router.convertFile(source, "docx", "pdf", tempDir.toString()));
+        } finally {
+            only.release();
+            blocker.shutdown();
+            assertTrue(blocker.awaitTermination(5, TimeUnit.SECONDS));
+        }
+        assertEquals(2.0, registry.get("pdfconverter.engine.rejections").counter().count());
+        assertEquals(0.0, registry.get("pdfconverter.engine.queue").gauge().value());
+        assertTrue(registry.get("pdfconverter.engine.queue.wait").timer().count() >= 3);
+    }
+
+    @Test
+    void jobConversionsWaitForCapacityInsteadOfBeingRejected() throws Exception {
+        StubEngine only = new StubEngine("only", 1);
+        ConversionEngineRouter router = router("only", new MockEnvironment(), only);
+        ReflectionTestUtils.setField(router, "maxQueue", 0);
+        ReflectionTestUtils.setField(router, "maxWaitMillis", 10L);
+        String source = stored("doc.docx", 10);
+
+        only.block();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<File> running = executor.submit(() -> router.convertFile(source, "docx", "pdf", tempDir.toString()));
+            assertTrue(only.started.await(5, TimeUnit.SECONDS));
+            // 同步请求被拒绝，任务排队等待
+            assertThrows(RejectedExecutionException.class,
+                    () -> router.convertFile(source, "docx", "pdf", tempDir.toString()));
+            Future<File> job = executor.submit(
+                    () -> router.convertFile(source, "docx", "pdf", tempDir.toString(), true));
+            Thread.sleep(100);
+            assertFalse(job.isDone());
+
+            only.release();
+            assertEquals("only", running.get(5, TimeUnit.SECONDS).getName());
+            assertEquals("only", job.get(5, TimeUnit.SECONDS).getName());
+        } finally {
+            only.release();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void queuedJobsDoNotSaturateTheEngineForSyncRequests() throws Exception {
+        StubEngine only = new StubEngine("only", 1);
+        ConversionEngineRouter router = router("only", new MockEnvironment(), only);
+        ReflectionTestUtils.setField(router, "maxQueue", 1);
+        MeterRegistry registry = (MeterRegistry) ReflectionTestUtils.getField(router, "meterRegistry");
+        String first = stored("first.docx", 10);
+        String job = stored("job.docx", 10);
+        String sync = stored("sync.docx", 10);
+
+        only.block();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<File> running = executor.submit(() -> router.convertFile(first, "docx", "pdf", tempDir.toString()));
+            assertTrue(only.started.await(5, TimeUnit.SECONDS));
+            List<Future<File>> jobs = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                jobs.add(executor.submit(() -> router.convertFile(job, "docx", "pdf", tempDir.toString(), true)));
+            }
+            awaitGauge(registry, "pdfconverter.engine.queue.background", 2);
+
+            // 排队的任务超过 max-queue 时同步请求仍然可以排队，而且先于任务获得名额
+            Future<File> queued = executor.submit(() -> router.convertFile(sync, "docx", "pdf", tempDir.toString()));
+            awaitGauge(registry, "pdfconverter.engine.queue", 1);
+
+            only.release();
+            assertEquals("only", running.get(5, TimeUnit.SECONDS).getName());
+            assertEquals("only", queued.get(5, TimeUnit.SECONDS).getName());
+            for (Future<File> accepted : jobs) {
+                assertEquals("only", accepted.get(5, TimeUnit.SECONDS).getName());
+            }
+            assertEquals(List.of(first, sync, job, job), only.sources);
+        } finally {
+            only.release();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        }
+    }
+
+    private static void awaitGauge(MeterRegistry registry, String name, double expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (registry.get(name).gauge().value() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, registry.get(name).gauge().value());
+    }
+
+    private ConversionEngineRouter router(String engines, MockEnvironment environment, ConversionEngine... available) {
+        FileStorageService storageService = TestFixtures.storage(tempDir, 0, new ConversionMetrics(new SimpleMeterRegistry()));
+
+        ConversionEngineRouter router = new ConversionEngineRouter();
+        ReflectionTestUtils.setField(router, "availableEngines", List.of(available));
+        ReflectionTestUtils.setField(router, "fileStorageService", storageService);
+        ReflectionTestUtils.setField(router, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(router, "environment", environment);
+        ReflectionTestUtils.setField(router, "engineNames", engines);
+        ReflectionTestUtils.setField(router, "maxQueue", 4);
+        ReflectionTestUtils.setField(router, "maxWaitMillis", 5000L);
+        ReflectionTestUtils.setField(router, "failureThreshold", 2);
+        ReflectionTestUtils.setField(router, "failureCooldownMillis", 60000L);
+        ReflectionTestUtils.setField(router, "fallbackOnError", true);
+        router.init();
+        return router;
+    }
+
+    private String stored(String name, int size) throws IOException {
+        Files.write(tempDir.resolve(name), new byte[size]);
+        return "http://localhost:9999/files/" + name;
+    }
+
+    /**
+     * 返回以引擎名命名的文件；block() 后的下一次转换会等到 release()
+     */
+    private static class StubEngine implements ConversionEngine {
+
+        final String name;
+        final int capacity;
+        final List<String> calls = new ArrayList<>();
+        final List<String> sources = new ArrayList<>();
+        volatile boolean failing;
+        volatile boolean sourceError;
+        volatile boolean healthy = true;
+        volatile CountDownLatch started = new CountDownLatch(0);
+        private volatile CountDownLatch gate;
+        private volatile boolean blockNext;
+
+        StubEngine(String name, int capacity) {
+            this.name = name;
+            this.capacity = capacity;
+        }
+
+        void block() {
+            started = new CountDownLatch(1);
+            gate = new CountDownLatch(1);
+            blockNext = true;
+        }
+
+        void release() {
+            gate.countDown();
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public int getCapacity() {
+            return capacity;
+        }
+
+        @Override
+        public boolean isHealthy() {
+            return healthy;
+        }
+
+        @Override
+        public File convertFile(String sourceUrl, String targetFormat, String outputDir) throws Exception {
+            synchronized (calls) {
+                calls.add(name);
+                sources.add(sourceUrl);
+            }
+            if (blockNext) {
+                blockNext = false;
+                started.countDown();
+                gate.await(5, TimeUnit.SECONDS);
+            }
+            if (sourceError) {
+                throw new SourceDocumentException("Failed to download file from URL: " + sourceUrl);
+            }
+            if (failing) {
+                throw new IOException(name + " failed");
+            }
+            return new File(outputDir, name);
+        }
+
+        @Override
+        public void convertFiles(List<String> sourceUrls, String targetFormat, String outputDir,
+                                 BatchConversionCallback callback) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
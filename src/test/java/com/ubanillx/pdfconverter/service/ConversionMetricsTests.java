@@ -0,0 +1,58 @@
+package com.ubanillx.pdfconverter.service;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConversionMetricsTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ConversionMetrics metrics = new ConversionMetrics(registry);
+
+    @Test
+    void stagesAreTimedAndErrorsCountedByCause() throws Exception {
+        String result = metrics.record(ConversionMetrics.LOAD, "docx", "pdf", () -> {
+            // 执行期间计入进行中数量
+            assertEquals(1.0, registry.get("pdfconverter.stage.inflight").tag("stage", "load").gauge().value());
+            return "ok";
+        });
+        assertEquals("ok", result);
+        assertThrows(IOException.class, () -> metrics.recordRun(ConversionMetrics.LOAD, "docx", "pdf", () -> {
+            throw new IOException("broken document");
+        }));
+        assertThrows(RejectedExecutionException.class, () -> metrics.recordRun(ConversionMetrics.WATERMARK,
+                "pdf", "pdf", () -> {
+                    throw new RejectedExecutionException("budget exhausted");
+                }));
+
+        Timer success = registry.get("pdfconverter.stage.duration")
+                .tags("stage", "load", "source", "docx", "target", "pdf", "outcome", "success").timer();
+        assertEquals(1, success.count());
+        assertEquals(2, registry.get("pdfconverter.stage.duration").tags("outcome", "error").timers().size());
+        assertEquals(1.0, registry.get("pdfconverter.stage.errors")
+                .tags("stage", "load", "cause", "IOException").counter().count());
+        assertEquals(1.0, registry.get("pdfconverter.stage.errors")
+                .tags("stage", "watermark", "cause", "rejected").counter().count());
+        assertEquals(0.0, registry.get("pdfconverter.stage.inflight").tag("stage", "load").gauge().value());
+    }
+
+    @Test
+    void formatTagsAreBounded() {
+        assertEquals("docx", ConversionMetrics.formatOf("http://example.com/files/Report.DOCX?token=a.b"));
+        assertEquals("pdf", ConversionMetrics.formatOf("file:///tmp/libreoffice_1_report.pdf"));
+        assertEquals(ConversionMetrics.NONE, ConversionMetrics.formatOf("http://example.com/download"));
+        assertEquals(ConversionMetrics.NONE, ConversionMetrics.formatOf("http://example.com.cn/"));
+        assertEquals("other", ConversionMetrics.formatOf("/tmp/archive.some-long-extension"));
+        // 未知的短扩展名和目标格式同样归为 other
+        assertEquals("other", ConversionMetrics.formatOf("http://example.com/files/a.zz9q1"));
+        assertEquals("other", ConversionMetrics.normalizeFormat("abcde"));
+        assertEquals("pdf", ConversionMetrics.normalizeFormat("PDF"));
+        assertEquals("mixed", ConversionMetrics.normalizeFormat(ConversionMetrics.MIXED));
+    }
+}
@@ -0,0 +1,102 @@
+package com.ubanillx.pdfconverter.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConversionWatchdogTests {
+
+    private SimpleMeterRegistry registry;
+    private ConversionWatchdog watchdog;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        watchdog = new ConversionWatchdog();
+        ReflectionTestUtils.setField(watchdog, "meterRegistry", registry);
+        ReflectionTestUtils.setField(watchdog, "loadTimeoutMillis", 200L);
+        ReflectionTestUtils.setField(watchdog, "storeTimeoutMillis", 5000L);
+        ReflectionTestUtils.setField(watchdog, "quarantineThreshold", 2);
+        ReflectionTestUtils.setField(watchdog, "quarantineTtlMillis", 86400000L);
+        ReflectionTestUtils.setField(watchdog, "quarantineMaxEntries", 10000);
+        watchdog.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        watchdog.shutdown();
+    }
+
+    @Test
+    void killsInstanceWhenStageExceedsDeadline() throws Exception {
+        CountDownLatch terminated = new CountDownLatch(1);
+        OfficeInstance instance = new OfficeInstance(0, "127.0.0.1", 2002, null,
+                new ConversionMetrics(registry), watchdog);
+        instance.setTerminator(killed -> terminated.countDown());
+
+        assertEquals("ok", watchdog.call(instance, ConversionMetrics.STORE, () -> "ok"));
+        assertThrows(IOException.class, () -> watchdog.call(instance, ConversionMetrics.STORE, () -> {
+            throw new IOException("filter failed");
+        }));
+        assertEquals(1, terminated.getCount());
+
+        long started = System.nanoTime();
+        assertThrows(ConversionWatchdog.StageTimeoutException.class, () -> watchdog.call(instance, ConversionMetrics.LOAD, () -> {
+            Thread.sleep(10000);
+            return null;
+        }));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) < 5000);
+        assertTrue(terminated.await(1, TimeUnit.SECONDS));
+        assertEquals(1.0, registry.get("pdfconverter.watchdog.timeouts").tag("stage", "load").counter().count());
+    }
+
+    @Test
+    void quarantinesDocumentsThatTimeOutRepeatedly() throws Exception {
+        watchdog.recordResult("slow", new ConversionWatchdog.StageTimeoutException("load timed out"));
+        watchdog.recordResult("slow", new IOException("corrupt"));
+        // 其他超时（例如下载超时）不是文档的问题
+        watchdog.recordResult("slow", new TimeoutException("download timed out"));
+        watchdog.recordResult("slow", new SocketTimeoutException("Read timed out"));
+        assertDoesNotThrow(() -> watchdog.checkQuarantine("slow"));
+
+        watchdog.recordResult("slow", new Exception("wrapped", new ConversionWatchdog.StageTimeoutException("store timed out")));
+        assertThrows(ConversionWatchdog.QuarantinedDocumentException.class, () -> watchdog.checkQuarantine("slow"));
+        assertDoesNotThrow(() -> watchdog.checkQuarantine("other"));
+        assertEquals(1.0, registry.get("pdfconverter.watchdog.quarantined").gauge().value());
+        assertEquals(1.0, registry.get("pdfconverter.watchdog.quarantine.rejections").counter().count());
+
+        // 成功转换后清除记录
+        watchdog.recordResult("slow", null);
+        assertDoesNotThrow(() -> watchdog.checkQuarantine("slow"));
+
+        // 隔离期过后恢复
+        ReflectionTestUtils.setField(watchdog, "quarantineTtlMillis", 1L);
+        watchdog.recordResult("expiring", new ConversionWatchdog.StageTimeoutException("load timed out"));
+        watchdog.recordResult("expiring", new ConversionWatchdog.StageTimeoutException("load timed out"));
+        Thread.sleep(10);
+        assertDoesNotThrow(() -> watchdog.checkQuarantine("expiring"));
+
+        // 记录数超过上限时淘汰最久未出现的文档
+        ReflectionTestUtils.setField(watchdog, "quarantineTtlMillis", 86400000L);
+        ReflectionTestUtils.setField(watchdog, "quarantineMaxEntries", 1);
+        watchdog.recordResult("first", new ConversionWatchdog.StageTimeoutException("load timed out"));
+        watchdog.recordResult("first", new ConversionWatchdog.StageTimeoutException("load timed out"));
+        watchdog.recordResult("second", new ConversionWatchdog.StageTimeoutException("load timed out"));
+        watchdog.recordResult("second", new ConversionWatchdog.StageTimeoutException("load timed out"));
+        assertDoesNotThrow(() -> watchdog.checkQuarantine("first"));
+        assertThrows(ConversionWatchdog.QuarantinedDocumentException.class, () -> watchdog.checkQuarantine("second"));
+    }
+}
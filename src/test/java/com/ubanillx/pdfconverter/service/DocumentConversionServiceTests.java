@@ -0,0 +1,161 @@
+package com.ubanillx.pdfconverter.service;
+
+import com.ubanillx.pdfconverter.model.BatchItem;
+import com.ubanillx.pdfconverter.model.ConversionResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DocumentConversionServiceTests {
+
+    @TempDir
+    Path tempDir;
+
+    private final List<String> converted = new ArrayList<>();
+    private DocumentConversionService conversionService;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ConversionMetrics metrics = new ConversionMetrics(meterRegistry);
+        FileStorageService storageService = TestFixtures.storage(tempDir, 0, metrics);
+
+        ConversionEngine engine = new ConversionEngine() {
+            @Override
+            public String getName() {
+                return "stub";
+            }
+
+            @Override
+            public File convertFile(String sourceUrl, String targetFormat, String outputDir) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void convertFiles(List<String> sourceUrls, String targetFormat, String outputDir,
+                                     BatchConversionCallback callback) {
+                for (String sourceUrl : sourceUrls) {
+                    if (sourceUrl.contains("crash")) {
+                        // 整组失败，组内剩余文件没有结果
+                        throw new IllegalStateException("office crashed");
+                    }
+                    synchronized (converted) {
+                        converted.add(sourceUrl);
+                    }
+                    try {
+                        Path output = Files.createTempFile(Path.of(outputDir), "converted_", "." + targetFormat);
+                        Files.writeString(output, sourceUrl);
+                        callback.onResult(sourceUrl, output.toFile(), null);
+                    } catch (Exception e) {
+                        callback.onResult(sourceUrl, null, e);
+                    }
+                }
+            }
+        };
+
+        ConversionEngineRouter router = new ConversionEngineRouter();
+        ReflectionTestUtils.setField(router, "availableEngines", List.of(engine));
+        ReflectionTestUtils.setField(router, "fileStorageService", storageService);
+        ReflectionTestUtils.setField(router, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(router, "environment", new MockEnvironment());
+        ReflectionTestUtils.setField(router, "engineNames", "stub");
+        ReflectionTestUtils.setField(router, "maxQueue", 4);
+        ReflectionTestUtils.setField(router, "maxWaitMillis", 5000L);
+        ReflectionTestUtils.setField(router, "failureThreshold", 2);
+        ReflectionTestUtils.setField(router, "failureCooldownMillis", 60000L);
+        ReflectionTestUtils.setField(router, "fallbackOnError", true);
+        router.init();
+
+        conversionService = new DocumentConversionService();
+        ReflectionTestUtils.setField(conversionService, "engineRouter", router);
+        ReflectionTestUtils.setField(conversionService, "fileStorageService", storageService);
+        ReflectionTestUtils.setField(conversionService, "metrics", metrics);
+        ReflectionTestUtils.setField(conversionService, "batchGroupSize", 2);
+        ReflectionTestUtils.setField(conversionService, "batchParallelism", 2);
+        conversionService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        conversionService.shutdown();
+    }
+
+    @Test
+    void duplicateBatchUrlsEachGetTheirOwnResult() throws Exception {
+        String first = "http://example.com/a.docx";
+        String second = "http://example.com/b.docx";
+        List<BatchItem> items = List.of(
+                new BatchItem(0, first, "docx"),
+                new BatchItem(1, second, "docx"),
+                new BatchItem(2, first, "docx"),
+                new BatchItem(3, first, "docx"));
+
+        List<ConversionResponse> responses = new ArrayList<>();
+        conversionService.convertBatch(items, "pdf", responses::add);
+
+        responses.sort(Comparator.comparing(ConversionResponse::getIndex));
+        assertEquals(4, responses.size());
+        for (int i = 0; i < items.size(); i++) {
+            ConversionResponse response = responses.get(i);
+            assertEquals(i, response.getIndex());
+            assertTrue(response.isSuccess(), response.getMessage());
+            assertEquals(items.get(i).url(), response.getOriginalUrl());
+        }
+        assertEquals(responses.get(0).getConvertedUrl(), responses.get(3).getConvertedUrl());
+        // 重复的URL只转换一次
+        assertEquals(2, converted.size());
+    }
+
+    @Test
+    void everyItemOfAFailedGroupGetsAFailureLine() throws Exception {
+        List<BatchItem> items = List.of(
+                new BatchItem(0, "http://example.com/a.docx", "docx"),
+                new BatchItem(1, "http://example.com/crash.docx", "docx"),
+                new BatchItem(2, "http://example.com/c.docx", "docx"),
+                new BatchItem(3, "http://example.com/d.docx", "docx"));
+
+        List<ConversionResponse> responses = new ArrayList<>();
+        conversionService.convertBatch(items, "pdf", responses::add);
+
+        responses.sort(Comparator.comparing(ConversionResponse::getIndex));
+        assertEquals(4, responses.size());
+        assertTrue(responses.get(0).isSuccess());
+        assertFalse(responses.get(1).isSuccess());
+        assertTrue(responses.get(1).getMessage().contains("office crashed"), responses.get(1).getMessage());
+        assertEquals("http://example.com/crash.docx", responses.get(1).getOriginalUrl());
+        assertTrue(responses.get(2).isSuccess());
+        assertTrue(responses.get(3).isSuccess());
+    }
+
+    @Test
+    void failedWriteCancelsRemainingGroups() {
+        List<BatchItem> items = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            items.add(new BatchItem(i, "http://example.com/" + i + ".docx", "docx"));
+        }
+
+        assertThrows(UncheckedIOException.class, () -> conversionService.convertBatch(items, "pdf", response -> {
+            throw new UncheckedIOException(new IOException("Broken pipe"));
+        }));
+        // 只有取消前已经开始的分组会执行完
+        assertTrue(converted.size() < items.size(), "converted " + converted.size());
+    }
+}
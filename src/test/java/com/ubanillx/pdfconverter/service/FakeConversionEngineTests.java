@@ -0,0 +1,121 @@
+package com.ubanillx.pdfconverter.service;
+
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FakeConversionEngineTests {
+
+    @TempDir
+    Path tempDir;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private FileDownloadService downloadService;
+    private FakeConversionEngine engine;
+    private String outputDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ConversionMetrics metrics = new ConversionMetrics(meterRegistry);
+        FileStorageService storageService = TestFixtures.storage(tempDir, 0, metrics);
+
+        downloadService = new FileDownloadService();
+        ReflectionTestUtils.setField(downloadService, "connectTimeoutMillis", 1000L);
+        ReflectionTestUtils.setField(downloadService, "readTimeoutMillis", 1000L);
+        ReflectionTestUtils.setField(downloadService, "totalTimeoutMillis", 5000L);
+        ReflectionTestUtils.setField(downloadService, "maxSizeBytes", 1024L * 1024);
+        ReflectionTestUtils.setField(downloadService, "metrics", metrics);
+        downloadService.init();
+
+        engine = new FakeConversionEngine();
+        ReflectionTestUtils.setField(engine, "fileStorageService", storageService);
+        ReflectionTestUtils.setField(engine, "fileDownloadService", downloadService);
+        ReflectionTestUtils.setField(engine, "metrics", metrics);
+        ReflectionTestUtils.setField(engine, "latencyMillis", 20L);
+        ReflectionTestUtils.setField(engine, "latencyJitterMillis", 0L);
+        ReflectionTestUtils.setField(engine, "cpuTimeMillis", 5L);
+        ReflectionTestUtils.setField(engine, "outputSize", 4096);
+        ReflectionTestUtils.setField(engine, "pages", 3);
+        ReflectionTestUtils.setField(engine, "failureRate", 0.0);
+
+        outputDir = Files.createDirectories(tempDir.resolve("outputs")).toString();
+    }
+
+    @AfterEach
+    void tearDown() {
+        downloadService.shutdown();
+    }
+
+    @Test
+    void sameSourceProducesSameOutputAndPdfCanBeWatermarked() throws Exception {
+        String sourceUrl = source("report.docx");
+
+        File first = engine.convertFile(sourceUrl, "odt", outputDir);
+        File second = engine.convertFile(sourceUrl, "odt", outputDir);
+        assertNotEquals(first.getName(), second.getName());
+        assertTrue(first.getName().startsWith("report_"));
+        assertEquals(4096, first.length());
+        assertArrayEquals(Files.readAllBytes(first.toPath()), Files.readAllBytes(second.toPath()));
+
+        File pdf = engine.convertFile(sourceUrl, "pdf", outputDir);
+        assertTrue(pdf.length() > 4096);
+        try (PdfDocument document = new PdfDocument(new PdfReader(pdf))) {
+            assertEquals(3, document.getNumberOfPages());
+        }
+        assertEquals(3, meterRegistry.get("pdfconverter.stage.duration")
+                .tag("stage", ConversionMetrics.CONVERT).timers().stream().mapToLong(t -> t.count()).sum());
+    }
+
+    @Test
+    void failureRateFailsTheSameSourcesEveryTime() throws Exception {
+        ReflectionTestUtils.setField(engine, "latencyMillis", 0L);
+        ReflectionTestUtils.setField(engine, "cpuTimeMillis", 0L);
+        ReflectionTestUtils.setField(engine, "failureRate", 1.0);
+        String sourceUrl = source("broken.docx");
+
+        assertThrows(IOException.class, () -> engine.convertFile(sourceUrl, "pdf", outputDir));
+
+        ReflectionTestUtils.setField(engine, "failureRate", 0.5);
+        List<String> sources = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            sources.add(source("doc" + i + ".docx"));
+        }
+        List<String> failed = new ArrayList<>();
+        engine.convertFiles(sources, "txt", outputDir, (url, file, error) -> {
+            if (error != null) {
+                failed.add(url);
+            }
+        });
+        List<String> failedAgain = new ArrayList<>();
+        engine.convertFiles(sources, "txt", outputDir, (url, file, error) -> {
+            if (error != null) {
+                failedAgain.add(url);
+            }
+        });
+        assertTrue(!failed.isEmpty() && failed.size() < sources.size());
+        assertEquals(failed, failedAgain);
+    }
+
+    private String source(String name) throws IOException {
+        Files.writeString(tempDir.resolve(name), "source document " + name);
+        return "http://localhost:9999/files/" + name;
+    }
+}
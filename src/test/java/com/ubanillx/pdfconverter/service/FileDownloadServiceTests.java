@@ -0,0 +1,110 @@
+package com.ubanillx.pdfconverter.service;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FileDownloadServiceTests {
+
+    @TempDir
+    Path tempDir;
+
+    private HttpServer server;
+    private FileDownloadService downloadService;
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final byte[] payload = new byte[600 * 1024];
+
+    @BeforeEach
+    void setUp() throws IOException {
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) i;
+        }
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/file.docx", exchange -> {
+            exchange.sendResponseHeaders(200, payload.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(payload);
+            }
+        });
+        server.createContext("/stalled.docx", exchange -> {
+            exchange.sendResponseHeaders(200, payload.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(payload, 0, 1024);
+            out.flush();
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.start();
+
+        downloadService = new FileDownloadService();
+        ReflectionTestUtils.setField(downloadService, "connectTimeoutMillis", 1000L);
+        ReflectionTestUtils.setField(downloadService, "readTimeoutMillis", 300L);
+        ReflectionTestUtils.setField(downloadService, "totalTimeoutMillis", 5000L);
+        ReflectionTestUtils.setField(downloadService, "maxSizeBytes", 1024L * 1024);
+        ReflectionTestUtils.setField(downloadService, "metrics", new ConversionMetrics(meterRegistry));
+        downloadService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        downloadService.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    void downloadsFileContent() throws Exception {
+        Path target = tempDir.resolve("file.docx");
+        downloadService.download(url("/file.docx"), target);
+        assertArrayEquals(payload, Files.readAllBytes(target));
+    }
+
+    @Test
+    void rejectsFilesOverMaxSize() {
+        ReflectionTestUtils.setField(downloadService, "maxSizeBytes", 1024L);
+        Path target = tempDir.resolve("big.docx");
+        assertThrows(IOException.class, () -> downloadService.download(url("/file.docx"), target));
+        assertFalse(Files.exists(target));
+    }
+
+    @Test
+    void stalledDownloadTimesOut() {
+        Path target = tempDir.resolve("stalled.docx");
+        assertThrows(IOException.class, () -> downloadService.download(url("/stalled.docx"), target));
+        assertFalse(Files.exists(target));
+        assertEquals(1.0, meterRegistry.get("pdfconverter.stage.errors")
+                .tags("stage", "download", "cause", "timeout").counter().count());
+    }
+
+    @Test
+    void rejectsNonHttpUrls() throws Exception {
+        Path secret = Files.writeString(tempDir.resolve("secret.txt"), "secret");
+        Path target = tempDir.resolve("copied.txt");
+        assertThrows(IOException.class, () -> downloadService.download(secret.toUri().toString(), target));
+        assertThrows(IOException.class, () -> downloadService.download("ftp://127.0.0.1/secret.txt", target));
+        assertFalse(Files.exists(target));
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+}
@@ -0,0 +1,43 @@
+package com.ubanillx.pdfconverter.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class FileStorageServiceTests {
+
+    @TempDir
+    Path tempDir;
+
+    private FileStorageService storageService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        storageService = TestFixtures.storage(tempDir);
+        Files.writeString(tempDir.resolve("20250101_120000_abcd1234.docx"), "content");
+    }
+
+    @Test
+    void ownUrlsResolveToStoredFile() {
+        Path expected = tempDir.resolve("20250101_120000_abcd1234.docx");
+        assertEquals(expected.toFile(),
+                storageService.resolveLocalFile("http://localhost:9999/files/20250101_120000_abcd1234.docx"));
+        assertEquals(expected.toFile(),
+                storageService.resolveLocalFile("http://localhost:9999/files/20250101_120000_abcd1234.docx?v=1"));
+        assertEquals(expected.toFile(), storageService.resolveLocalFile("20250101_120000_abcd1234.docx"));
+    }
+
+    @Test
+    void foreignMissingAndTraversalUrlsAreNotResolved() {
+        assertNull(storageService.resolveLocalFile("https://example.com/files/20250101_120000_abcd1234.docx"));
+        assertNull(storageService.resolveLocalFile("http://localhost:9999/files/missing.docx"));
+        assertNull(storageService.resolveLocalFile("http://localhost:9999/files/..%2Fsecret.docx"));
+        assertNull(storageService.resolveLocalFile("http://localhost:9999/files/../secret.docx"));
+    }
+}
@@ -0,0 +1,70 @@
+package com.ubanillx.pdfconverter.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class FontRegistryTests {
+
+    private static final Path SYSTEM_FONTS = Paths.get("/usr/share/fonts/truetype/dejavu");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void builtInFontsAreParsedOnce() throws Exception {
+        FontRegistry registry = createRegistry(1024);
+
+        FontRegistry.ResolvedFont latin = registry.resolve(null, "CONFIDENTIAL");
+        FontRegistry.ResolvedFont chinese = registry.resolve(null, "机密文件");
+
+        assertEquals("Helvetica", latin.getName());
+        assertEquals("STSong-Light", chinese.getName());
+        assertSame(chinese.getProgram(), registry.resolve("stsong-light").getProgram());
+        assertEquals(2L, registry.getStats().get("loads"));
+        assertThrows(IllegalArgumentException.class, () -> registry.resolve("NoSuchFont"));
+    }
+
+    @Test
+    void fileFontsAreEvictedWhenOverBudget() throws Exception {
+        Path sans = SYSTEM_FONTS.resolve("DejaVuSans.ttf");
+        Path serif = SYSTEM_FONTS.resolve("DejaVuSerif.ttf");
+        assumeTrue(Files.exists(sans) && Files.exists(serif), "DejaVu fonts not installed");
+
+        Path fontDir = Files.createDirectories(tempDir.resolve("fonts"));
+        Files.copy(sans, fontDir.resolve("Sans.ttf"));
+        Files.copy(serif, fontDir.resolve("Serif.ttf"));
+        // 预算只够放一个字体
+        FontRegistry registry = createRegistry(Math.max(Files.size(sans), Files.size(serif)));
+
+        FontRegistry.ResolvedFont first = registry.resolve("sans");
+        assertSame(first.getProgram(), registry.resolve("Sans").getProgram());
+
+        registry.resolve("serif");
+        assertEquals(1L, registry.getStats().get("evictions"));
+        assertEquals(1, registry.getStats().get("parsedFonts"));
+
+        assertNotSame(first.getProgram(), registry.resolve("sans").getProgram());
+        assertEquals(3L, registry.getStats().get("loads"));
+    }
+
+    private FontRegistry createRegistry(long maxCacheBytes) {
+        FontRegistry registry = new FontRegistry();
+        ReflectionTestUtils.setField(registry, "fontDirectory", tempDir.resolve("fonts").toString());
+        ReflectionTestUtils.setField(registry, "maxCacheBytes", maxCacheBytes);
+        ReflectionTestUtils.setField(registry, "preloadFonts", "");
+        ReflectionTestUtils.setField(registry, "defaultCjkFont", "STSong-Light");
+        registry.init();
+        return registry;
+    }
+}
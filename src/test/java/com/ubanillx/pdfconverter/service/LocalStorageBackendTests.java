@@ -0,0 +1,64 @@
+package com.ubanillx.pdfconverter.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocalStorageBackendTests {
+
+    @TempDir
+    Path tempDir;
+
+    private LocalStorageBackend backend;
+
+    @BeforeEach
+    void setUp() {
+        backend = new LocalStorageBackend();
+        ReflectionTestUtils.setField(backend, "storageDirectory", tempDir.toString());
+        ReflectionTestUtils.setField(backend, "shardDepth", 2);
+    }
+
+    @Test
+    void storedFilesAreShardedAndFound() throws Exception {
+        Path source = Files.writeString(tempDir.resolve("output.pdf"), "pdf");
+        backend.store("20250101_120000_abcd1234.pdf", source);
+        backend.store("20250101_120000_ef567890.docx", new ByteArrayInputStream("doc".getBytes(StandardCharsets.UTF_8)));
+
+        File stored = backend.find("20250101_120000_abcd1234.pdf");
+        assertFalse(Files.exists(source));
+        assertEquals(backend.shardedPath("20250101_120000_abcd1234.pdf").toFile(), stored);
+        // 根目录/两级分层目录/文件名
+        assertEquals(tempDir, stored.toPath().getParent().getParent().getParent());
+        assertEquals("doc", Files.readString(backend.find("20250101_120000_ef567890.docx").toPath()));
+
+        assertTrue(backend.delete("20250101_120000_abcd1234.pdf"));
+        assertNull(backend.find("20250101_120000_abcd1234.pdf"));
+        assertNull(backend.find("../20250101_120000_ef567890.docx"));
+    }
+
+    @Test
+    void legacyFlatFilesResolveAndMigrate() throws Exception {
+        Path legacy = Files.writeString(tempDir.resolve("20240101_080000_01234567.pdf"), "legacy");
+        Files.writeString(tempDir.resolve("local_abcd1234_report.docx"), "scratch");
+
+        assertEquals(legacy.toFile(), backend.find("20240101_080000_01234567.pdf"));
+
+        assertEquals(1, backend.migrateLegacyFiles());
+        assertFalse(Files.exists(legacy));
+        assertEquals("legacy", Files.readString(backend.find("20240101_080000_01234567.pdf").toPath()));
+        // 非存储文件名的中间文件留在原处
+        assertTrue(Files.exists(tempDir.resolve("local_abcd1234_report.docx")));
+    }
+}
@@ -0,0 +1,170 @@
+package com.ubanillx.pdfconverter.service;
+
+import com.sun.star.uno.XComponentContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OfficeInstancePoolTests {
+
+    private OfficeInstancePool pool;
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    void checksOutIdleInstancesAndWaitsForRelease() throws Exception {
+        StubInstance first = new StubInstance(0);
+        StubInstance second = new StubInstance(1);
+        pool = new OfficeInstancePool(List.of(first, second), 0, 100, 0);
+        assertEquals(2, pool.getIdleCount());
+
+        OfficeInstance a = pool.checkout(100);
+        OfficeInstance b = pool.checkout(100);
+        assertNotSame(a, b);
+        assertThrows(Exception.class, () -> pool.checkout(50));
+
+        pool.release(a, false);
+        assertSame(a, pool.checkout(100));
+        pool.release(a, false);
+        pool.release(b, false);
+        assertEquals(2, pool.getIdleCount());
+        assertEquals(1, first.starts.get());
+        assertEquals(1, second.starts.get());
+    }
+
+    @Test
+    void restartsInstanceAfterMaxConversions() throws Exception {
+        StubInstance instance = new StubInstance(0);
+        pool = new OfficeInstancePool(List.of(instance), 3, 100, 0);
+
+        pool.release(pool.checkout(100), false);
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(1, instance.starts.get());
+
+        // 批量借出一次完成两次转换，达到上限后重启再放回
+        pool.release(pool.checkout(100), false, 2);
+        await(() -> instance.starts.get() == 2 && pool.getIdleCount() == 1);
+        assertSame(instance, pool.checkout(1000));
+    }
+
+    @Test
+    void replacesUnhealthyInstances() throws Exception {
+        StubInstance first = new StubInstance(0);
+        StubInstance second = new StubInstance(1);
+        pool = new OfficeInstancePool(List.of(first, second), 0, 100, 0);
+
+        // 借出时发现不健康的实例被重启，调用方拿到另一个实例
+        first.healthy = false;
+        assertSame(second, pool.checkout(1000));
+        await(() -> first.starts.get() == 2 && pool.getIdleCount() == 1);
+        assertSame(first, pool.checkout(1000));
+        pool.release(first, false);
+
+        // 转换失败且实例已崩溃时重启，失败但实例健康时直接放回
+        second.healthy = false;
+        pool.release(second, true);
+        await(() -> second.starts.get() == 2 && pool.getIdleCount() == 2);
+        assertSame(first, pool.checkout(1000));
+        pool.release(first, true);
+        assertEquals(2, first.starts.get());
+        assertEquals(2, pool.getIdleCount());
+    }
+
+    @Test
+    void healthCheckKeepsOtherIdleInstancesAvailable() throws Exception {
+        StubInstance slow = new StubInstance(0);
+        StubInstance broken = new StubInstance(1);
+        StubInstance ready = new StubInstance(2);
+        pool = new OfficeInstancePool(List.of(slow, broken, ready), 0, 100, 50);
+
+        // 健康检查卡在第一个实例上时，其余空闲实例仍可借出
+        slow.blockHealthCheck();
+        assertTrue(slow.checking.await(5, TimeUnit.SECONDS));
+        OfficeInstance borrowed = pool.checkout(1000);
+        assertNotSame(slow, borrowed);
+        pool.release(borrowed, false);
+
+        broken.healthy = false;
+        slow.releaseHealthCheck();
+        await(() -> broken.starts.get() == 2);
+        await(() -> pool.getIdleCount() == 3);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met within 5 s");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * 不启动 office 的实例，启动时恢复健康；blockHealthCheck() 后下一次后台健康检查会等到 releaseHealthCheck()
+     */
+    private static class StubInstance extends OfficeInstance {
+
+        final AtomicInteger starts = new AtomicInteger();
+        volatile boolean healthy = true;
+        volatile CountDownLatch checking = new CountDownLatch(0);
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+        private volatile boolean blockNext;
+
+        StubInstance(int index) {
+            super(index, "127.0.0.1", 2002 + index, null, null, null);
+        }
+
+        void blockHealthCheck() {
+            checking = new CountDownLatch(1);
+            gate = new CountDownLatch(1);
+            blockNext = true;
+        }
+
+        void releaseHealthCheck() {
+            gate.countDown();
+        }
+
+        @Override
+        synchronized void start(XComponentContext localContext, long connectTimeoutMillis) {
+            starts.incrementAndGet();
+            healthy = true;
+        }
+
+        @Override
+        synchronized void stop() {
+        }
+
+        @Override
+        void shutdown() {
+        }
+
+        @Override
+        boolean isHealthy() {
+            if (blockNext && Thread.currentThread().getName().equals("office-health-check")) {
+                blockNext = false;
+                checking.countDown();
+                try {
+                    gate.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return healthy;
+        }
+    }
+}
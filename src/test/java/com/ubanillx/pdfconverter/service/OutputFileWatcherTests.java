@@ -0,0 +1,48 @@
+package com.ubanillx.pdfconverter.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutputFileWatcherTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void returnsOnceFileAppearsAndStopsChanging() throws Exception {
+        Path output = tempDir.resolve("outputs/result.pdf");
+        CompletableFuture.runAsync(() -> {
+            try {
+                TimeUnit.MILLISECONDS.sleep(100);
+                Files.createDirectories(output.getParent());
+                Files.writeString(output, "%PDF-1.7");
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        long start = System.currentTimeMillis();
+        assertTrue(OutputFileWatcher.awaitStableFile(output, 5000, 100, 50));
+        // 不应等到超时，也不应再有固定的 2 秒等待
+        assertTrue(System.currentTimeMillis() - start < 2000);
+    }
+
+    @Test
+    void emptyOutputIsAcceptedOnceStable() throws Exception {
+        Path output = Files.createFile(tempDir.resolve("empty.txt"));
+        assertTrue(OutputFileWatcher.awaitStableFile(output, 2000, 100, 50));
+    }
+
+    @Test
+    void timesOutWhenFileNeverAppears() throws Exception {
+        assertFalse(OutputFileWatcher.awaitStableFile(tempDir.resolve("missing.pdf"), 200, 100, 50));
+    }
+}
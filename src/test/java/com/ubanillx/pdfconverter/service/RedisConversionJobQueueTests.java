@@ -0,0 +1,121 @@
+package com.ubanillx.pdfconverter.service;
+
+import com.ubanillx.pdfconverter.model.ConversionJob;
+import com.ubanillx.pdfconverter.model.ConversionResponse;
+import com.ubanillx.pdfconverter.model.JobStatus;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = {
+        "app.jobs.queue=redis",
+        "app.jobs.workers=2",
+        "app.jobs.redis.max-attempts=2",
+        "app.jobs.redis.dead-letter-max-size=2",
+        "app.jobs.redis.poll-interval=50"
+})
+class RedisConversionJobQueueTests {
+
+    private static RedisServer redisServer;
+    private static int redisPort;
+
+    @Autowired
+    private ConversionJobService conversionJobService;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @MockitoBean
+    private DocumentConversionService documentConversionService;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            redisPort = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(redisPort);
+        redisServer.start();
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        if (redisServer != null) {
+            redisServer.stop();
+        }
+    }
+
+    @DynamicPropertySource
+    static void redisProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.redis.port", () -> redisPort);
+    }
+
+    @Test
+    void completedJobIsVisibleToPolling() throws Exception {
+        when(documentConversionService.convert(eq("http://example.com/ok.docx"), anyString(), anyString(), eq(true)))
+                .thenReturn(new ConversionResponse(true, "转换成功", "http://example.com/ok.docx",
+                        "http://localhost:9999/files/ok.pdf", "docx", "pdf", 42));
+
+        ConversionJob submitted = conversionJobService.submit("http://example.com/ok.docx", "pdf", "docx");
+        ConversionJob job = awaitFinished(submitted.getJobId());
+
+        assertEquals(JobStatus.DONE, job.getStatus());
+        assertEquals("http://localhost:9999/files/ok.pdf", job.getConvertedUrl());
+        assertEquals(42, job.getFileSize());
+    }
+
+    @Test
+    void failingJobIsRetriedThenDeadLettered() throws Exception {
+        when(documentConversionService.convert(eq("http://example.com/broken.docx"), anyString(), anyString(), eq(true)))
+                .thenThrow(new IllegalStateException("office crashed"));
+
+        ConversionJob submitted = conversionJobService.submit("http://example.com/broken.docx", "pdf", "docx");
+        ConversionJob job = awaitFinished(submitted.getJobId());
+
+        assertEquals(JobStatus.FAILED, job.getStatus());
+        assertEquals(2, job.getAttempts());
+        assertTrue(redisTemplate.opsForList().range("pdfconverter:jobs:dead", 0, -1).contains(job.getJobId()));
+    }
+
+    @Test
+    void deadLetterListKeepsOnlyTheNewestJobs() throws Exception {
+        when(documentConversionService.convert(eq("http://example.com/corrupt.docx"), anyString(), anyString(), eq(true)))
+                .thenThrow(new IllegalStateException("office crashed"));
+
+        String newest = null;
+        for (int i = 0; i < 3; i++) {
+            ConversionJob submitted = conversionJobService.submit("http://example.com/corrupt.docx", "pdf", "docx");
+            newest = awaitFinished(submitted.getJobId()).getJobId();
+        }
+
+        assertEquals(2L, redisTemplate.opsForList().size("pdfconverter:jobs:dead"));
+        assertEquals(newest, redisTemplate.opsForList().index("pdfconverter:jobs:dead", 0));
+    }
+
+    private ConversionJob awaitFinished(String jobId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (System.currentTimeMillis() < deadline) {
+            ConversionJob job = conversionJobService.getJob(jobId);
+            if (job != null && job.getStatus().isFinished()) {
+                return job;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Job " + jobId + " did not finish in time");
+    }
+}
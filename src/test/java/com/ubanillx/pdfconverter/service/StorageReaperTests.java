@@ -0,0 +1,113 @@
+package com.ubanillx.pdfconverter.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StorageReaperTests {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    @TempDir
+    Path tempDir;
+
+    private Path storageDir;
+    private Path outputsDir;
+    private Path systemTempDir;
+    private StorageReaper reaper;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        storageDir = Files.createDirectories(tempDir.resolve("uploads"));
+        outputsDir = Files.createDirectories(tempDir.resolve("outputs"));
+        systemTempDir = Files.createDirectories(tempDir.resolve("tmp"));
+
+        reaper = new StorageReaper();
+        ReflectionTestUtils.setField(reaper, "storageDirectory", storageDir.toString());
+        ReflectionTestUtils.setField(reaper, "dockerOutputDirectory", outputsDir.toString());
+        ReflectionTestUtils.setField(reaper, "tempDirectory", systemTempDir.toString());
+        ReflectionTestUtils.setField(reaper, "shardDepth", 2);
+        ReflectionTestUtils.setField(reaper, "storedTtlMillis", 24 * HOUR);
+        ReflectionTestUtils.setField(reaper, "scratchTtlMillis", 10L);
+        ReflectionTestUtils.setField(reaper, "tempTtlMillis", 10L);
+        ReflectionTestUtils.setField(reaper, "minStoredAgeMillis", HOUR);
+        ReflectionTestUtils.setField(reaper, "highWatermark", 2.0);
+        ReflectionTestUtils.setField(reaper, "lowWatermark", 2.0);
+        ReflectionTestUtils.setField(reaper, "maxIoPerSecond", 0);
+    }
+
+    @Test
+    void expiredFilesAreRemovedPerCategory() throws Exception {
+        Path expiredStored = createFile(storageDir.resolve("ab/cd/20240101_080000_01234567.pdf"), 48 * HOUR);
+        Path freshStored = createFile(storageDir.resolve("ef/01/20250101_080000_89abcdef.pdf"), 2 * HOUR);
+        Path legacyStored = createFile(storageDir.resolve("20240101_080000_76543210.docx"), 48 * HOUR);
+        Path scratch = createFile(storageDir.resolve("local_abcd1234_report.docx"), 0);
+        Path output = createFile(outputsDir.resolve("report.pdf"), 0);
+        Path download = createFile(systemTempDir.resolve("libreoffice_123_report.docx"), 0);
+        Path unrelated = createFile(systemTempDir.resolve("other.tmp"), 0);
+        // 中间文件按 inode 变更时间判断，等待其超过保留时间
+        Thread.sleep(50);
+
+        reaper.reap();
+
+        assertFalse(Files.exists(expiredStored));
+        assertFalse(Files.exists(legacyStored));
+        assertFalse(Files.exists(scratch));
+        assertFalse(Files.exists(output));
+        assertFalse(Files.exists(download));
+        assertTrue(Files.exists(freshStored));
+        assertTrue(Files.exists(unrelated));
+        assertEquals(5L, reaper.getStats().get("deletedFiles"));
+    }
+
+    @Test
+    void diskPressureShortensStoredRetention() throws Exception {
+        Path older = createFile(storageDir.resolve("ab/cd/20250101_080000_01234567.pdf"), 4 * HOUR);
+        Path recent = createFile(storageDir.resolve("ef/01/20250101_090000_89abcdef.pdf"), HOUR / 2);
+        // 水位设为 0，使用率始终超过高水位，保留时间一直缩短到 min-stored-age
+        ReflectionTestUtils.setField(reaper, "highWatermark", 0.0);
+        ReflectionTestUtils.setField(reaper, "lowWatermark", 0.0);
+
+        reaper.reap();
+
+        assertFalse(Files.exists(older));
+        assertTrue(Files.exists(recent));
+    }
+
+    @Test
+    void diskPressureKeepsStoredFilesLinkedFromCache() throws Exception {
+        Path cached = createFile(storageDir.resolve("ab/cd/20250101_080000_01234567.pdf"), 4 * HOUR);
+        Path cacheEntry = Files.createDirectories(tempDir.resolve("cache")).resolve("0123abcd.pdf");
+        Files.createLink(cacheEntry, cached);
+        ReflectionTestUtils.setField(reaper, "highWatermark", 0.0);
+        ReflectionTestUtils.setField(reaper, "lowWatermark", 0.0);
+
+        reaper.reap();
+
+        // 删除仍被缓存链接的文件不释放空间
+        assertTrue(Files.exists(cached));
+        assertTrue(Files.exists(cacheEntry));
+
+        // 超过正常保留时间的文件照常删除
+        ReflectionTestUtils.setField(reaper, "storedTtlMillis", 2 * HOUR);
+        reaper.reap();
+        assertFalse(Files.exists(cached));
+    }
+
+    private static Path createFile(Path file, long ageMillis) throws Exception {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, "content");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - ageMillis));
+        return file;
+    }
+}
@@ -0,0 +1,40 @@
+package com.ubanillx.pdfconverter.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+
+/**
+ * 单元测试共用的服务装配，与 benchmarks 模块的 ServiceFixtures 相同，不启动 Spring 容器
+ */
+public final class TestFixtures {
+
+    private TestFixtures() {
+    }
+
+    public static FileStorageService storage(Path directory) {
+        return storage(directory, 2, new ConversionMetrics(new SimpleMeterRegistry()));
+    }
+
+    public static FileStorageService storage(Path directory, ConversionMetrics metrics) {
+        return storage(directory, 2, metrics);
+    }
+
+    /**
+     * 本地存储，文件地址为 http://localhost:9999/files/{文件名}
+     * @param shardDepth 分片目录层数，0 表示文件直接放在 directory 中
+     */
+    public static FileStorageService storage(Path directory, int shardDepth, ConversionMetrics metrics) {
+        LocalStorageBackend backend = new LocalStorageBackend();
+        ReflectionTestUtils.setField(backend, "storageDirectory", directory.toString());
+        ReflectionTestUtils.setField(backend, "shardDepth", shardDepth);
+
+        FileStorageService storage = new FileStorageService();
+        ReflectionTestUtils.setField(storage, "storageDirectory", directory.toString());
+        ReflectionTestUtils.setField(storage, "baseUrl", "http://localhost:9999");
+        ReflectionTestUtils.setField(storage, "storageBackend", backend);
+        ReflectionTestUtils.setField(storage, "metrics", metrics);
+        return storage;
+    }
+}
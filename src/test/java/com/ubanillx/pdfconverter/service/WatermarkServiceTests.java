@@ -0,0 +1,332 @@
+package com.ubanillx.pdfconverter.service;
+
+import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.geom.Vector;
+import com.itextpdf.kernel.pdf.PageLabelNumberingStyle;
+import com.itextpdf.kernel.pdf.PdfDictionary;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfDocumentInfo;
+import com.itextpdf.kernel.pdf.PdfIndirectReference;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfOutline;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfString;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.WriterProperties;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
+import com.itextpdf.kernel.pdf.canvas.parser.EventType;
+import com.itextpdf.kernel.pdf.canvas.parser.PdfCanvasProcessor;
+import com.itextpdf.kernel.pdf.canvas.parser.PdfTextExtractor;
+import com.itextpdf.kernel.pdf.canvas.parser.data.IEventData;
+import com.itextpdf.kernel.pdf.canvas.parser.data.TextRenderInfo;
+import com.itextpdf.kernel.pdf.canvas.parser.listener.IEventListener;
+import com.itextpdf.kernel.pdf.navigation.PdfExplicitDestination;
+import com.ubanillx.pdfconverter.model.WatermarkOptions;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WatermarkServiceTests {
+
+    @TempDir
+    Path tempDir;
+
+    private WatermarkService watermarkService;
+
+    @BeforeEach
+    void setUp() {
+        ConversionMetrics metrics = new ConversionMetrics(new SimpleMeterRegistry());
+        FileStorageService storageService = TestFixtures.storage(tempDir, metrics);
+
+        FontRegistry fontRegistry = new FontRegistry();
+        ReflectionTestUtils.setField(fontRegistry, "fontDirectory", tempDir.resolve("fonts").toString());
+        ReflectionTestUtils.setField(fontRegistry, "maxCacheBytes", 64L * 1024 * 1024);
+        ReflectionTestUtils.setField(fontRegistry, "preloadFonts", "");
+        ReflectionTestUtils.setField(fontRegistry, "defaultCjkFont", "STSong-Light");
+        fontRegistry.init();
+
+        watermarkService = new WatermarkService();
+        ReflectionTestUtils.setField(watermarkService, "fileStorageService", storageService);
+        ReflectionTestUtils.setField(watermarkService, "fontRegistry", fontRegistry);
+        ReflectionTestUtils.setField(watermarkService, "metrics", metrics);
+        ReflectionTestUtils.setField(watermarkService, "templateCacheSize", 16);
+        ReflectionTestUtils.setField(watermarkService, "templateCacheMaxBytes", 64L * 1024 * 1024);
+        ReflectionTestUtils.setField(watermarkService, "maxImageBytes", 1024L * 1024);
+        ReflectionTestUtils.setField(watermarkService, "imageTemplateTtlMillis", 300000L);
+        ReflectionTestUtils.setField(watermarkService, "lowMemoryThreshold", 100L * 1024 * 1024);
+        ReflectionTestUtils.setField(watermarkService, "memoryWaitTimeoutMillis", 100L);
+        watermarkService.init();
+    }
+
+    @Test
+    void stampsEveryPage() throws Exception {
+        createPdf("source.pdf", 23);
+        assertStamped(watermarkService.addWatermarkToPdf("source.pdf", "CONFIDENTIAL", tempDir.toFile()), 23);
+    }
+
+    @Test
+    void keepsDocumentStructure() throws Exception {
+        File source = tempDir.resolve("structured.pdf").toFile();
+        try (PdfDocument pdfDoc = new PdfDocument(new PdfWriter(source.getPath(), new WriterProperties().addXmpMetadata()))) {
+            for (int i = 0; i < 23; i++) {
+                pdfDoc.addNewPage(PageSize.A4);
+            }
+            pdfDoc.getDocumentInfo().setTitle("Annual report").setAuthor("Finance");
+            pdfDoc.getPage(1).setPageLabel(PageLabelNumberingStyle.LOWERCASE_ROMAN_NUMERALS, null);
+            pdfDoc.getPage(3).setPageLabel(PageLabelNumberingStyle.DECIMAL_ARABIC_NUMERALS, "p-");
+            PdfOutline root = pdfDoc.getOutlines(false);
+            root.addOutline("Introduction").addDestination(PdfExplicitDestination.createFit(pdfDoc.getPage(1)));
+            root.addOutline("Results").addDestination(PdfExplicitDestination.createFit(pdfDoc.getPage(20)));
+            pdfDoc.addNamedDestination("results", PdfExplicitDestination.createFit(pdfDoc.getPage(20)).getPdfObject());
+        }
+
+        File output = watermarkService.addWatermarkToPdf("structured.pdf", "CONFIDENTIAL", tempDir.toFile());
+        assertStamped(output, 23);
+
+        try (PdfDocument actual = new PdfDocument(new PdfReader(output))) {
+            PdfDocumentInfo info = actual.getDocumentInfo();
+            assertEquals("Annual report", info.getTitle());
+            assertEquals("Finance", info.getAuthor());
+            // XMP 的修改时间随每次写出更新，只比较内容
+            assertTrue(new String(actual.getXmpMetadata()).contains("Annual report"));
+            assertEquals(List.of("i", "ii", "p-1", "p-2"), Arrays.asList(actual.getPageLabels()).subList(0, 4));
+            assertEquals(List.of("Introduction", "Results"), outlineTitles(actual));
+            assertEquals(20, actual.getPageNumber((PdfDictionary) actual.getOutlines(false).getAllChildren().get(1)
+                    .getDestination().getDestinationPage(actual.getCatalog().getNameTree(PdfName.Dests))));
+            assertTrue(actual.getCatalog().getNameTree(PdfName.Dests).getNames().containsKey(new PdfString("results")));
+        }
+    }
+
+    @Test
+    void lowMemoryModeStampsEveryPageAndRespectsBudget() throws Exception {
+        createPdf("large.pdf", 12);
+        ReflectionTestUtils.setField(watermarkService, "lowMemoryThreshold", 1L);
+        assertStamped(watermarkService.addWatermarkToPdf("large.pdf", "CONFIDENTIAL", tempDir.toFile()), 12);
+        assertEquals(1L, watermarkService.getMemoryStats().get("lowMemoryJobs"));
+        assertEquals(0L, watermarkService.getMemoryStats().get("reservedBytes"));
+        assertTrue((Long) watermarkService.getMemoryStats().get("maxJobAllocatedBytes") > 0);
+
+        // 预算小于任何任务的预留量时直接拒绝
+        ReflectionTestUtils.setField(watermarkService, "memoryBudget", new MemoryBudget(1));
+        assertThrows(WatermarkService.MemoryBudgetExceededException.class,
+                () -> watermarkService.addWatermarkToPdf("large.pdf", "CONFIDENTIAL", tempDir.toFile()));
+        assertEquals(1L, watermarkService.getMemoryStats().get("rejectedJobs"));
+    }
+
+    @Test
+    void everyPageReferencesOneSharedStamp() throws Exception {
+        createPdf("shared.pdf", 5);
+        File output = watermarkService.addWatermarkToPdf("shared.pdf", "CONFIDENTIAL", tempDir.toFile());
+
+        try (PdfDocument pdfDoc = new PdfDocument(new PdfReader(output))) {
+            Set<PdfIndirectReference> stamps = new HashSet<>();
+            for (int i = 1; i <= pdfDoc.getNumberOfPages(); i++) {
+                PdfDictionary xObjects = pdfDoc.getPage(i).getResources().getResource(PdfName.XObject);
+                for (PdfName name : xObjects.keySet()) {
+                    stamps.add(xObjects.get(name, false).getIndirectReference());
+                }
+            }
+            assertEquals(1, stamps.size());
+        }
+    }
+
+    @Test
+    void optionsSelectPagesAndSupportCjkText() throws Exception {
+        createPdf("options.pdf", 6);
+
+        WatermarkOptions options = new WatermarkOptions("内部资料");
+        options.setPages("first,4-");
+        options.setTiled(true);
+        options.setColor("#FF0000");
+        File output = watermarkService.addWatermarkToPdf("options.pdf", options, tempDir.toFile());
+
+        try (PdfDocument pdfDoc = new PdfDocument(new PdfReader(output))) {
+            for (int i = 1; i <= 6; i++) {
+                boolean expected = i == 1 || i >= 4;
+                String text = PdfTextExtractor.getTextFromPage(pdfDoc.getPage(i));
+                assertEquals(expected, text.contains("内部资料"), "page " + i);
+            }
+        }
+    }
+
+    @Test
+    void templatesAreCompiledOncePerOptionSet() throws Exception {
+        WatermarkOptions first = new WatermarkOptions("DRAFT");
+        WatermarkOptions same = new WatermarkOptions("DRAFT");
+        same.setFontSize(50f);
+        WatermarkOptions other = new WatermarkOptions("DRAFT");
+        other.setOpacity(0.5f);
+
+        assertSame(watermarkService.getTemplate(first), watermarkService.getTemplate(same));
+        assertNotSame(watermarkService.getTemplate(first), watermarkService.getTemplate(other));
+    }
+
+    @Test
+    void imageWatermarkIsDrawn() throws Exception {
+        createPdf("image.pdf", 2);
+        BufferedImage image = new BufferedImage(20, 10, BufferedImage.TYPE_INT_RGB);
+        ImageIO.write(image, "png", tempDir.resolve("logo.png").toFile());
+
+        WatermarkOptions options = new WatermarkOptions();
+        options.setImageUrl("logo.png");
+        options.setPosition("bottom-right");
+        File output = watermarkService.addWatermarkToPdf("image.pdf", options, tempDir.toFile());
+
+        try (PdfDocument pdfDoc = new PdfDocument(new PdfReader(output))) {
+            PdfDictionary xObjects = pdfDoc.getPage(2).getResources().getResource(PdfName.XObject);
+            assertEquals(1, xObjects.size());
+        }
+    }
+
+    @Test
+    void imageTemplatesAreBoundedByBytesAndExpire() throws Exception {
+        for (String name : List.of("a.png", "b.png", "c.png", "d.png")) {
+            ImageIO.write(new BufferedImage(20, 10, BufferedImage.TYPE_INT_RGB), "png", tempDir.resolve(name).toFile());
+        }
+        long imageSize = tempDir.resolve("a.png").toFile().length();
+        ReflectionTestUtils.setField(watermarkService, "templateCacheMaxBytes", imageSize * 2);
+
+        WatermarkOptions a = imageOptions("a.png");
+        WatermarkTemplate first = watermarkService.getTemplate(a);
+        assertSame(first, watermarkService.getTemplate(a));
+        watermarkService.getTemplate(imageOptions("b.png"));
+        watermarkService.getTemplate(imageOptions("c.png"));
+        // 第三张图片超出字节上限，最久未使用的 a.png 被淘汰
+        assertEquals(2, watermarkService.getMemoryStats().get("cachedTemplates"));
+        assertEquals(imageSize * 2, watermarkService.getMemoryStats().get("templateCacheBytes"));
+        assertNotSame(first, watermarkService.getTemplate(a));
+
+        // 过期的图片模板重新读取图片
+        ReflectionTestUtils.setField(watermarkService, "imageTemplateTtlMillis", 1L);
+        WatermarkTemplate expiring = watermarkService.getTemplate(imageOptions("b.png"));
+        Thread.sleep(5);
+        assertNotSame(expiring, watermarkService.getTemplate(imageOptions("b.png")));
+
+        // 超过大小上限的图片直接拒绝
+        ReflectionTestUtils.setField(watermarkService, "maxImageBytes", imageSize - 1);
+        assertThrows(IllegalArgumentException.class, () -> watermarkService.getTemplate(imageOptions("d.png")));
+    }
+
+    private static WatermarkOptions imageOptions(String imageUrl) {
+        WatermarkOptions options = new WatermarkOptions();
+        options.setImageUrl(imageUrl);
+        return options;
+    }
+
+    @Test
+    void invalidOptionsAreRejected() {
+        WatermarkOptions options = new WatermarkOptions("DRAFT");
+        options.setPages("3-1");
+        assertThrows(IllegalArgumentException.class, () -> watermarkService.getTemplate(options));
+
+        WatermarkOptions color = new WatermarkOptions("DRAFT");
+        color.setColor("red");
+        assertThrows(IllegalArgumentException.class, () -> watermarkService.getTemplate(color));
+
+        WatermarkOptions spacing = new WatermarkOptions("DRAFT");
+        spacing.setTiled(true);
+        spacing.setTileSpacing(-500f);
+        assertThrows(IllegalArgumentException.class, () -> watermarkService.getTemplate(spacing));
+
+        for (float value : new float[] {Float.NaN, Float.POSITIVE_INFINITY}) {
+            WatermarkOptions fontSize = new WatermarkOptions("DRAFT");
+            fontSize.setFontSize(value);
+            assertThrows(IllegalArgumentException.class, () -> watermarkService.getTemplate(fontSize));
+
+            WatermarkOptions opacity = new WatermarkOptions("DRAFT");
+            opacity.setOpacity(value);
+            assertThrows(IllegalArgumentException.class, () -> watermarkService.getTemplate(opacity));
+        }
+
+        // 过密的平铺在生成页面内容时拒绝，而不是生成上千万个水印
+        WatermarkOptions dense = new WatermarkOptions("DRAFT");
+        dense.setTiled(true);
+        dense.setTileSpacing(0f);
+        dense.setFontSize(0.01f);
+        WatermarkTemplate template = watermarkService.getTemplate(dense);
+        assertThrows(IllegalArgumentException.class, () -> template.pageContent(PageSize.A4, new PdfName("Fm1")));
+    }
+
+    @Test
+    void stampIgnoresTransformAndClipLeftOpenByPageContent() throws Exception {
+        createPdf("plain.pdf", 1);
+        try (PdfDocument pdfDoc = new PdfDocument(new PdfWriter(tempDir.resolve("unbalanced.pdf").toFile()))) {
+            // 内容流结尾留下未恢复的坐标变换和裁剪区域
+            new PdfCanvas(pdfDoc.addNewPage(PageSize.A4))
+                    .concatMatrix(2, 0, 0, 2, 100, 100)
+                    .rectangle(0, 0, 10, 10).clip().endPath();
+        }
+
+        List<Vector> expected = textPositions(
+                watermarkService.addWatermarkToPdf("plain.pdf", "CONFIDENTIAL", tempDir.toFile()));
+        List<Vector> actual = textPositions(
+                watermarkService.addWatermarkToPdf("unbalanced.pdf", "CONFIDENTIAL", tempDir.toFile()));
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, actual);
+    }
+
+    private static List<Vector> textPositions(File pdf) throws Exception {
+        List<Vector> positions = new ArrayList<>();
+        try (PdfDocument pdfDoc = new PdfDocument(new PdfReader(pdf))) {
+            new PdfCanvasProcessor(new IEventListener() {
+                @Override
+                public void eventOccurred(IEventData data, EventType type) {
+                    if (type == EventType.RENDER_TEXT) {
+                        positions.add(((TextRenderInfo) data).getBaseline().getStartPoint());
+                    }
+                }
+
+                @Override
+                public Set<EventType> getSupportedEvents() {
+                    return null;
+                }
+            }).processPageContent(pdfDoc.getPage(1));
+        }
+        return positions;
+    }
+
+    private void assertStamped(File output, int expectedPages) throws Exception {
+        try (PdfDocument pdfDoc = new PdfDocument(new PdfReader(output))) {
+            assertEquals(expectedPages, pdfDoc.getNumberOfPages());
+            for (int i = 1; i <= expectedPages; i++) {
+                String text = PdfTextExtractor.getTextFromPage(pdfDoc.getPage(i));
+                assertTrue(text.contains("CONFIDENTIAL"), "page " + i + " has no watermark");
+            }
+        }
+    }
+
+    private List<String> outlineTitles(PdfDocument pdfDoc) {
+        List<String> titles = new ArrayList<>();
+        for (PdfOutline outline : pdfDoc.getOutlines(false).getAllChildren()) {
+            titles.add(outline.getTitle());
+        }
+        return titles;
+    }
+
+    private void createPdf(String name, int pages) throws Exception {
+        try (PdfDocument pdfDoc = new PdfDocument(new PdfWriter(tempDir.resolve(name).toFile()))) {
+            for (int i = 0; i < pages; i++) {
+                pdfDoc.addNewPage(PageSize.A4);
+            }
+        }
+    }
+}